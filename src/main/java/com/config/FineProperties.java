@@ -0,0 +1,46 @@
+package com.config;
+
+import com.model.Reader;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Cấu hình phạt quá hạn ({@code library.fines}): biểu phí theo loại độc giả và thông số của job tính phạt hằng đêm
+ */
+@Component
+@ConfigurationProperties(prefix = "library.fines")
+@Data
+public class FineProperties {
+    
+    private Map<Reader.ReaderType, Schedule> schedules = new EnumMap<>(Reader.ReaderType.class);
+    
+    private int accrualChunkSize = 5000;
+    
+    /**
+     * Biểu phí của loại độc giả; loại không được cấu hình dùng giá trị mặc định
+     */
+    public Schedule scheduleFor(Reader.ReaderType readerType) {
+        Reader.ReaderType type = readerType != null ? readerType : Reader.ReaderType.STANDARD;
+        return schedules.getOrDefault(type, new Schedule());
+    }
+    
+    @Data
+    public static class Schedule {
+        private BigDecimal feePerDay = new BigDecimal("5000");
+        private int graceDays = 0;
+        private BigDecimal maxPerTicket = new BigDecimal("200000");
+        
+        /**
+         * Tiền phạt cho số ngày quá hạn: phí mỗi ngày sau thời gian ân hạn, không vượt mức trần
+         */
+        public BigDecimal fineFor(long overdueDays) {
+            long chargeableDays = Math.max(overdueDays - graceDays, 0);
+            return feePerDay.multiply(BigDecimal.valueOf(chargeableDays)).min(maxPerTicket);
+        }
+    }
+}
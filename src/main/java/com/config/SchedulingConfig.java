@@ -0,0 +1,12 @@
+package com.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Tắt được bằng library.scheduling.enabled=false (profile test) để job định kỳ không chạy xen vào phép đo
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "library.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
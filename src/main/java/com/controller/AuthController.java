@@ -6,6 +6,8 @@ import jakarta.validation.Valid;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -30,6 +32,8 @@ public class AuthController {
         try {
             Map<String, Object> response = authService.login(request.getUsername(), request.getPassword());
             return ResponseEntity.ok(response);
+        } catch (TaskRejectedException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             log.error("Login error: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
@@ -51,6 +55,8 @@ public class AuthController {
             
             Map<String, Object> response = authService.register(userAccount, request.getRoleName());
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (TaskRejectedException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             log.error("Registration error: {}", e.getMessage());
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
@@ -72,11 +78,14 @@ public class AuthController {
     
 
     @PostMapping("/logout")
-    public ResponseEntity<?> logout() {
+    public ResponseEntity<?> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+                                    @RequestBody(required = false) LogoutRequest request) {
         try {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             String username = authentication.getName();
-            authService.logout(username);
+            String accessToken = authorization != null && authorization.startsWith("Bearer ")
+                    ? authorization.substring(7) : null;
+            authService.logout(username, accessToken, request != null ? request.getRefreshToken() : null);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -98,6 +107,8 @@ public class AuthController {
             Map<String, Object> response = authService.changePassword(
                     username, request.getOldPassword(), request.getNewPassword());
             return ResponseEntity.ok(response);
+        } catch (TaskRejectedException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             log.error("Change password error: {}", e.getMessage());
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
@@ -122,6 +133,13 @@ public class AuthController {
         }
     }
     
+    private ResponseEntity<?> tooManyRequests(TaskRejectedException e) {
+        log.warn("Auth request rejected, password hashing busy: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(createErrorResponse("Hệ thống đang quá tải, vui lòng thử lại sau"));
+    }
+    
     private Map<String, Object> createErrorResponse(String message) {
         Map<String, Object> response = new HashMap<>();
         response.put("success", false);
@@ -152,6 +170,11 @@ public class AuthController {
         private String refreshToken;
     }
     
+    @Data
+    public static class LogoutRequest {
+        private String refreshToken;
+    }
+    
     @Data
     public static class ChangePasswordRequest {
         private String oldPassword;
@@ -1,6 +1,8 @@
 package com.controller;
 
+import com.dto.BookSummary;
 import com.model.Book;
+import com.model.BookCopy;
 import com.service.BookService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -56,8 +58,8 @@ public class BookController {
     }
     
     @GetMapping
-    public ResponseEntity<List<Book>> getAllBooks() {
-        List<Book> books = bookService.getAllBooks();
+    public ResponseEntity<List<BookSummary>> getAllBooks() {
+        List<BookSummary> books = bookService.getAllBooks();
         return ResponseEntity.ok(books);
     }
     
@@ -73,15 +75,38 @@ public class BookController {
         }
     }
     
+    @GetMapping("/code/{bookCode}")
+    public ResponseEntity<?> getBookByCode(@PathVariable String bookCode) {
+        try {
+            Book book = bookService.getBookByCode(bookCode);
+            return ResponseEntity.ok(book);
+        } catch (Exception e) {
+            log.error("Lỗi khi lấy sách theo mã: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/{id}/copies")
+    public ResponseEntity<?> getBookCopies(@PathVariable Long id) {
+        try {
+            List<BookCopy> copies = bookService.getBookCopies(id);
+            return ResponseEntity.ok(copies);
+        } catch (Exception e) {
+            log.error("Lỗi khi lấy danh sách bản sách: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
     @GetMapping("/available")
-    public ResponseEntity<List<Book>> getAvailableBooks() {
-        List<Book> books = bookService.getAvailableBooks();
+    public ResponseEntity<List<BookSummary>> getAvailableBooks() {
+        List<BookSummary> books = bookService.getAvailableBooks();
         return ResponseEntity.ok(books);
     }
     
     @GetMapping("/search")
-    public ResponseEntity<List<Book>> searchBooks(@RequestParam String keyword) {
-        List<Book> books = bookService.searchBooks(keyword);
+    public ResponseEntity<List<BookSummary>> searchBooks(@RequestParam String keyword) {
+        List<BookSummary> books = bookService.searchBooks(keyword);
         return ResponseEntity.ok(books);
     }
     
@@ -1,5 +1,6 @@
 package com.controller;
 
+import com.dto.BorrowTicketSummary;
 import com.model.BorrowTicket;
 import com.service.BorrowService;
 import lombok.RequiredArgsConstructor;
@@ -95,8 +96,8 @@ public class BorrowController {
      * Lấy tất cả phiếu mượn
      */
     @GetMapping
-    public ResponseEntity<List<BorrowTicket>> getAllBorrowTickets() {
-        List<BorrowTicket> borrowTickets = borrowService.getAllBorrowTickets();
+    public ResponseEntity<List<BorrowTicketSummary>> getAllBorrowTickets() {
+        List<BorrowTicketSummary> borrowTickets = borrowService.getAllBorrowTickets();
         return ResponseEntity.ok(borrowTickets);
     }
     
@@ -119,17 +120,34 @@ public class BorrowController {
      * Lấy danh sách phiếu mượn của một độc giả
      */
     @GetMapping("/reader/{readerId}")
-    public ResponseEntity<List<BorrowTicket>> getBorrowTicketsByReader(@PathVariable Long readerId) {
-        List<BorrowTicket> borrowTickets = borrowService.getBorrowTicketsByReaderId(readerId);
+    public ResponseEntity<List<BorrowTicketSummary>> getBorrowTicketsByReader(@PathVariable Long readerId) {
+        List<BorrowTicketSummary> borrowTickets = borrowService.getBorrowTicketsByReaderId(readerId);
         return ResponseEntity.ok(borrowTickets);
     }
     
+    /**
+     * Lịch sử mượn của độc giả, phân trang theo keyset (beforeId = ID cuối của trang trước)
+     */
+    @GetMapping("/reader/{readerId}/history")
+    public ResponseEntity<?> getReaderLoanHistory(
+            @PathVariable Long readerId,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            Map<String, Object> history = borrowService.getReaderLoanHistory(readerId, beforeId, size);
+            return ResponseEntity.ok(history);
+        } catch (Exception e) {
+            log.error("Lỗi khi lấy lịch sử mượn: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
     /**
      * Lấy danh sách phiếu mượn quá hạn
      */
     @GetMapping("/overdue")
-    public ResponseEntity<List<BorrowTicket>> getOverdueTickets() {
-        List<BorrowTicket> overdueTickets = borrowService.getOverdueTickets();
+    public ResponseEntity<List<BorrowTicketSummary>> getOverdueTickets() {
+        List<BorrowTicketSummary> overdueTickets = borrowService.getOverdueTickets();
         return ResponseEntity.ok(overdueTickets);
     }
     
@@ -137,8 +155,8 @@ public class BorrowController {
      * Tìm kiếm phiếu mượn
      */
     @GetMapping("/search")
-    public ResponseEntity<List<BorrowTicket>> searchBorrowTickets(@RequestParam String keyword) {
-        List<BorrowTicket> borrowTickets = borrowService.searchBorrowTickets(keyword);
+    public ResponseEntity<List<BorrowTicketSummary>> searchBorrowTickets(@RequestParam String keyword) {
+        List<BorrowTicketSummary> borrowTickets = borrowService.searchBorrowTickets(keyword);
         return ResponseEntity.ok(borrowTickets);
     }
     
@@ -1,6 +1,9 @@
 package com.controller;
 
+import com.dto.PenaltySummary;
 import com.model.Penalty;
+import com.service.FineAccrualService;
+import com.service.PenaltyBulkService;
 import com.service.PenaltyService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,6 +23,8 @@ import java.util.Map;
 public class PenaltyController {
     
     private final PenaltyService penaltyService;
+    private final PenaltyBulkService penaltyBulkService;
+    private final FineAccrualService fineAccrualService;
     
     /**
      * Thanh toán phạt
@@ -56,12 +61,72 @@ public class PenaltyController {
         }
     }
     
+    /**
+     * Thanh toán nhiều phạt cùng lúc (theo danh sách ID hoặc toàn bộ phạt chưa thanh toán của độc giả)
+     */
+    @PostMapping("/bulk-pay")
+    public ResponseEntity<?> payPenalties(@RequestBody BulkPenaltyRequest request) {
+        try {
+            Map<String, Object> result = penaltyBulkService.payPenalties(
+                request.getPenaltyIds(),
+                request.getReaderId(),
+                request.getExpectedVersions(),
+                request.getProcessedBy()
+            );
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Lỗi khi thanh toán phạt hàng loạt: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
+    /**
+     * Miễn nhiều phạt cùng lúc (theo danh sách ID hoặc toàn bộ phạt chưa thanh toán của độc giả)
+     */
+    @PostMapping("/bulk-waive")
+    public ResponseEntity<?> waivePenalties(@RequestBody BulkPenaltyRequest request) {
+        try {
+            Map<String, Object> result = penaltyBulkService.waivePenalties(
+                request.getPenaltyIds(),
+                request.getReaderId(),
+                request.getExpectedVersions(),
+                request.getProcessedBy(),
+                request.getReason()
+            );
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Lỗi khi miễn phạt hàng loạt: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
+    /**
+     * Chạy ngay việc tính phạt tạm thời cho các phiếu đang quá hạn (bình thường chạy hằng đêm)
+     */
+    @PostMapping("/accrue-overdue")
+    public ResponseEntity<?> accrueOverdueFines() {
+        try {
+            return ResponseEntity.ok(fineAccrualService.accrueOverdueFines());
+        } catch (Exception e) {
+            log.error("Lỗi khi tính phạt quá hạn: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
+    /**
+     * Số liệu của job tính phạt quá hạn
+     */
+    @GetMapping("/accrual-metrics")
+    public ResponseEntity<Map<String, Object>> getAccrualMetrics() {
+        return ResponseEntity.ok(fineAccrualService.getMetrics());
+    }
+    
     /**
      * Lấy tất cả phạt
      */
     @GetMapping
-    public ResponseEntity<List<Penalty>> getAllPenalties() {
-        List<Penalty> penalties = penaltyService.getAllPenalties();
+    public ResponseEntity<List<PenaltySummary>> getAllPenalties() {
+        List<PenaltySummary> penalties = penaltyService.getAllPenalties();
         return ResponseEntity.ok(penalties);
     }
     
@@ -84,8 +149,8 @@ public class PenaltyController {
      * Lấy danh sách phạt chưa thanh toán
      */
     @GetMapping("/unpaid")
-    public ResponseEntity<List<Penalty>> getUnpaidPenalties() {
-        List<Penalty> penalties = penaltyService.getUnpaidPenalties();
+    public ResponseEntity<List<PenaltySummary>> getUnpaidPenalties() {
+        List<PenaltySummary> penalties = penaltyService.getUnpaidPenalties();
         return ResponseEntity.ok(penalties);
     }
     
@@ -93,17 +158,28 @@ public class PenaltyController {
      * Lấy danh sách phạt theo độc giả
      */
     @GetMapping("/reader/{readerId}")
-    public ResponseEntity<List<Penalty>> getPenaltiesByReader(@PathVariable Long readerId) {
-        List<Penalty> penalties = penaltyService.getPenaltiesByReaderId(readerId);
+    public ResponseEntity<List<PenaltySummary>> getPenaltiesByReader(@PathVariable Long readerId) {
+        List<PenaltySummary> penalties = penaltyService.getPenaltiesByReaderId(readerId);
         return ResponseEntity.ok(penalties);
     }
     
+    /**
+     * Sổ phạt của độc giả (mới nhất trước) kèm số dư còn nợ
+     */
+    @GetMapping("/reader/{readerId}/ledger")
+    public ResponseEntity<Map<String, Object>> getReaderLedger(
+            @PathVariable Long readerId,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(penaltyService.getReaderLedger(readerId, beforeId, size));
+    }
+    
     /**
      * Lấy danh sách phạt theo loại
      */
     @GetMapping("/type/{penaltyType}")
-    public ResponseEntity<List<Penalty>> getPenaltiesByType(@PathVariable Penalty.PenaltyType penaltyType) {
-        List<Penalty> penalties = penaltyService.getPenaltiesByType(penaltyType);
+    public ResponseEntity<List<PenaltySummary>> getPenaltiesByType(@PathVariable Penalty.PenaltyType penaltyType) {
+        List<PenaltySummary> penalties = penaltyService.getPenaltiesByType(penaltyType);
         return ResponseEntity.ok(penalties);
     }
     
@@ -111,9 +187,9 @@ public class PenaltyController {
      * Lấy danh sách phạt theo trạng thái thanh toán
      */
     @GetMapping("/payment-status/{paymentStatus}")
-    public ResponseEntity<List<Penalty>> getPenaltiesByPaymentStatus(
+    public ResponseEntity<List<PenaltySummary>> getPenaltiesByPaymentStatus(
             @PathVariable Penalty.PaymentStatus paymentStatus) {
-        List<Penalty> penalties = penaltyService.getPenaltiesByPaymentStatus(paymentStatus);
+        List<PenaltySummary> penalties = penaltyService.getPenaltiesByPaymentStatus(paymentStatus);
         return ResponseEntity.ok(penalties);
     }
     
@@ -124,4 +200,15 @@ public class PenaltyController {
         response.put("timestamp", System.currentTimeMillis());
         return response;
     }
-}
\ No newline at end of file
+    
+    // DTO Classes
+    @lombok.Data
+    public static class BulkPenaltyRequest {
+        private List<Long> penaltyIds;
+        private Long readerId;
+        // Phiên bản mong đợi theo ID phạt; phiếu không có trong map dùng phiên bản đọc được lúc xử lý
+        private Map<Long, Long> expectedVersions;
+        private String processedBy;
+        private String reason;
+    }
+}
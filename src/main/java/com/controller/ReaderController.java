@@ -1,5 +1,7 @@
 package com.controller;
 
+import com.dto.ReaderAccountSummary;
+import com.dto.ReaderSummary;
 import com.model.Reader;
 import com.service.ReaderService;
 import jakarta.validation.Valid;
@@ -9,6 +11,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +36,17 @@ public class ReaderController {
         }
     }
     
+    @PostMapping("/bulk")
+    public ResponseEntity<?> createReaders(@RequestBody List<Reader> readers) {
+        try {
+            Map<String, Object> result = readerService.createReaders(readers);
+            return ResponseEntity.status(HttpStatus.CREATED).body(result);
+        } catch (Exception e) {
+            log.error("Lỗi khi đăng ký độc giả hàng loạt: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<?> updateReader(@PathVariable Long id, @Valid @RequestBody Reader reader) {
         try {
@@ -56,8 +70,8 @@ public class ReaderController {
     }
     
     @GetMapping
-    public ResponseEntity<List<Reader>> getAllReaders() {
-        List<Reader> readers = readerService.getAllReaders();
+    public ResponseEntity<List<ReaderSummary>> getAllReaders() {
+        List<ReaderSummary> readers = readerService.getAllReaders();
         return ResponseEntity.ok(readers);
     }
     
@@ -73,10 +87,33 @@ public class ReaderController {
         }
     }
     
+    @GetMapping("/{id}/account")
+    public ResponseEntity<?> getReaderAccount(@PathVariable Long id) {
+        try {
+            ReaderAccountSummary account = readerService.getReaderAccount(id);
+            return ResponseEntity.ok(account);
+        } catch (Exception e) {
+            log.error("Lỗi khi lấy tổng quan tài khoản độc giả: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
+    /**
+     * Tìm độc giả, phân trang theo keyset (afterToken/afterId lấy từ nextAfterToken/nextAfterId của trang trước)
+     */
     @GetMapping("/search")
-    public ResponseEntity<List<Reader>> searchReaders(@RequestParam String keyword) {
-        List<Reader> readers = readerService.searchReaders(keyword);
-        return ResponseEntity.ok(readers);
+    public ResponseEntity<?> searchReaders(@RequestParam String keyword,
+                                           @RequestParam(required = false) String afterToken,
+                                           @RequestParam(required = false) Long afterId,
+                                           @RequestParam(defaultValue = "20") int size) {
+        try {
+            Map<String, Object> result = readerService.searchReaders(keyword, afterToken, afterId, size);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Lỗi khi tìm kiếm độc giả: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
     }
     
     @PutMapping("/{id}/renew")
@@ -90,6 +127,22 @@ public class ReaderController {
         }
     }
     
+    @PostMapping("/renew-bulk")
+    public ResponseEntity<?> renewReaderCards(@RequestBody BulkRenewRequest request) {
+        try {
+            Map<String, Object> result = readerService.renewReaderCards(
+                request.getReaderIds(),
+                request.getReaderCodePrefix(),
+                request.getExpiryDate(),
+                request.getMonths()
+            );
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Lỗi khi gia hạn thẻ hàng loạt: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
     private Map<String, Object> createErrorResponse(String message) {
         Map<String, Object> response = new HashMap<>();
         response.put("success", false);
@@ -105,4 +158,13 @@ public class ReaderController {
         response.put("timestamp", System.currentTimeMillis());
         return response;
     }
+    
+    // DTO Classes
+    @lombok.Data
+    public static class BulkRenewRequest {
+        private List<Long> readerIds;
+        private String readerCodePrefix;
+        private LocalDate expiryDate;
+        private Integer months;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.controller;
 
+import com.dto.ReservationSummary;
 import com.model.Reservation;
+import com.service.ReservationExpiryService;
 import com.service.ReservationService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -21,6 +23,7 @@ import java.util.Map;
 public class ReservationController {
     
     private final ReservationService reservationService;
+    private final ReservationExpiryService reservationExpiryService;
     
     /**
      * Tạo đặt trước sách
@@ -88,20 +91,29 @@ public class ReservationController {
     @PostMapping("/process-expired")
     public ResponseEntity<?> processExpiredReservations() {
         try {
-            reservationService.processExpiredReservations();
-            return ResponseEntity.ok(createSuccessResponse("Đã xử lý các đặt trước hết hạn"));
+            Map<String, Object> response = createSuccessResponse("Đã xử lý các đặt trước hết hạn");
+            response.putAll(reservationExpiryService.processExpiredReservations());
+            return ResponseEntity.ok(response);
         } catch (Exception e) {
             log.error("Lỗi khi xử lý hết hạn: {}", e.getMessage());
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
         }
     }
     
+    /**
+     * Số liệu của công việc xử lý đặt trước hết hạn
+     */
+    @GetMapping("/expiry-metrics")
+    public ResponseEntity<Map<String, Object>> getExpiryMetrics() {
+        return ResponseEntity.ok(reservationExpiryService.getMetrics());
+    }
+    
     /**
      * Lấy tất cả đặt trước
      */
     @GetMapping
-    public ResponseEntity<List<Reservation>> getAllReservations() {
-        List<Reservation> reservations = reservationService.getAllReservations();
+    public ResponseEntity<List<ReservationSummary>> getAllReservations() {
+        List<ReservationSummary> reservations = reservationService.getAllReservations();
         return ResponseEntity.ok(reservations);
     }
     
@@ -124,8 +136,8 @@ public class ReservationController {
      * Lấy đặt trước theo độc giả
      */
     @GetMapping("/reader/{readerId}")
-    public ResponseEntity<List<Reservation>> getReservationsByReader(@PathVariable Long readerId) {
-        List<Reservation> reservations = reservationService.getReservationsByReaderId(readerId);
+    public ResponseEntity<List<ReservationSummary>> getReservationsByReader(@PathVariable Long readerId) {
+        List<ReservationSummary> reservations = reservationService.getReservationsByReaderId(readerId);
         return ResponseEntity.ok(reservations);
     }
     
@@ -133,18 +145,58 @@ public class ReservationController {
      * Lấy đặt trước theo sách
      */
     @GetMapping("/book/{bookId}")
-    public ResponseEntity<List<Reservation>> getReservationsByBook(@PathVariable Long bookId) {
-        List<Reservation> reservations = reservationService.getReservationsByBookId(bookId);
+    public ResponseEntity<List<ReservationSummary>> getReservationsByBook(@PathVariable Long bookId) {
+        List<ReservationSummary> reservations = reservationService.getReservationsByBookId(bookId);
         return ResponseEntity.ok(reservations);
     }
     
+    /**
+     * Hàng đợi đặt trước của sách, theo thứ tự đặt
+     */
+    @GetMapping("/book/{bookId}/queue")
+    public ResponseEntity<List<ReservationSummary>> getHoldQueue(
+            @PathVariable Long bookId,
+            @RequestParam(defaultValue = "50") int limit) {
+        List<ReservationSummary> queue = reservationService.getHoldQueue(bookId, limit);
+        return ResponseEntity.ok(queue);
+    }
+    
+    /**
+     * Vị trí của đặt trước trong hàng đợi
+     */
+    @GetMapping("/{id}/queue-position")
+    public ResponseEntity<?> getQueuePosition(@PathVariable Long id) {
+        try {
+            Map<String, Object> position = reservationService.getQueuePosition(id);
+            return ResponseEntity.ok(position);
+        } catch (Exception e) {
+            log.error("Lỗi khi lấy vị trí hàng đợi: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
+    /**
+     * Ước tính ngày sách sẵn sàng cho đặt trước
+     */
+    @GetMapping("/{id}/pickup-estimate")
+    public ResponseEntity<?> getPickupEstimate(@PathVariable Long id) {
+        try {
+            Map<String, Object> estimate = reservationService.getPickupEstimate(id);
+            return ResponseEntity.ok(estimate);
+        } catch (Exception e) {
+            log.error("Lỗi khi ước tính ngày lấy sách: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
     /**
      * Lấy đặt trước theo trạng thái
      */
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<Reservation>> getReservationsByStatus(
+    public ResponseEntity<List<ReservationSummary>> getReservationsByStatus(
             @PathVariable Reservation.ReservationStatus status) {
-        List<Reservation> reservations = reservationService.getReservationsByStatus(status);
+        List<ReservationSummary> reservations = reservationService.getReservationsByStatus(status);
         return ResponseEntity.ok(reservations);
     }
     
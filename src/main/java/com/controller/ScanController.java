@@ -0,0 +1,61 @@
+package com.controller;
+
+import com.dto.BookScanResult;
+import com.dto.ReaderScanResult;
+import com.service.ScanService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/scan")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class ScanController {
+    
+    private final ScanService scanService;
+    
+    /**
+     * Quét mã sách: tồn kho và trạng thái
+     */
+    @GetMapping("/book/{bookCode}")
+    public ResponseEntity<?> scanBook(@PathVariable String bookCode) {
+        try {
+            BookScanResult result = scanService.scanBook(bookCode);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Lỗi khi quét mã sách: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
+    /**
+     * Quét thẻ độc giả: trạng thái thẻ, số sách đang mượn, phạt chưa thanh toán
+     */
+    @GetMapping("/reader/{readerCode}")
+    public ResponseEntity<?> scanReader(@PathVariable String readerCode) {
+        try {
+            ReaderScanResult result = scanService.scanReader(readerCode);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Lỗi khi quét thẻ độc giả: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
+    private Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", message);
+        response.put("timestamp", System.currentTimeMillis());
+        return response;
+    }
+}
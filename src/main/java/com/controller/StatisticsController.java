@@ -1,5 +1,8 @@
 package com.controller;
 
+import com.security.PasswordHashingService;
+import com.service.NotificationDispatcher;
+import com.service.RefreshTokenService;
 import com.service.StatisticsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,6 +22,9 @@ import java.util.Map;
 public class StatisticsController {
     
     private final StatisticsService statisticsService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final PasswordHashingService passwordHashingService;
+    private final RefreshTokenService refreshTokenService;
     
     /**
      * Lấy thống kê tổng quan dashboard
@@ -104,4 +110,37 @@ public class StatisticsController {
         Map<String, Object> report = statisticsService.getReportByDateRange(startDate, endDate);
         return ResponseEntity.ok(report);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Thống kê cache
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> stats = statisticsService.getCacheStats();
+        return ResponseEntity.ok(stats);
+    }
+    
+    /**
+     * Thống kê hàng đợi và kết quả gửi thông báo
+     */
+    @GetMapping("/notifications")
+    public ResponseEntity<Map<String, Object>> getNotificationStats() {
+        return ResponseEntity.ok(notificationDispatcher.getMetrics());
+    }
+    
+    /**
+     * Độ trễ, hàng đợi và số yêu cầu bị từ chối của pool băm mật khẩu
+     */
+    @GetMapping("/password-hashing")
+    public ResponseEntity<Map<String, Object>> getPasswordHashingStats() {
+        return ResponseEntity.ok(passwordHashingService.getMetrics());
+    }
+    
+    /**
+     * Số refresh token đang hiệu lực, số lần phát hiện dùng lại và số token hết hạn đã dọn
+     */
+    @GetMapping("/refresh-tokens")
+    public ResponseEntity<Map<String, Object>> getRefreshTokenStats() {
+        return ResponseEntity.ok(refreshTokenService.getMetrics());
+    }
+}
@@ -4,12 +4,15 @@ import com.model.UserAccount;
 import com.repository.UserRepository;
 import com.repository.RoleRepository;
 import com.model.Role;
+import com.security.PasswordHashingService;
+import com.security.TokenVersionRegistry;
+import com.security.UserDetailsCache;
+import com.service.RefreshTokenService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -27,7 +30,10 @@ public class UserController {
     
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final UserDetailsCache userDetailsCache;
+    private final RefreshTokenService refreshTokenService;
 
     /**
      * Lấy danh sách tất cả users
@@ -117,7 +123,7 @@ public class UserController {
             
             UserAccount user = UserAccount.builder()
                     .username(request.getUsername())
-                    .password(passwordEncoder.encode(request.getPassword()))
+                    .password(passwordHashingService.encode(request.getPassword()))
                     .email(request.getEmail())
                     .fullName(request.getFullName())
                     .phoneNumber(request.getPhoneNumber())
@@ -128,6 +134,8 @@ public class UserController {
             
             user.addRole(role);
             UserAccount savedUser = userRepository.save(user);
+            // Tên đăng nhập có thể vừa được cache là không tồn tại (hoặc thuộc tài khoản cũ đã xóa)
+            tokenVersionRegistry.invalidate(savedUser.getUsername());
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -151,11 +159,14 @@ public class UserController {
             UserAccount user = userRepository.findById(id)
                     .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng với ID: " + id));
             
-            String encodedPassword = passwordEncoder.encode(request.getNewPassword());
+            String encodedPassword = passwordHashingService.encode(request.getNewPassword());
             user.setPassword(encodedPassword);
             user.setFailedLoginAttempts(0);
             user.setAccountNonLocked(true);
+            user.bumpTokenVersion();
             userRepository.save(user);
+            tokenVersionRegistry.invalidate(user.getUsername());
+            userDetailsCache.evict(user.getUsername());
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -183,7 +194,10 @@ public class UserController {
             if (request.getAccountNonLocked()) {
                 user.setFailedLoginAttempts(0);
             }
+            user.bumpTokenVersion();
             userRepository.save(user);
+            tokenVersionRegistry.invalidate(user.getUsername());
+            userDetailsCache.evict(user.getUsername());
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -209,7 +223,10 @@ public class UserController {
                     .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng với ID: " + id));
             
             user.setEnabled(request.getEnabled());
+            user.bumpTokenVersion();
             userRepository.save(user);
+            tokenVersionRegistry.invalidate(user.getUsername());
+            userDetailsCache.evict(user.getUsername());
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -234,7 +251,10 @@ public class UserController {
                     .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng với ID: " + id));
             
             String username = user.getUsername();
+            refreshTokenService.deleteAllForUser(id);
             userRepository.delete(user);
+            tokenVersionRegistry.invalidate(username);
+            userDetailsCache.evict(id, username);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
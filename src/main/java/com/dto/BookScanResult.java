@@ -0,0 +1,16 @@
+package com.dto;
+
+import com.model.Book;
+
+/**
+ * Kết quả quét mã sách tại quầy
+ */
+public record BookScanResult(
+        Long id,
+        String bookCode,
+        String title,
+        Integer availableQuantity,
+        Book.BookStatus status,
+        boolean borrowable
+) {
+}
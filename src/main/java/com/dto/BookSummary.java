@@ -0,0 +1,22 @@
+package com.dto;
+
+import com.model.Book;
+
+/**
+ * Dữ liệu sách rút gọn cho các danh sách (không gồm mô tả)
+ */
+public record BookSummary(
+        Long id,
+        String bookCode,
+        String title,
+        String author,
+        String publisher,
+        Integer publishYear,
+        String category,
+        String isbn,
+        Integer totalQuantity,
+        Integer availableQuantity,
+        String imageUrl,
+        Book.BookStatus status
+) {
+}
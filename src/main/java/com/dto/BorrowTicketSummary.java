@@ -0,0 +1,25 @@
+package com.dto;
+
+import com.model.BorrowTicket;
+
+import java.time.LocalDate;
+
+/**
+ * Phiếu mượn rút gọn, chỉ kèm mã và tên của độc giả/sách thay vì toàn bộ entity
+ */
+public record BorrowTicketSummary(
+        Long id,
+        String ticketCode,
+        Long readerId,
+        String readerCode,
+        String readerName,
+        Long bookId,
+        String bookCode,
+        String bookTitle,
+        LocalDate borrowDate,
+        LocalDate dueDate,
+        LocalDate returnDate,
+        Integer quantity,
+        BorrowTicket.BorrowStatus status
+) {
+}
@@ -0,0 +1,7 @@
+package com.dto;
+
+/**
+ * Cặp mã (mã sách / mã độc giả) và ID dùng để dựng chỉ mục tra cứu trong bộ nhớ
+ */
+public record CodeIndexEntry(String code, Long id) {
+}
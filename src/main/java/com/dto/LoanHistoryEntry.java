@@ -0,0 +1,23 @@
+package com.dto;
+
+import com.model.BorrowTicket;
+
+import java.time.LocalDate;
+
+/**
+ * Một dòng trong lịch sử mượn của độc giả, từ bảng phiếu mượn hoặc bảng lưu trữ
+ */
+public record LoanHistoryEntry(
+        Long id,
+        String ticketCode,
+        Long bookId,
+        String bookCode,
+        String bookTitle,
+        LocalDate borrowDate,
+        LocalDate dueDate,
+        LocalDate returnDate,
+        Integer quantity,
+        BorrowTicket.BorrowStatus status,
+        boolean archived
+) {
+}
@@ -0,0 +1,17 @@
+package com.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Dữ liệu tối thiểu để dựng một thông báo: phiếu mượn sắp đến hạn hoặc đặt trước đã sẵn sàng
+ */
+public record NotificationTarget(
+        Long referenceId,
+        String referenceCode,
+        String readerName,
+        String email,
+        String phoneNumber,
+        String bookTitle,
+        LocalDate referenceDate
+) {
+}
@@ -0,0 +1,18 @@
+package com.dto;
+
+/**
+ * Kết quả xử lý một phiếu phạt trong thao tác hàng loạt; {@code version} là phiên bản hiện tại nếu biết
+ */
+public record PenaltyBulkOutcome(
+        Long penaltyId,
+        Outcome outcome,
+        Long version
+) {
+    public enum Outcome {
+        SETTLED,            // Đã thanh toán/miễn
+        NOT_FOUND,          // Không tồn tại
+        ALREADY_PAID,       // Đã thanh toán trước đó
+        ALREADY_WAIVED,     // Đã được miễn trước đó
+        VERSION_CONFLICT    // Phiên bản không khớp (đã bị sửa bởi thao tác khác)
+    }
+}
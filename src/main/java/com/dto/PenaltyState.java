@@ -0,0 +1,17 @@
+package com.dto;
+
+import com.model.Penalty;
+
+import java.math.BigDecimal;
+
+/**
+ * Trạng thái tối thiểu của một phiếu phạt dùng cho thanh toán/miễn phạt hàng loạt
+ */
+public record PenaltyState(
+        Long id,
+        Long readerId,
+        BigDecimal amount,
+        Penalty.PaymentStatus paymentStatus,
+        Long version
+) {
+}
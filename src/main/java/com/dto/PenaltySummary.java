@@ -0,0 +1,28 @@
+package com.dto;
+
+import com.model.Penalty;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Phiếu phạt rút gọn kèm mã phiếu mượn và độc giả liên quan
+ */
+public record PenaltySummary(
+        Long id,
+        Long borrowTicketId,
+        String ticketCode,
+        Long readerId,
+        String readerCode,
+        String readerName,
+        String bookTitle,
+        Penalty.PenaltyType penaltyType,
+        BigDecimal amount,
+        String reason,
+        Penalty.PaymentStatus paymentStatus,
+        LocalDate paymentDate,
+        String processedBy,
+        LocalDate createdAt,
+        Long version
+) {
+}
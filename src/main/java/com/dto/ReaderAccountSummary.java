@@ -0,0 +1,16 @@
+package com.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Tổng quan tài khoản độc giả cho kiosk: thẻ, sách đang mượn, đặt trước đang mở và số tiền phạt còn nợ
+ */
+public record ReaderAccountSummary(
+        ReaderCirculationStatus account,
+        List<BorrowTicketSummary> activeLoans,
+        LocalDate nextDueDate,
+        long overdueLoans,
+        List<ReservationSummary> openReservations
+) {
+}
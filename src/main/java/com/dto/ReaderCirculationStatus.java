@@ -0,0 +1,32 @@
+package com.dto;
+
+import com.model.Reader;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Trạng thái thẻ và tình hình mượn/phạt của độc giả, lấy trong một câu truy vấn
+ */
+public record ReaderCirculationStatus(
+        Long id,
+        String readerCode,
+        String fullName,
+        Reader.ReaderStatus status,
+        LocalDate expiryDate,
+        Long activeLoans,
+        Long unpaidPenaltyCount,
+        BigDecimal unpaidPenaltyAmount
+) {
+    public ReaderCirculationStatus {
+        if (activeLoans == null) {
+            activeLoans = 0L;
+        }
+        if (unpaidPenaltyCount == null) {
+            unpaidPenaltyCount = 0L;
+        }
+        if (unpaidPenaltyAmount == null) {
+            unpaidPenaltyAmount = BigDecimal.ZERO;
+        }
+    }
+}
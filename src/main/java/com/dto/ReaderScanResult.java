@@ -0,0 +1,24 @@
+package com.dto;
+
+import com.model.Reader;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Kết quả quét thẻ độc giả tại quầy, kèm lý do nếu không được mượn
+ */
+public record ReaderScanResult(
+        Long id,
+        String readerCode,
+        String fullName,
+        Reader.ReaderStatus status,
+        LocalDate expiryDate,
+        long activeLoans,
+        long unpaidPenaltyCount,
+        BigDecimal unpaidPenaltyAmount,
+        boolean eligible,
+        List<String> reasons
+) {
+}
@@ -0,0 +1,22 @@
+package com.dto;
+
+import com.model.Reader;
+
+import java.time.LocalDate;
+
+/**
+ * Dữ liệu độc giả rút gọn cho các danh sách
+ */
+public record ReaderSummary(
+        Long id,
+        String readerCode,
+        String fullName,
+        LocalDate dateOfBirth,
+        String gender,
+        String email,
+        String phoneNumber,
+        LocalDate issueDate,
+        LocalDate expiryDate,
+        Reader.ReaderStatus status
+) {
+}
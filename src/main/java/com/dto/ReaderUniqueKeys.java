@@ -0,0 +1,11 @@
+package com.dto;
+
+/**
+ * Các giá trị phải là duy nhất của một độc giả: mã độc giả, email, số điện thoại
+ */
+public record ReaderUniqueKeys(
+        String readerCode,
+        String email,
+        String phoneNumber
+) {
+}
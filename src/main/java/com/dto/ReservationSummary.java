@@ -0,0 +1,26 @@
+package com.dto;
+
+import com.model.Reservation;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Đặt trước rút gọn, chỉ kèm mã và tên của độc giả/sách
+ */
+public record ReservationSummary(
+        Long id,
+        String reservationCode,
+        Long readerId,
+        String readerCode,
+        String readerName,
+        Long bookId,
+        String bookCode,
+        String bookTitle,
+        LocalDateTime reservationDate,
+        LocalDate expiryDate,
+        LocalDateTime notifiedAt,
+        LocalDateTime fulfilledAt,
+        Reservation.ReservationStatus status
+) {
+}
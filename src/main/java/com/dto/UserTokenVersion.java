@@ -0,0 +1,10 @@
+package com.dto;
+
+/**
+ * ID và phiên bản token hiện tại của một tài khoản, dùng để kiểm tra access token mà không nạp cả người dùng
+ */
+public record UserTokenVersion(
+        Long userId,
+        Integer tokenVersion
+) {
+}
@@ -3,8 +3,10 @@ package com.model;
 import lombok.*;
 import java.time.LocalDate;
 import jakarta.persistence.*;
+import org.hibernate.annotations.NaturalId;
 import jakarta.validation.constraints.*;
 
+// Không dùng second-level cache của Hibernate: sách được cache một tầng duy nhất ở BookCacheService
 @Entity
 @Table(name = "books")
 @Data
@@ -17,6 +19,7 @@ public class Book {
     private Long id;
     
     @NotBlank(message = "Mã sách không được để trống")
+    @NaturalId
     @Column(unique = true, nullable = false, length = 50)
     private String bookCode;
     
@@ -0,0 +1,79 @@
+package com.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.*;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Một bản sách vật lý, có mã vạch và trạng thái riêng
+ */
+@Entity
+@Table(name = "book_copies", indexes = {
+    @Index(name = "idx_copy_book_status", columnList = "book_id, status"),
+    @Index(name = "idx_copy_borrow_ticket", columnList = "borrow_ticket_id"),
+    @Index(name = "idx_copy_hold_reservation", columnList = "hold_reservation_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookCopy {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_id", nullable = false)
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Book book;
+    
+    @Column(unique = true, nullable = false, length = 60)
+    private String barcode;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private CopyStatus status = CopyStatus.AVAILABLE;
+    
+    // Phiếu mượn đang giữ bản sách này (null khi bản sách ở trên kệ)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "borrow_ticket_id")
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private BorrowTicket borrowTicket;
+    
+    // Đặt trước đang được giữ bản sách này (chỉ khi status = ON_HOLD)
+    @Column(name = "hold_reservation_id")
+    private Long holdReservationId;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+    
+    public enum CopyStatus {
+        AVAILABLE,      // Trên kệ
+        ON_LOAN,        // Đang cho mượn
+        ON_HOLD,        // Đang giữ cho độc giả đặt trước
+        LOST,           // Đã mất
+        MAINTENANCE,    // Bảo trì
+        WITHDRAWN       // Đã thanh lý
+    }
+}
@@ -7,7 +7,9 @@ import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 
 @Entity
-@Table(name = "borrow_tickets")
+@Table(name = "borrow_tickets", indexes = {
+    @Index(name = "idx_borrow_open", columnList = "status, id, due_date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -21,12 +23,12 @@ public class BorrowTicket {
     @Column(unique = true, nullable = false, length = 50)
     private String ticketCode;
     
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "reader_id", nullable = false)
     @JsonIgnoreProperties({"borrowTickets", "hibernateLazyInitializer", "handler"})
     private Reader reader;
     
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "book_id", nullable = false)
     @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
     private Book book;
@@ -49,7 +51,7 @@ public class BorrowTicket {
     @Column(length = 100)
     private String returnedTo;
     
-    @OneToOne(mappedBy = "borrowTicket", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToOne(mappedBy = "borrowTicket", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonIgnoreProperties({"borrowTicket", "hibernateLazyInitializer", "handler"})
     private Penalty penalty;
     
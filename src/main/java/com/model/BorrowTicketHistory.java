@@ -0,0 +1,64 @@
+package com.model;
+
+import lombok.*;
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Phiếu mượn đã trả được chuyển khỏi bảng borrow_tickets sau một thời gian.
+ * Giữ nguyên ID phiếu gốc và lưu bản chụp mã/tên sách để tra cứu không cần join.
+ */
+@Entity
+@Table(name = "borrow_ticket_history", indexes = {
+    @Index(name = "idx_history_reader", columnList = "reader_id, id"),
+    @Index(name = "idx_history_book", columnList = "book_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BorrowTicketHistory {
+    
+    @Id
+    private Long id;
+    
+    @Column(nullable = false, length = 50)
+    private String ticketCode;
+    
+    @Column(name = "reader_id", nullable = false)
+    private Long readerId;
+    
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+    
+    @Column(length = 50)
+    private String bookCode;
+    
+    @Column(length = 200)
+    private String bookTitle;
+    
+    @Column(nullable = false)
+    private LocalDate borrowDate;
+    
+    @Column(nullable = false)
+    private LocalDate dueDate;
+    
+    private LocalDate returnDate;
+    
+    @Column(nullable = false)
+    private Integer quantity;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private BorrowTicket.BorrowStatus status;
+    
+    @Column(length = 100)
+    private String returnedTo;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDate createdAt;
+    
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
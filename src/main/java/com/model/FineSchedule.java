@@ -0,0 +1,32 @@
+package com.model;
+
+import lombok.*;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+
+/**
+ * Biểu phí phạt quá hạn theo loại độc giả. Được đồng bộ từ cấu hình khi khởi động
+ * để câu lệnh tính phạt hàng loạt có thể JOIN trực tiếp trong SQL.
+ */
+@Entity
+@Table(name = "fine_schedules")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FineSchedule {
+    
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reader_type", length = 20)
+    private Reader.ReaderType readerType;
+    
+    @Column(name = "fee_per_day", nullable = false, precision = 12, scale = 2)
+    private BigDecimal feePerDay;
+    
+    @Column(name = "grace_days", nullable = false)
+    private Integer graceDays;
+    
+    @Column(name = "max_per_ticket", nullable = false, precision = 12, scale = 2)
+    private BigDecimal maxPerTicket;
+}
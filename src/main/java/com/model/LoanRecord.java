@@ -0,0 +1,49 @@
+package com.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Subselect;
+import org.hibernate.annotations.Synchronize;
+
+import java.time.LocalDate;
+
+/**
+ * Phiếu mượn hiện hành và phiếu đã lưu trữ gộp làm một (giống view borrow_ticket_all), chỉ dùng cho báo cáo.
+ * Khai báo bằng subselect để chạy được cả khi schema do Hibernate sinh ra.
+ */
+@Entity
+@Immutable
+@Subselect("SELECT id, reader_id, book_id, borrow_date, due_date, return_date, quantity, status, FALSE AS archived " +
+           "FROM borrow_tickets " +
+           "UNION ALL " +
+           "SELECT id, reader_id, book_id, borrow_date, due_date, return_date, quantity, status, TRUE AS archived " +
+           "FROM borrow_ticket_history")
+@Synchronize({"borrow_tickets", "borrow_ticket_history"})
+@Getter
+@NoArgsConstructor
+public class LoanRecord {
+    
+    @Id
+    private Long id;
+    
+    @Column(name = "reader_id")
+    private Long readerId;
+    
+    @Column(name = "book_id")
+    private Long bookId;
+    
+    private LocalDate borrowDate;
+    
+    private LocalDate dueDate;
+    
+    private LocalDate returnDate;
+    
+    private Integer quantity;
+    
+    @Enumerated(EnumType.STRING)
+    private BorrowTicket.BorrowStatus status;
+    
+    private Boolean archived;
+}
@@ -0,0 +1,96 @@
+package com.model;
+
+import lombok.*;
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Thông báo chờ gửi (outbox). Được ghi trong transaction riêng theo từng lô
+ * và gửi bởi NotificationDispatcher với cơ chế thử lại.
+ */
+@Entity
+@Table(name = "notification_outbox", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_outbox_reference", columnNames = {"type", "reference_id", "reference_date"})
+}, indexes = {
+    @Index(name = "idx_outbox_dispatch", columnList = "status, next_attempt_at, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationOutbox {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private NotificationType type;
+    
+    // ID phiếu mượn hoặc đặt trước, cùng với ngày tham chiếu dùng để chống gửi trùng
+    @Column(name = "reference_id", nullable = false)
+    private Long referenceId;
+    
+    @Column(name = "reference_date", nullable = false)
+    private LocalDate referenceDate;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Channel channel;
+    
+    @Column(nullable = false, length = 100)
+    private String recipient;
+    
+    @Column(nullable = false, length = 200)
+    private String subject;
+    
+    @Column(nullable = false, length = 1000)
+    private String body;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    @Builder.Default
+    private OutboxStatus status = OutboxStatus.PENDING;
+    
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+    
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+    
+    @Column(length = 500)
+    private String lastError;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime sentAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+    
+    public enum NotificationType {
+        DUE_REMINDER,   // Nhắc hạn trả sách
+        HOLD_READY      // Sách đặt trước đã sẵn sàng
+    }
+    
+    public enum Channel {
+        EMAIL,
+        SMS
+    }
+    
+    public enum OutboxStatus {
+        PENDING,        // Chờ gửi
+        SENDING,        // Đang gửi (đã được nhận xử lý)
+        SENT,           // Đã gửi
+        FAILED          // Thất bại sau số lần thử tối đa
+    }
+}
@@ -0,0 +1,41 @@
+package com.model;
+
+import lombok.*;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Tiền phạt tạm tính của một phiếu mượn đang quá hạn, tính đến ngày {@code accruedThrough}.
+ * Dòng được tạo/cập nhật hằng đêm và bị xóa khi sách được trả hoặc báo mất.
+ */
+@Entity
+@Table(name = "overdue_accruals", indexes = {
+    @Index(name = "idx_accrual_reader", columnList = "reader_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OverdueAccrual {
+    
+    @Id
+    @Column(name = "borrow_ticket_id")
+    private Long borrowTicketId;
+    
+    @Column(name = "reader_id", nullable = false)
+    private Long readerId;
+    
+    @Column(name = "overdue_days", nullable = false)
+    private Integer overdueDays;
+    
+    @Column(name = "accrued_amount", nullable = false, precision = 12, scale = 2)
+    private BigDecimal accruedAmount;
+    
+    @Column(name = "accrued_through", nullable = false)
+    private LocalDate accruedThrough;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -1,5 +1,6 @@
 package com.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.*;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
@@ -17,8 +18,9 @@ public class Penalty {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "borrow_ticket_id", nullable = false)
+    @JsonIgnoreProperties({"penalty", "hibernateLazyInitializer", "handler"})
     private BorrowTicket borrowTicket;
     
     @Enumerated(EnumType.STRING)
@@ -46,6 +48,11 @@ public class Penalty {
     @Column(name = "updated_at")
     private LocalDate updatedAt;
     
+    // Khóa lạc quan: thanh toán/miễn phạt hàng loạt chỉ cập nhật phiếu còn đúng phiên bản đã đọc
+    @Version
+    @Column(nullable = false)
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDate.now();
@@ -0,0 +1,53 @@
+package com.model;
+
+import lombok.*;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Phiếu phạt đã thanh toán hoặc được miễn, chuyển khỏi bảng penalties cùng với phiếu mượn của nó.
+ * Giữ nguyên ID phiếu phạt gốc để khớp với các bút toán trong sổ phạt.
+ */
+@Entity
+@Table(name = "penalty_history", indexes = {
+    @Index(name = "idx_penalty_history_ticket", columnList = "borrow_ticket_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PenaltyHistory {
+    
+    @Id
+    private Long id;
+    
+    @Column(name = "borrow_ticket_id", nullable = false)
+    private Long borrowTicketId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Penalty.PenaltyType penaltyType;
+    
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+    
+    @Column(length = 500)
+    private String reason;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Penalty.PaymentStatus paymentStatus;
+    
+    private LocalDate paymentDate;
+    
+    @Column(length = 100)
+    private String processedBy;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDate createdAt;
+    
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
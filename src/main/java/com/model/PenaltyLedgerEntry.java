@@ -0,0 +1,61 @@
+package com.model;
+
+import lombok.*;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Một bút toán trong sổ phạt của độc giả: ghi nợ khi phát sinh phạt, ghi có khi thanh toán hoặc miễn.
+ * Không dùng khóa ngoại để sổ vẫn còn nguyên khi phiếu mượn được lưu trữ.
+ */
+@Entity
+@Table(name = "penalty_ledger", indexes = {
+    @Index(name = "idx_ledger_reader", columnList = "reader_id, id"),
+    @Index(name = "idx_ledger_penalty", columnList = "penalty_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PenaltyLedgerEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "reader_id", nullable = false)
+    private Long readerId;
+    
+    @Column(name = "penalty_id")
+    private Long penaltyId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private EntryType entryType;
+    
+    // Luôn dương; chiều tăng/giảm nợ do entryType quyết định
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal amount;
+    
+    @Column(name = "balance_after", nullable = false, precision = 12, scale = 2)
+    private BigDecimal balanceAfter;
+    
+    @Column(length = 100)
+    private String processedBy;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+    
+    public enum EntryType {
+        OPENING,    // Số dư đầu kỳ khi khởi tạo sổ
+        CHARGE,     // Phát sinh phạt
+        PAYMENT,    // Thanh toán
+        WAIVER      // Miễn phạt
+    }
+}
@@ -0,0 +1,40 @@
+package com.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Subselect;
+import org.hibernate.annotations.Synchronize;
+
+import java.math.BigDecimal;
+
+/**
+ * Phiếu phạt hiện hành và phiếu phạt đã lưu trữ gộp làm một (giống view penalty_all), chỉ dùng cho báo cáo.
+ */
+@Entity
+@Immutable
+@Subselect("SELECT id, borrow_ticket_id, penalty_type, amount, payment_status, FALSE AS archived FROM penalties " +
+           "UNION ALL " +
+           "SELECT id, borrow_ticket_id, penalty_type, amount, payment_status, TRUE AS archived FROM penalty_history")
+@Synchronize({"penalties", "penalty_history"})
+@Getter
+@NoArgsConstructor
+public class PenaltyRecord {
+    
+    @Id
+    private Long id;
+    
+    @Column(name = "borrow_ticket_id")
+    private Long borrowTicketId;
+    
+    @Enumerated(EnumType.STRING)
+    private Penalty.PenaltyType penaltyType;
+    
+    private BigDecimal amount;
+    
+    @Enumerated(EnumType.STRING)
+    private Penalty.PaymentStatus paymentStatus;
+    
+    private Boolean archived;
+}
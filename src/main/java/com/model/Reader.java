@@ -3,12 +3,23 @@ package com.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import jakarta.validation.constraints.*;
 import java.time.LocalDate;
 import java.util.List;
 
 @Entity
-@Table(name = "readers")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "readers")
+@NaturalIdCache(region = "readers-natural-id")
+@Table(name = "readers", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_readers_reader_code", columnNames = "reader_code"),
+    @UniqueConstraint(name = "uk_readers_email", columnNames = "email"),
+    @UniqueConstraint(name = "uk_readers_phone_number", columnNames = "phone_number")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -20,7 +31,8 @@ public class Reader {
     private Long id;
     
     @NotBlank(message = "Mã độc giả không được để trống")
-    @Column(unique = true, nullable = false, length = 50)
+    @NaturalId
+    @Column(nullable = false, length = 50)
     private String readerCode;
     
     @NotBlank(message = "Họ tên không được để trống")
@@ -59,6 +71,12 @@ public class Reader {
     @Column(nullable = false, length = 20)
     private ReaderStatus status = ReaderStatus.ACTIVE;
     
+    // Loại độc giả quyết định biểu phí phạt quá hạn; null được xem như STANDARD
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    @Builder.Default
+    private ReaderType readerType = ReaderType.STANDARD;
+    
     @Column(length = 255)
     private String avatarUrl;
     
@@ -89,4 +107,10 @@ public class Reader {
         SUSPENDED,
         BLOCKED
     }
+    
+    public enum ReaderType {
+        STANDARD,   // Độc giả thường
+        STUDENT,    // Học sinh, sinh viên
+        STAFF       // Cán bộ, giảng viên
+    }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.model;
+
+import lombok.*;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Số dư phạt còn nợ của độc giả, cập nhật cùng transaction với mỗi bút toán trong sổ phạt
+ */
+@Entity
+@Table(name = "reader_penalty_balances")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReaderPenaltyBalance {
+    
+    @Id
+    @Column(name = "reader_id")
+    private Long readerId;
+    
+    @Column(name = "outstanding_amount", nullable = false, precision = 12, scale = 2)
+    @Builder.Default
+    private BigDecimal outstandingAmount = BigDecimal.ZERO;
+    
+    @Column(name = "unpaid_count", nullable = false)
+    @Builder.Default
+    private Long unpaidCount = 0L;
+    
+    // Tổng tiền phạt tạm tính của các phiếu đang quá hạn (chưa trả sách), do FineAccrualService cập nhật
+    @Column(name = "accrued_amount", nullable = false, precision = 12, scale = 2)
+    @Builder.Default
+    private BigDecimal accruedAmount = BigDecimal.ZERO;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,46 @@
+package com.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.*;
+import jakarta.persistence.*;
+
+/**
+ * Một từ khóa đã chuẩn hóa (bỏ dấu, chữ thường) dùng để tìm kiếm độc giả theo tiền tố.
+ * Số điện thoại được lưu đảo ngược để tìm theo đuôi số cũng là tìm theo tiền tố.
+ */
+@Entity
+@Table(name = "reader_search_tokens", indexes = {
+    @Index(name = "idx_search_token", columnList = "token, reader_id"),
+    @Index(name = "idx_search_reader", columnList = "reader_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReaderSearchToken {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "reader_id", nullable = false)
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Reader reader;
+    
+    @Column(nullable = false, length = 100)
+    private String token;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private TokenType type;
+    
+    public enum TokenType {
+        NAME,           // Từng chữ trong họ tên
+        CODE,           // Mã độc giả
+        EMAIL,          // Email (tìm theo tiền tố)
+        PHONE           // Số điện thoại đảo ngược (tìm theo đuôi số)
+    }
+}
@@ -0,0 +1,47 @@
+package com.model;
+
+import lombok.*;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Refresh token đã cấp, lưu theo SHA-256 của token (không lưu token gốc).
+ * Mỗi lần đăng nhập mở một chuỗi (family) mới; mỗi lần refresh thu hồi token cũ và cấp token mới trong cùng chuỗi.
+ * Dùng lại một token đã bị thu hồi được coi là token bị lộ và cả chuỗi bị thu hồi.
+ */
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+    @Index(name = "idx_refresh_user", columnList = "user_id"),
+    @Index(name = "idx_refresh_family", columnList = "family_id"),
+    @Index(name = "idx_refresh_expires", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RefreshToken {
+
+    @Id
+    @Column(name = "token_hash", length = 64)
+    private String tokenHash;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Chuỗi token của một phiên đăng nhập (một thiết bị)
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+
+    @Column(name = "issued_at", nullable = false)
+    private LocalDateTime issuedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "revoked_at")
+    private LocalDateTime revokedAt;
+
+    // Hash của token thay thế khi được xoay vòng
+    @Column(name = "replaced_by", length = 64)
+    private String replacedBy;
+}
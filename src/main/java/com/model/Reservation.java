@@ -1,5 +1,6 @@
 package com.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.*;
 import jakarta.persistence.*;
@@ -7,7 +8,12 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "reservations")
+@Table(name = "reservations", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_reservation_active_hold", columnNames = {"reader_id", "book_id", "active_hold"})
+}, indexes = {
+    @Index(name = "idx_reservation_queue", columnList = "book_id, status, reservation_date, id"),
+    @Index(name = "idx_reservation_expiry", columnList = "status, expiry_date, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -21,12 +27,12 @@ public class Reservation {
     @Column(unique = true, nullable = false, length = 50)
     private String reservationCode;
     
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "reader_id", nullable = false)
     @JsonIgnoreProperties({"borrowTickets", "hibernateLazyInitializer", "handler"})
     private Reader reader;
     
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "book_id", nullable = false)
     @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
     private Book book;
@@ -48,6 +54,14 @@ public class Reservation {
     @Column(length = 500)
     private String notes;
     
+    // Cột sinh tự động: 1 khi đặt trước còn hiệu lực (PENDING/AVAILABLE), NULL khi đã kết thúc.
+    // Unique index (reader_id, book_id, active_hold) chỉ ràng buộc các đặt trước còn hiệu lực.
+    @Column(name = "active_hold", insertable = false, updatable = false,
+            columnDefinition = "TINYINT GENERATED ALWAYS AS (CASE WHEN status IN ('PENDING', 'AVAILABLE') THEN 1 END)")
+    @JsonIgnore
+    @ToString.Exclude
+    private Integer activeHold;
+    
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
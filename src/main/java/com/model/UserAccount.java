@@ -40,8 +40,8 @@ public class UserAccount {
     @Column(length = 15)
     private String phoneNumber;
     
-    // ✅ FIX: Đổi sang EAGER và thêm @Builder.Default
-    @ManyToMany(fetch = FetchType.EAGER)
+    // Roles được nạp theo từng use case (JOIN FETCH / @EntityGraph trong UserRepository)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
         name = "user_roles",
         joinColumns = @JoinColumn(name = "user_id"),
@@ -68,8 +68,11 @@ public class UserAccount {
     
     private LocalDateTime passwordChangedAt;
     
-    @Column(length = 500)
-    private String refreshToken;
+    // Phiên bản trạng thái tài khoản được ký trong JWT; tăng khi khóa, vô hiệu hóa,
+    // đổi quyền hoặc đổi mật khẩu để các token đã phát không còn hiệu lực
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer tokenVersion = 0;
     
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -104,6 +107,10 @@ public class UserAccount {
         }
     }
     
+    public void bumpTokenVersion() {
+        this.tokenVersion = (tokenVersion != null ? tokenVersion : 0) + 1;
+    }
+    
     public boolean hasRole(String roleName) {
         if (roles == null) return false;
         return roles.stream()
@@ -0,0 +1,86 @@
+package com.repository;
+
+import com.model.BookCopy;
+import com.model.BorrowTicket;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BookCopyRepository extends JpaRepository<BookCopy, Long> {
+    
+    List<BookCopy> findByBookIdOrderByBarcode(Long bookId);
+    
+    long countByBookIdAndStatus(Long bookId, BookCopy.CopyStatus status);
+    
+    long countByBookIdAndStatusNot(Long bookId, BookCopy.CopyStatus status);
+    
+    long countByBookId(Long bookId);
+    
+    // Khóa các bản sách còn trên kệ, bỏ qua những bản đang bị giao dịch khác khóa
+    @Query(value = "SELECT id FROM book_copies WHERE book_id = :bookId AND status = 'AVAILABLE' " +
+                   "LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockAvailableCopyIds(@Param("bookId") Long bookId, @Param("limit") int limit);
+    
+    @Modifying
+    @Query("UPDATE BookCopy c SET c.status = :status, c.borrowTicket = :ticket WHERE c.id IN :ids")
+    int assignToTicket(@Param("ids") Collection<Long> ids,
+                       @Param("ticket") BorrowTicket ticket,
+                       @Param("status") BookCopy.CopyStatus status);
+    
+    @Modifying
+    @Query("UPDATE BookCopy c SET c.status = 'ON_HOLD', c.holdReservationId = :reservationId " +
+           "WHERE c.id = :id AND c.status = 'AVAILABLE'")
+    int holdForReservation(@Param("id") Long id, @Param("reservationId") Long reservationId);
+    
+    // Người giữ chỗ mượn sách: bản sách đang giữ chuyển thẳng sang phiếu mượn
+    @Modifying
+    @Query("UPDATE BookCopy c SET c.status = 'ON_LOAN', c.borrowTicket = :ticket, c.holdReservationId = NULL " +
+           "WHERE c.holdReservationId = :reservationId AND c.status = 'ON_HOLD'")
+    int assignHeldToTicket(@Param("reservationId") Long reservationId, @Param("ticket") BorrowTicket ticket);
+    
+    @Modifying
+    @Query("UPDATE BookCopy c SET c.status = 'AVAILABLE', c.holdReservationId = NULL " +
+           "WHERE c.holdReservationId IN :reservationIds AND c.status = 'ON_HOLD'")
+    int releaseHeld(@Param("reservationIds") Collection<Long> reservationIds);
+    
+    @Query("SELECT DISTINCT c.book.id FROM BookCopy c WHERE c.holdReservationId IN :reservationIds")
+    List<Long> findBookIdsByHoldReservationIdIn(@Param("reservationIds") Collection<Long> reservationIds);
+    
+    @Modifying
+    @Query("UPDATE BookCopy c SET c.status = :status WHERE c.id IN :ids")
+    int updateStatusByIds(@Param("ids") Collection<Long> ids, @Param("status") BookCopy.CopyStatus status);
+    
+    @Modifying
+    @Query("UPDATE BookCopy c SET c.status = :status, c.borrowTicket = NULL WHERE c.borrowTicket = :ticket")
+    int releaseFromTicket(@Param("ticket") BorrowTicket ticket, @Param("status") BookCopy.CopyStatus status);
+    
+    // Chỉ chuyển các bản đang cho mượn theo phiếu, bản đã trả hoặc đã xử lý giữ nguyên
+    @Modifying
+    @Query("UPDATE BookCopy c SET c.status = :status WHERE c.borrowTicket = :ticket AND c.status = :currentStatus")
+    int updateStatusByTicket(@Param("ticket") BorrowTicket ticket,
+                             @Param("currentStatus") BookCopy.CopyStatus currentStatus,
+                             @Param("status") BookCopy.CopyStatus status);
+    
+    // Phiếu mượn tạo trước khi có bản sách: các bản ON_LOAN chưa gắn phiếu, trả lại kệ qua updateStatusByIds.
+    // Dùng JPQL thay cho UPDATE ... LIMIT native để Hibernate chỉ làm mới cache của BookCopy
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c.id FROM BookCopy c WHERE c.book.id = :bookId AND c.status = 'ON_LOAN' " +
+           "AND c.borrowTicket IS NULL ORDER BY c.id")
+    List<Long> findUnassignedLoanCopyIds(@Param("bookId") Long bookId, Limit limit);
+    
+    @Modifying
+    @Query("DELETE FROM BookCopy c WHERE c.book.id = :bookId")
+    int deleteByBookId(@Param("bookId") Long bookId);
+    
+    @Query("SELECT c.book.id, COUNT(c) FROM BookCopy c WHERE c.status = :status GROUP BY c.book.id")
+    List<Object[]> countByStatusGroupByBook(@Param("status") BookCopy.CopyStatus status);
+}
@@ -1,7 +1,10 @@
 package com.repository;
 
+import com.dto.BookSummary;
+import com.dto.CodeIndexEntry;
 import com.model.Book;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -10,9 +13,14 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
     
-    Optional<Book> findByBookCode(String bookCode);
+    String SUMMARY_SELECT = "SELECT new com.dto.BookSummary(b.id, b.bookCode, b.title, b.author, b.publisher, " +
+            "b.publishYear, b.category, b.isbn, b.totalQuantity, b.availableQuantity, b.imageUrl, b.status) " +
+            "FROM Book b ";
+    
+    @Query("SELECT b.id FROM Book b WHERE b.bookCode = :bookCode")
+    Optional<Long> findIdByBookCode(@Param("bookCode") String bookCode);
     
     List<Book> findByTitleContainingIgnoreCase(String title);
     
@@ -31,8 +39,47 @@ public interface BookRepository extends JpaRepository<Book, Long> {
            "LOWER(b.bookCode) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<Book> searchBooks(@Param("keyword") String keyword);
     
+    @Query(SUMMARY_SELECT)
+    List<BookSummary> findAllSummaries();
+    
+    @Query(SUMMARY_SELECT + "WHERE b.availableQuantity > 0")
+    List<BookSummary> findAvailableSummaries();
+    
+    @Query(SUMMARY_SELECT + "WHERE " +
+           "LOWER(b.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(b.author) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(b.bookCode) LIKE LOWER(CONCAT('%', :keyword, '%'))")
+    List<BookSummary> searchSummaries(@Param("keyword") String keyword);
+    
     boolean existsByBookCode(String bookCode);
     
+    @Query("SELECT new com.dto.CodeIndexEntry(b.bookCode, b.id) FROM Book b")
+    List<CodeIndexEntry> findAllCodeIndexEntries();
+    
     @Query("SELECT DISTINCT b.category FROM Book b WHERE b.category IS NOT NULL")
     List<String> findAllCategories();
+    
+    @Query("SELECT b FROM Book b WHERE NOT EXISTS (SELECT c.id FROM BookCopy c WHERE c.book = b)")
+    List<Book> findBooksWithoutCopies();
+    
+    @Query("SELECT b.id FROM Book b")
+    List<Long> findAllIds();
+    
+    // Chỉ ghi số lượng còn lại và trạng thái kho; không đụng tới các cột khác vừa được sửa ở giao dịch khác.
+    // Trả về 0 khi không có gì thay đổi
+    @Modifying
+    @Query("UPDATE Book b SET b.availableQuantity = :available, b.status = CASE " +
+           "WHEN :available = 0 AND b.status = com.model.Book.BookStatus.AVAILABLE " +
+           "THEN com.model.Book.BookStatus.OUT_OF_STOCK " +
+           "WHEN :available > 0 AND b.status = com.model.Book.BookStatus.OUT_OF_STOCK " +
+           "THEN com.model.Book.BookStatus.AVAILABLE " +
+           "ELSE b.status END " +
+           "WHERE b.id = :id AND (b.availableQuantity IS NULL OR b.availableQuantity <> :available " +
+           "OR (:available = 0 AND b.status = com.model.Book.BookStatus.AVAILABLE) " +
+           "OR (:available > 0 AND b.status = com.model.Book.BookStatus.OUT_OF_STOCK))")
+    int updateAvailability(@Param("id") Long id, @Param("available") int available);
+    
+    // Mỗi dòng: [bookId, availableQuantity, status], dùng để chỉ đối soát các đầu sách bị lệch
+    @Query("SELECT b.id, b.availableQuantity, b.status FROM Book b")
+    List<Object[]> findAvailabilityRows();
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.repository;
+
+import com.model.Book;
+
+import java.util.Optional;
+
+public interface BookRepositoryCustom {
+    
+    // Tra cứu theo natural id (mã sách)
+    Optional<Book> findByBookCode(String bookCode);
+}
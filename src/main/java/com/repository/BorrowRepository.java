@@ -1,29 +1,48 @@
 package com.repository;
 
+import com.dto.BorrowTicketSummary;
+import com.dto.LoanHistoryEntry;
 import com.model.BorrowTicket;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BorrowRepository extends JpaRepository<BorrowTicket, Long> {
     
+    String SUMMARY_SELECT = "SELECT new com.dto.BorrowTicketSummary(bt.id, bt.ticketCode, r.id, r.readerCode, " +
+            "r.fullName, b.id, b.bookCode, b.title, bt.borrowDate, bt.dueDate, bt.returnDate, bt.quantity, bt.status) " +
+            "FROM BorrowTicket bt JOIN bt.reader r JOIN bt.book b ";
+    
+    @EntityGraph(attributePaths = {"reader", "book", "penalty"})
+    Optional<BorrowTicket> findWithDetailsById(Long id);
+    
     List<BorrowTicket> findByReaderId(Long readerId);
     
     List<BorrowTicket> findByBookId(Long bookId);
     
     List<BorrowTicket> findByStatus(BorrowTicket.BorrowStatus status);
     
+    long countByStatus(BorrowTicket.BorrowStatus status);
+    
     @Query("SELECT COUNT(bt) FROM BorrowTicket bt WHERE bt.reader.id = :readerId AND bt.status = 'BORROWED'")
     long countActiveBorrowsByReaderId(@Param("readerId") Long readerId);
     
     @Query("SELECT bt FROM BorrowTicket bt WHERE bt.dueDate < :currentDate AND bt.status = 'BORROWED'")
     List<BorrowTicket> findOverdueTickets(@Param("currentDate") LocalDate currentDate);
     
+    @Query("SELECT COUNT(bt) FROM BorrowTicket bt WHERE bt.dueDate < :currentDate AND bt.status = 'BORROWED'")
+    long countOverdueTickets(@Param("currentDate") LocalDate currentDate);
+    
     @Query("SELECT bt FROM BorrowTicket bt WHERE " +
            "LOWER(bt.ticketCode) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
            "LOWER(bt.reader.fullName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
@@ -31,4 +50,54 @@ public interface BorrowRepository extends JpaRepository<BorrowTicket, Long> {
     List<BorrowTicket> searchBorrowTickets(@Param("keyword") String keyword);
     
     List<BorrowTicket> findByBorrowDateBetween(LocalDate startDate, LocalDate endDate);
+    
+    @Query(SUMMARY_SELECT)
+    List<BorrowTicketSummary> findAllSummaries();
+    
+    // Phân trang theo keyset: trang sau bắt đầu từ ID nhỏ hơn ID cuối của trang trước
+    @Query("SELECT new com.dto.LoanHistoryEntry(bt.id, bt.ticketCode, b.id, b.bookCode, b.title, " +
+           "bt.borrowDate, bt.dueDate, bt.returnDate, bt.quantity, bt.status, false) " +
+           "FROM BorrowTicket bt JOIN bt.book b WHERE bt.reader.id = :readerId AND bt.id < :beforeId " +
+           "ORDER BY bt.id DESC")
+    List<LoanHistoryEntry> findHistoryPage(@Param("readerId") Long readerId,
+                                           @Param("beforeId") Long beforeId,
+                                           Limit limit);
+    
+    // Phiếu đã trả đủ lâu, không còn phạt chưa thanh toán hay bản sách nào tham chiếu tới
+    @Query("SELECT bt.id FROM BorrowTicket bt WHERE bt.status = 'RETURNED' AND bt.returnDate < :cutoff " +
+           "AND bt.id > :afterId " +
+           "AND NOT EXISTS (SELECT p.id FROM Penalty p WHERE p.borrowTicket = bt AND p.paymentStatus = 'UNPAID') " +
+           "AND NOT EXISTS (SELECT c.id FROM BookCopy c WHERE c.borrowTicket = bt) " +
+           "ORDER BY bt.id")
+    List<Long> findArchivableIds(@Param("cutoff") LocalDate cutoff,
+                                 @Param("afterId") Long afterId,
+                                 Limit limit);
+    
+    // Mỗi dòng: [bookId, dueDate, quantity] của các lượt mượn chưa trả
+    @Query("SELECT bt.book.id, bt.dueDate, bt.quantity FROM BorrowTicket bt WHERE bt.status IN ('BORROWED', 'OVERDUE')")
+    List<Object[]> findOutstandingLoanDueDates();
+    
+    // Mỗi dòng: [bookId, số lượt đã trả, số lượt trả đúng hạn]
+    @Query("SELECT bt.book.id, COUNT(bt), SUM(CASE WHEN bt.returnDate <= bt.dueDate THEN 1 ELSE 0 END) " +
+           "FROM BorrowTicket bt WHERE bt.status = 'RETURNED' GROUP BY bt.book.id")
+    List<Object[]> countReturnsByBook();
+    
+    @Modifying
+    @Query("DELETE FROM BorrowTicket bt WHERE bt.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query(SUMMARY_SELECT + "WHERE r.id = :readerId")
+    List<BorrowTicketSummary> findSummariesByReaderId(@Param("readerId") Long readerId);
+    
+    @Query(SUMMARY_SELECT + "WHERE r.id = :readerId AND bt.status IN ('BORROWED', 'OVERDUE') ORDER BY bt.dueDate")
+    List<BorrowTicketSummary> findActiveSummariesByReaderId(@Param("readerId") Long readerId);
+    
+    @Query(SUMMARY_SELECT + "WHERE bt.dueDate < :currentDate AND bt.status = 'BORROWED'")
+    List<BorrowTicketSummary> findOverdueSummaries(@Param("currentDate") LocalDate currentDate);
+    
+    @Query(SUMMARY_SELECT + "WHERE " +
+           "LOWER(bt.ticketCode) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(r.fullName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(b.title) LIKE LOWER(CONCAT('%', :keyword, '%'))")
+    List<BorrowTicketSummary> searchSummaries(@Param("keyword") String keyword);
 }
\ No newline at end of file
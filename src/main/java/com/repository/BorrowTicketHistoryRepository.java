@@ -0,0 +1,27 @@
+package com.repository;
+
+import com.dto.LoanHistoryEntry;
+import com.model.BorrowTicketHistory;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BorrowTicketHistoryRepository extends JpaRepository<BorrowTicketHistory, Long>, BorrowTicketHistoryRepositoryCustom {
+    
+    @Query("SELECT new com.dto.LoanHistoryEntry(h.id, h.ticketCode, h.bookId, h.bookCode, h.bookTitle, " +
+           "h.borrowDate, h.dueDate, h.returnDate, h.quantity, h.status, true) " +
+           "FROM BorrowTicketHistory h WHERE h.readerId = :readerId AND h.id < :beforeId ORDER BY h.id DESC")
+    List<LoanHistoryEntry> findHistoryPage(@Param("readerId") Long readerId,
+                                           @Param("beforeId") Long beforeId,
+                                           Limit limit);
+    
+    // Mỗi dòng: [bookId, số lượt đã trả, số lượt trả đúng hạn]
+    @Query("SELECT h.bookId, COUNT(h), SUM(CASE WHEN h.returnDate <= h.dueDate THEN 1 ELSE 0 END) " +
+           "FROM BorrowTicketHistory h WHERE h.status = 'RETURNED' GROUP BY h.bookId")
+    List<Object[]> countReturnsByBook();
+}
@@ -0,0 +1,13 @@
+package com.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface BorrowTicketHistoryRepositoryCustom {
+    
+    /**
+     * Sao chép phiếu mượn sang bảng lưu trữ, kèm bản chụp mã và tên sách.
+     * Câu lệnh native khai báo bảng bị ảnh hưởng để Hibernate chỉ làm mới cache của hai entity liên quan.
+     */
+    int copyFromBorrowTickets(Collection<Long> ids, LocalDateTime archivedAt);
+}
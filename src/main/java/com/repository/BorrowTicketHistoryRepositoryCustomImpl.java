@@ -0,0 +1,34 @@
+package com.repository;
+
+import com.model.BorrowTicket;
+import com.model.BorrowTicketHistory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public class BorrowTicketHistoryRepositoryCustomImpl implements BorrowTicketHistoryRepositoryCustom {
+    
+    private static final String COPY_FROM_BORROW_TICKETS =
+            "INSERT INTO borrow_ticket_history (id, ticket_code, reader_id, book_id, book_code, book_title, " +
+            "borrow_date, due_date, return_date, quantity, status, returned_to, created_at, archived_at) " +
+            "SELECT bt.id, bt.ticket_code, bt.reader_id, bt.book_id, b.book_code, b.title, bt.borrow_date, " +
+            "bt.due_date, bt.return_date, bt.quantity, bt.status, bt.returned_to, bt.created_at, :archivedAt " +
+            "FROM borrow_tickets bt JOIN books b ON b.id = bt.book_id WHERE bt.id IN (:ids)";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public int copyFromBorrowTickets(Collection<Long> ids, LocalDateTime archivedAt) {
+        return entityManager.createNativeQuery(COPY_FROM_BORROW_TICKETS)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(BorrowTicketHistory.class)
+                .addSynchronizedEntityClass(BorrowTicket.class)
+                .setParameter("ids", ids)
+                .setParameter("archivedAt", archivedAt)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,10 @@
+package com.repository;
+
+import com.model.FineSchedule;
+import com.model.Reader;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface FineScheduleRepository extends JpaRepository<FineSchedule, Reader.ReaderType> {
+}
@@ -0,0 +1,47 @@
+package com.repository;
+
+import com.model.LoanRecord;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Truy vấn báo cáo trên phiếu mượn hiện hành và đã lưu trữ
+ */
+@Repository
+public interface LoanRecordRepository extends JpaRepository<LoanRecord, Long> {
+    
+    // Mỗi dòng: [bookId, số lượt mượn]
+    @Query("SELECT l.bookId, COUNT(l) FROM LoanRecord l GROUP BY l.bookId ORDER BY COUNT(l) DESC, l.bookId")
+    List<Object[]> countLoansByBook(Limit limit);
+    
+    // Mỗi dòng: [readerId, số lượt mượn]
+    @Query("SELECT l.readerId, COUNT(l) FROM LoanRecord l GROUP BY l.readerId ORDER BY COUNT(l) DESC, l.readerId")
+    List<Object[]> countLoansByReader(Limit limit);
+    
+    // Mỗi dòng: [tháng, tổng lượt mượn, đã trả, đang mượn]
+    @Query("SELECT EXTRACT(MONTH FROM l.borrowDate), COUNT(l), " +
+           "SUM(CASE WHEN l.status = 'RETURNED' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN l.status = 'BORROWED' THEN 1 ELSE 0 END) " +
+           "FROM LoanRecord l WHERE l.borrowDate BETWEEN :startDate AND :endDate " +
+           "GROUP BY EXTRACT(MONTH FROM l.borrowDate)")
+    List<Object[]> countLoansByMonth(@Param("startDate") LocalDate startDate,
+                                     @Param("endDate") LocalDate endDate);
+    
+    // Một dòng: [tổng lượt mượn, đã trả, đang mượn, quá hạn, số độc giả, số đầu sách]
+    @Query("SELECT COUNT(l), " +
+           "SUM(CASE WHEN l.status = 'RETURNED' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN l.status = 'BORROWED' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN (l.returnDate IS NOT NULL AND l.returnDate > l.dueDate) " +
+           "OR (l.returnDate IS NULL AND l.status = 'BORROWED' AND l.dueDate < :today) THEN 1 ELSE 0 END), " +
+           "COUNT(DISTINCT l.readerId), COUNT(DISTINCT l.bookId) " +
+           "FROM LoanRecord l WHERE l.borrowDate BETWEEN :startDate AND :endDate")
+    List<Object[]> summarizeLoans(@Param("startDate") LocalDate startDate,
+                                  @Param("endDate") LocalDate endDate,
+                                  @Param("today") LocalDate today);
+}
@@ -0,0 +1,84 @@
+package com.repository;
+
+import com.dto.NotificationTarget;
+import com.model.NotificationOutbox;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+    
+    // Phiếu mượn đến hạn vào ngày :dueDate chưa có nhắc hạn, phân trang theo ID phiếu.
+    // Chỉ lấy độc giả có email hoặc số điện thoại khác rỗng (TRIM(NULL) <> '' không đúng nên NULL cũng bị loại)
+    @Query("SELECT new com.dto.NotificationTarget(bt.id, bt.ticketCode, r.fullName, r.email, r.phoneNumber, " +
+           "b.title, bt.dueDate) " +
+           "FROM BorrowTicket bt JOIN bt.reader r JOIN bt.book b " +
+           "WHERE bt.status = 'BORROWED' AND bt.dueDate = :dueDate AND bt.id > :afterId " +
+           "AND (TRIM(r.email) <> '' OR TRIM(r.phoneNumber) <> '') " +
+           "AND NOT EXISTS (SELECT o.id FROM NotificationOutbox o " +
+           "WHERE o.type = com.model.NotificationOutbox.NotificationType.DUE_REMINDER " +
+           "AND o.referenceId = bt.id AND o.referenceDate = bt.dueDate) " +
+           "ORDER BY bt.id")
+    List<NotificationTarget> findDueReminderTargets(@Param("dueDate") LocalDate dueDate,
+                                                    @Param("afterId") Long afterId,
+                                                    Limit limit);
+    
+    // Đặt trước đã sẵn sàng chưa được báo, phân trang theo ID đặt trước
+    @Query("SELECT new com.dto.NotificationTarget(rs.id, rs.reservationCode, r.fullName, r.email, r.phoneNumber, " +
+           "b.title, rs.expiryDate) " +
+           "FROM Reservation rs JOIN rs.reader r JOIN rs.book b " +
+           "WHERE rs.status = 'AVAILABLE' AND rs.id > :afterId " +
+           "AND (TRIM(r.email) <> '' OR TRIM(r.phoneNumber) <> '') " +
+           "AND NOT EXISTS (SELECT o.id FROM NotificationOutbox o " +
+           "WHERE o.type = com.model.NotificationOutbox.NotificationType.HOLD_READY " +
+           "AND o.referenceId = rs.id AND o.referenceDate = rs.expiryDate) " +
+           "ORDER BY rs.id")
+    List<NotificationTarget> findHoldReadyTargets(@Param("afterId") Long afterId, Limit limit);
+    
+    // Nhận một lô thông báo đến lượt gửi; dòng SENDING quá hạn thuê (node trước bị dừng) cũng được nhận lại
+    @Query(value = "SELECT id FROM notification_outbox WHERE status IN ('PENDING', 'SENDING') " +
+                   "AND next_attempt_at <= :now ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    @Modifying
+    @Query("UPDATE NotificationOutbox o SET o.status = :status, o.nextAttemptAt = :leaseUntil WHERE o.id IN :ids")
+    int markSending(@Param("ids") Collection<Long> ids,
+                    @Param("status") NotificationOutbox.OutboxStatus status,
+                    @Param("leaseUntil") LocalDateTime leaseUntil);
+    
+    @Modifying
+    @Query("UPDATE NotificationOutbox o SET o.status = :status, o.sentAt = :sentAt, " +
+           "o.attempts = o.attempts + 1, o.lastError = NULL WHERE o.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids,
+                 @Param("status") NotificationOutbox.OutboxStatus status,
+                 @Param("sentAt") LocalDateTime sentAt);
+    
+    @Modifying
+    @Query("UPDATE NotificationOutbox o SET o.status = :status, o.attempts = :attempts, " +
+           "o.nextAttemptAt = :nextAttemptAt, o.lastError = :lastError WHERE o.id = :id")
+    int markAttemptFailed(@Param("id") Long id,
+                          @Param("status") NotificationOutbox.OutboxStatus status,
+                          @Param("attempts") int attempts,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                          @Param("lastError") String lastError);
+    
+    long countByStatus(NotificationOutbox.OutboxStatus status);
+    
+    @Query("SELECT o.id FROM NotificationOutbox o WHERE o.status IN :statuses AND o.createdAt < :before ORDER BY o.id")
+    List<Long> findIdsByStatusInAndCreatedAtBefore(@Param("statuses") Collection<NotificationOutbox.OutboxStatus> statuses,
+                                                  @Param("before") LocalDateTime before,
+                                                  Limit limit);
+    
+    @Modifying
+    @Query("DELETE FROM NotificationOutbox o WHERE o.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
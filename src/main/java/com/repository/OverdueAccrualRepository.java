@@ -0,0 +1,31 @@
+package com.repository;
+
+import com.model.OverdueAccrual;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface OverdueAccrualRepository extends JpaRepository<OverdueAccrual, Long>, OverdueAccrualRepositoryCustom {
+    
+    // [ID phiếu, ID độc giả] của các phiếu đang mượn đã quá hạn, phân trang theo ID phiếu (idx_borrow_open)
+    @Query("SELECT bt.id, bt.reader.id FROM BorrowTicket bt " +
+           "WHERE bt.status = 'BORROWED' AND bt.id > :afterId AND bt.dueDate < :today ORDER BY bt.id")
+    List<Object[]> findOverdueTicketPage(@Param("today") LocalDate today,
+                                         @Param("afterId") Long afterId,
+                                         Limit limit);
+    
+    @Query("SELECT COALESCE(SUM(a.accruedAmount), 0) FROM OverdueAccrual a")
+    BigDecimal sumAccruedAmount();
+    
+    @Modifying
+    @Query("DELETE FROM OverdueAccrual a WHERE a.readerId = :readerId")
+    int deleteByReaderId(@Param("readerId") Long readerId);
+}
@@ -0,0 +1,14 @@
+package com.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface OverdueAccrualRepositoryCustom {
+    
+    // Tính và ghi đè tiền phạt tạm tính cho một lô phiếu trong một câu lệnh, theo biểu phí của loại độc giả
+    int upsertForTickets(Collection<Long> ticketIds, LocalDate today, LocalDateTime now);
+    
+    // Cộng lại tiền phạt tạm tính vào số dư của các độc giả trong lô
+    int refreshReaderBalances(Collection<Long> readerIds, LocalDateTime now);
+}
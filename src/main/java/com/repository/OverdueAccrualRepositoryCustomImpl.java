@@ -0,0 +1,68 @@
+package com.repository;
+
+import com.model.OverdueAccrual;
+import com.model.ReaderPenaltyBalance;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Các câu upsert native khai báo entity bị ghi để Hibernate chỉ làm mới cache của các entity đó.
+ * Dùng bí danh dòng ({@code AS new}) thay cho VALUES() đã bị MySQL 8.0.20 đánh dấu lỗi thời.
+ */
+public class OverdueAccrualRepositoryCustomImpl implements OverdueAccrualRepositoryCustom {
+    
+    private static final String UPSERT_FOR_TICKETS =
+            "INSERT INTO overdue_accruals " +
+            "(borrow_ticket_id, reader_id, overdue_days, accrued_amount, accrued_through, updated_at) " +
+            "SELECT * FROM (" +
+            "SELECT bt.id AS borrow_ticket_id, bt.reader_id AS reader_id, " +
+            "DATEDIFF(:today, bt.due_date) AS overdue_days, " +
+            "LEAST(s.max_per_ticket, s.fee_per_day * GREATEST(DATEDIFF(:today, bt.due_date) - s.grace_days, 0)) " +
+            "AS accrued_amount, :today AS accrued_through, :now AS updated_at " +
+            "FROM borrow_tickets bt " +
+            "JOIN readers r ON r.id = bt.reader_id " +
+            "JOIN fine_schedules s ON s.reader_type = COALESCE(r.reader_type, 'STANDARD') " +
+            "WHERE bt.id IN (:ticketIds) AND bt.status = 'BORROWED') AS new " +
+            "ON DUPLICATE KEY UPDATE overdue_days = new.overdue_days, " +
+            "accrued_amount = new.accrued_amount, accrued_through = new.accrued_through, " +
+            "updated_at = new.updated_at";
+    
+    private static final String REFRESH_READER_BALANCES =
+            "INSERT INTO reader_penalty_balances " +
+            "(reader_id, outstanding_amount, unpaid_count, accrued_amount, updated_at) " +
+            "SELECT * FROM (" +
+            "SELECT a.reader_id AS reader_id, 0 AS outstanding_amount, 0 AS unpaid_count, " +
+            "SUM(a.accrued_amount) AS accrued_amount, :now AS updated_at FROM overdue_accruals a " +
+            "WHERE a.reader_id IN (:readerIds) GROUP BY a.reader_id) AS new " +
+            "ON DUPLICATE KEY UPDATE accrued_amount = new.accrued_amount, updated_at = new.updated_at";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public int upsertForTickets(Collection<Long> ticketIds, LocalDate today, LocalDateTime now) {
+        return entityManager.createNativeQuery(UPSERT_FOR_TICKETS)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(OverdueAccrual.class)
+                .setParameter("ticketIds", ticketIds)
+                .setParameter("today", today)
+                .setParameter("now", now)
+                .executeUpdate();
+    }
+    
+    @Override
+    public int refreshReaderBalances(Collection<Long> readerIds, LocalDateTime now) {
+        return entityManager.createNativeQuery(REFRESH_READER_BALANCES)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(ReaderPenaltyBalance.class)
+                .addSynchronizedEntityClass(OverdueAccrual.class)
+                .setParameter("readerIds", readerIds)
+                .setParameter("now", now)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,9 @@
+package com.repository;
+
+import com.model.PenaltyHistory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PenaltyHistoryRepository extends JpaRepository<PenaltyHistory, Long>, PenaltyHistoryRepositoryCustom {
+}
@@ -0,0 +1,13 @@
+package com.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface PenaltyHistoryRepositoryCustom {
+    
+    /**
+     * Sao chép phiếu phạt đã thanh toán/miễn của các phiếu mượn sang bảng lưu trữ.
+     * Câu lệnh native khai báo bảng bị ảnh hưởng để Hibernate chỉ làm mới cache của hai entity liên quan.
+     */
+    int copySettledFromPenalties(Collection<Long> borrowTicketIds, LocalDateTime archivedAt);
+}
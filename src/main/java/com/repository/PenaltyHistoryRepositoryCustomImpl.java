@@ -0,0 +1,34 @@
+package com.repository;
+
+import com.model.Penalty;
+import com.model.PenaltyHistory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public class PenaltyHistoryRepositoryCustomImpl implements PenaltyHistoryRepositoryCustom {
+    
+    private static final String COPY_SETTLED_FROM_PENALTIES =
+            "INSERT INTO penalty_history (id, borrow_ticket_id, penalty_type, amount, reason, payment_status, " +
+            "payment_date, processed_by, created_at, archived_at) " +
+            "SELECT p.id, p.borrow_ticket_id, p.penalty_type, p.amount, p.reason, p.payment_status, " +
+            "p.payment_date, p.processed_by, p.created_at, :archivedAt " +
+            "FROM penalties p WHERE p.borrow_ticket_id IN (:ticketIds) AND p.payment_status <> 'UNPAID'";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public int copySettledFromPenalties(Collection<Long> borrowTicketIds, LocalDateTime archivedAt) {
+        return entityManager.createNativeQuery(COPY_SETTLED_FROM_PENALTIES)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(PenaltyHistory.class)
+                .addSynchronizedEntityClass(Penalty.class)
+                .setParameter("ticketIds", borrowTicketIds)
+                .setParameter("archivedAt", archivedAt)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,22 @@
+package com.repository;
+
+import com.model.PenaltyLedgerEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PenaltyLedgerRepository extends JpaRepository<PenaltyLedgerEntry, Long> {
+    
+    @Query("SELECT e FROM PenaltyLedgerEntry e WHERE e.readerId = :readerId AND e.id < :beforeId ORDER BY e.id DESC")
+    List<PenaltyLedgerEntry> findPage(@Param("readerId") Long readerId, @Param("beforeId") Long beforeId, Limit limit);
+    
+    @Modifying
+    @Query("DELETE FROM PenaltyLedgerEntry e WHERE e.readerId = :readerId")
+    int deleteByReaderId(@Param("readerId") Long readerId);
+}
@@ -0,0 +1,20 @@
+package com.repository;
+
+import com.model.PenaltyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Truy vấn báo cáo trên phiếu phạt hiện hành và đã lưu trữ
+ */
+@Repository
+public interface PenaltyRecordRepository extends JpaRepository<PenaltyRecord, Long> {
+    
+    // Mỗi dòng: [trạng thái thanh toán, loại phạt, số phiếu, tổng tiền]
+    @Query("SELECT p.paymentStatus, p.penaltyType, COUNT(p), SUM(p.amount) FROM PenaltyRecord p " +
+           "GROUP BY p.paymentStatus, p.penaltyType")
+    List<Object[]> summarizeByStatusAndType();
+}
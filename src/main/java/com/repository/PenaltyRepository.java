@@ -1,21 +1,37 @@
 package com.repository;
 
+import com.dto.PenaltyState;
+import com.dto.PenaltySummary;
 import com.model.Penalty;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PenaltyRepository extends JpaRepository<Penalty, Long> {
     
+    String SUMMARY_SELECT = "SELECT new com.dto.PenaltySummary(p.id, bt.id, bt.ticketCode, r.id, r.readerCode, " +
+            "r.fullName, b.title, p.penaltyType, p.amount, p.reason, p.paymentStatus, p.paymentDate, " +
+            "p.processedBy, p.createdAt, p.version) " +
+            "FROM Penalty p JOIN p.borrowTicket bt JOIN bt.reader r JOIN bt.book b ";
+    
+    @EntityGraph(attributePaths = {"borrowTicket", "borrowTicket.reader", "borrowTicket.book"})
+    Optional<Penalty> findWithDetailsById(Long id);
+    
     Optional<Penalty> findByBorrowTicketId(Long borrowTicketId);
     
     List<Penalty> findByPaymentStatus(Penalty.PaymentStatus paymentStatus);
     
+    long countByPaymentStatus(Penalty.PaymentStatus paymentStatus);
+    
     List<Penalty> findByPenaltyType(Penalty.PenaltyType penaltyType);
     
     @Query("SELECT p FROM Penalty p WHERE p.paymentStatus = 'UNPAID'")
@@ -23,4 +39,52 @@ public interface PenaltyRepository extends JpaRepository<Penalty, Long> {
     
     @Query("SELECT p FROM Penalty p JOIN p.borrowTicket bt WHERE bt.reader.id = :readerId")
     List<Penalty> findByReaderId(@Param("readerId") Long readerId);
+    
+    @Query("SELECT new com.dto.PenaltyState(p.id, bt.reader.id, p.amount, p.paymentStatus, p.version) " +
+           "FROM Penalty p JOIN p.borrowTicket bt WHERE p.id IN :ids")
+    List<PenaltyState> findStatesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT p.id FROM Penalty p JOIN p.borrowTicket bt " +
+           "WHERE bt.reader.id = :readerId AND p.paymentStatus = 'UNPAID' ORDER BY p.id")
+    List<Long> findUnpaidIdsByReaderId(@Param("readerId") Long readerId);
+    
+    // Chỉ cập nhật phiếu còn UNPAID và đúng phiên bản đã đọc; mỗi lần gọi là một câu UPDATE cho cả nhóm
+    @Modifying
+    @Query("UPDATE Penalty p SET p.paymentStatus = :status, p.paymentDate = :today, p.processedBy = :processedBy, " +
+           "p.updatedAt = :today, p.version = p.version + 1 " +
+           "WHERE p.id IN :ids AND p.version = :version AND p.paymentStatus = 'UNPAID'")
+    int settleByIds(@Param("ids") Collection<Long> ids,
+                    @Param("version") Long version,
+                    @Param("status") Penalty.PaymentStatus status,
+                    @Param("today") LocalDate today,
+                    @Param("processedBy") String processedBy);
+    
+    @Modifying
+    @Query("UPDATE Penalty p SET p.paymentStatus = :status, p.paymentDate = :today, p.processedBy = :processedBy, " +
+           "p.updatedAt = :today, p.version = p.version + 1, " +
+           "p.reason = SUBSTRING(CONCAT(COALESCE(p.reason, ''), :reasonSuffix), 1, 500) " +
+           "WHERE p.id IN :ids AND p.version = :version AND p.paymentStatus = 'UNPAID'")
+    int waiveByIds(@Param("ids") Collection<Long> ids,
+                   @Param("version") Long version,
+                   @Param("status") Penalty.PaymentStatus status,
+                   @Param("today") LocalDate today,
+                   @Param("processedBy") String processedBy,
+                   @Param("reasonSuffix") String reasonSuffix);
+    
+    // Phạt đã thanh toán/miễn của các phiếu được lưu trữ, sau khi đã chép sang penalty_history
+    @Modifying
+    @Query("DELETE FROM Penalty p WHERE p.borrowTicket.id IN :ticketIds AND p.paymentStatus <> 'UNPAID'")
+    int deleteSettledByBorrowTicketIdIn(@Param("ticketIds") Collection<Long> ticketIds);
+    
+    @Query(SUMMARY_SELECT)
+    List<PenaltySummary> findAllSummaries();
+    
+    @Query(SUMMARY_SELECT + "WHERE r.id = :readerId")
+    List<PenaltySummary> findSummariesByReaderId(@Param("readerId") Long readerId);
+    
+    @Query(SUMMARY_SELECT + "WHERE p.penaltyType = :penaltyType")
+    List<PenaltySummary> findSummariesByPenaltyType(@Param("penaltyType") Penalty.PenaltyType penaltyType);
+    
+    @Query(SUMMARY_SELECT + "WHERE p.paymentStatus = :paymentStatus")
+    List<PenaltySummary> findSummariesByPaymentStatus(@Param("paymentStatus") Penalty.PaymentStatus paymentStatus);
 }
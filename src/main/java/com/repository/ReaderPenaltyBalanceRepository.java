@@ -0,0 +1,32 @@
+package com.repository;
+
+import com.model.ReaderPenaltyBalance;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ReaderPenaltyBalanceRepository extends JpaRepository<ReaderPenaltyBalance, Long>, ReaderPenaltyBalanceRepositoryCustom {
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM ReaderPenaltyBalance b WHERE b.readerId = :readerId")
+    Optional<ReaderPenaltyBalance> findForUpdate(@Param("readerId") Long readerId);
+    
+    // [readerId, số phạt chưa thanh toán, tổng tiền] của các độc giả còn nợ nhưng chưa có số dư
+    @Query("SELECT bt.reader.id, COUNT(p), SUM(p.amount) FROM Penalty p JOIN p.borrowTicket bt " +
+           "WHERE p.paymentStatus = 'UNPAID' AND NOT EXISTS " +
+           "(SELECT b.readerId FROM ReaderPenaltyBalance b WHERE b.readerId = bt.reader.id) " +
+           "GROUP BY bt.reader.id")
+    List<Object[]> findUnpaidTotalsWithoutBalance();
+    
+    @Modifying
+    @Query("DELETE FROM ReaderPenaltyBalance b WHERE b.readerId = :readerId")
+    int deleteByReaderId(@Param("readerId") Long readerId);
+}
@@ -0,0 +1,10 @@
+package com.repository;
+
+public interface ReaderPenaltyBalanceRepositoryCustom {
+    
+    /**
+     * Tạo dòng số dư bằng 0 cho độc giả nếu chưa có (INSERT IGNORE), để bút toán đầu tiên luôn khóa được một dòng
+     * thay vì hai transaction cùng kiểm tra rồi cùng chèn
+     */
+    void createIfAbsent(Long readerId);
+}
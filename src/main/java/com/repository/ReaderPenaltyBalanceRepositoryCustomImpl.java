@@ -0,0 +1,29 @@
+package com.repository;
+
+import com.model.ReaderPenaltyBalance;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+
+import java.time.LocalDateTime;
+
+public class ReaderPenaltyBalanceRepositoryCustomImpl implements ReaderPenaltyBalanceRepositoryCustom {
+    
+    private static final String CREATE_IF_ABSENT =
+            "INSERT IGNORE INTO reader_penalty_balances " +
+            "(reader_id, outstanding_amount, unpaid_count, accrued_amount, updated_at) " +
+            "VALUES (:readerId, 0, 0, 0, :now)";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public void createIfAbsent(Long readerId) {
+        entityManager.createNativeQuery(CREATE_IF_ABSENT)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(ReaderPenaltyBalance.class)
+                .setParameter("readerId", readerId)
+                .setParameter("now", LocalDateTime.now())
+                .executeUpdate();
+    }
+}
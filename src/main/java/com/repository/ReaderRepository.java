@@ -1,18 +1,27 @@
 package com.repository;
 
+import com.dto.CodeIndexEntry;
+import com.dto.ReaderCirculationStatus;
+import com.dto.ReaderSummary;
+import com.dto.ReaderUniqueKeys;
 import com.model.Reader;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ReaderRepository extends JpaRepository<Reader, Long> {
+public interface ReaderRepository extends JpaRepository<Reader, Long>, ReaderRepositoryCustom {
     
-    Optional<Reader> findByReaderCode(String readerCode);
+    String SUMMARY_SELECT = "SELECT new com.dto.ReaderSummary(r.id, r.readerCode, r.fullName, r.dateOfBirth, " +
+            "r.gender, r.email, r.phoneNumber, r.issueDate, r.expiryDate, r.status) FROM Reader r ";
     
     Optional<Reader> findByEmail(String email);
     
@@ -20,12 +29,61 @@ public interface ReaderRepository extends JpaRepository<Reader, Long> {
     
     List<Reader> findByStatus(Reader.ReaderStatus status);
     
-    @Query("SELECT r FROM Reader r WHERE " +
-           "LOWER(r.fullName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-           "LOWER(r.readerCode) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-           "LOWER(r.email) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-           "r.phoneNumber LIKE CONCAT('%', :keyword, '%')")
-    List<Reader> searchReaders(@Param("keyword") String keyword);
+    long countByStatus(Reader.ReaderStatus status);
+    
+    @Query(SUMMARY_SELECT)
+    List<ReaderSummary> findAllSummaries();
+    
+    @Query(SUMMARY_SELECT + "WHERE r.id IN :ids")
+    List<ReaderSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT new com.dto.CodeIndexEntry(r.readerCode, r.id) FROM Reader r")
+    List<CodeIndexEntry> findAllCodeIndexEntries();
+    
+    @Query("SELECT new com.dto.ReaderCirculationStatus(r.id, r.readerCode, r.fullName, r.status, r.expiryDate, " +
+           "(SELECT COUNT(bt) FROM BorrowTicket bt WHERE bt.reader.id = r.id AND bt.status = 'BORROWED'), " +
+           "pb.unpaidCount, pb.outstandingAmount) " +
+           "FROM Reader r LEFT JOIN ReaderPenaltyBalance pb ON pb.readerId = r.id WHERE r.id = :readerId")
+    Optional<ReaderCirculationStatus> findCirculationStatus(@Param("readerId") Long readerId);
+    
+    // Một truy vấn cho cả ba khóa duy nhất của một lô độc giả
+    @Query("SELECT new com.dto.ReaderUniqueKeys(r.readerCode, r.email, r.phoneNumber) FROM Reader r " +
+           "WHERE r.readerCode IN :readerCodes OR r.email IN :emails OR r.phoneNumber IN :phoneNumbers")
+    List<ReaderUniqueKeys> findUniqueKeyConflicts(@Param("readerCodes") Collection<String> readerCodes,
+                                                  @Param("emails") Collection<String> emails,
+                                                  @Param("phoneNumbers") Collection<String> phoneNumbers);
+    
+    @Query("SELECT r.id FROM Reader r WHERE r.status = :status AND r.expiryDate < :today AND r.id > :afterId " +
+           "ORDER BY r.id")
+    List<Long> findIdsByStatusAndExpiredBefore(@Param("status") Reader.ReaderStatus status,
+                                               @Param("today") LocalDate today,
+                                               @Param("afterId") Long afterId,
+                                               Limit limit);
+    
+    // prefix phải được escape sẵn với ký tự thoát '!'
+    @Query("SELECT r.id FROM Reader r WHERE r.readerCode LIKE CONCAT(:prefix, '%') ESCAPE '!' AND r.id > :afterId " +
+           "ORDER BY r.id")
+    List<Long> findIdsByReaderCodePrefix(@Param("prefix") String prefix,
+                                         @Param("afterId") Long afterId,
+                                         Limit limit);
+    
+    @Modifying
+    @Query("UPDATE Reader r SET r.status = :newStatus, r.updatedAt = :today " +
+           "WHERE r.id IN :ids AND r.status = :currentStatus AND r.expiryDate < :today")
+    int expireCards(@Param("ids") Collection<Long> ids,
+                    @Param("currentStatus") Reader.ReaderStatus currentStatus,
+                    @Param("newStatus") Reader.ReaderStatus newStatus,
+                    @Param("today") LocalDate today);
+    
+    // Chỉ gia hạn thẻ đang hoạt động hoặc đã hết hạn, không rút ngắn hạn thẻ hiện có
+    @Modifying
+    @Query("UPDATE Reader r SET r.expiryDate = :expiryDate, r.status = :activeStatus, r.updatedAt = :today " +
+           "WHERE r.id IN :ids AND r.status IN :renewableStatuses AND r.expiryDate < :expiryDate")
+    int renewCards(@Param("ids") Collection<Long> ids,
+                   @Param("expiryDate") LocalDate expiryDate,
+                   @Param("activeStatus") Reader.ReaderStatus activeStatus,
+                   @Param("renewableStatuses") Collection<Reader.ReaderStatus> renewableStatuses,
+                   @Param("today") LocalDate today);
     
     boolean existsByReaderCode(String readerCode);
     
@@ -0,0 +1,30 @@
+package com.repository;
+
+import com.model.Reader;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface ReaderRepositoryCustom {
+    
+    // Tra cứu theo natural id, đi qua natural-id cache của Hibernate
+    Optional<Reader> findByReaderCode(String readerCode);
+    
+    /**
+     * Quét token khớp tiền tố một từ khóa theo đúng thứ tự idx_search_token (token, reader_id),
+     * bắt đầu sau con trỏ ({@code afterToken}, {@code afterReaderId}). Mỗi dòng: [token, readerId].
+     * {@code phoneSuffix} là từ khóa đảo ngược nếu từ khóa toàn chữ số, ngược lại là null.
+     */
+    List<Object[]> findTokenMatches(String tokenPrefix, String phoneSuffix,
+                                    String afterToken, Long afterReaderId, int limit);
+    
+    /**
+     * Kiểm tra các độc giả ứng viên: chỉ giữ độc giả có token khớp mọi từ khóa còn lại,
+     * và trả về token nhỏ nhất của họ khớp từ khóa dẫn đường (readerId -> token).
+     * Mỗi điều kiện chỉ tra theo idx_search_reader của đúng các ứng viên.
+     */
+    Map<Long, String> verifyCandidates(Collection<Long> readerIds, String tokenPrefix, String phoneSuffix,
+                                       List<String> otherPrefixes, List<String> otherPhoneSuffixes);
+}
@@ -0,0 +1,89 @@
+package com.repository;
+
+import com.model.Reader;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class ReaderRepositoryCustomImpl implements ReaderRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public Optional<Reader> findByReaderCode(String readerCode) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Reader.class)
+                .loadOptional(readerCode);
+    }
+    
+    @Override
+    public List<Object[]> findTokenMatches(String tokenPrefix, String phoneSuffix,
+                                           String afterToken, Long afterReaderId, int limit) {
+        // Điều kiện token >= con trỏ giữ truy vấn là một lần quét khoảng trên index, dừng ngay khi đủ limit
+        String jpql = "SELECT t.token, t.reader.id FROM ReaderSearchToken t WHERE " +
+                matchPredicate("t", "driver", phoneSuffix != null) +
+                " AND t.token >= :afterToken AND (t.token > :afterToken OR t.reader.id > :afterReaderId)" +
+                " ORDER BY t.token, t.reader.id";
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class)
+                .setParameter("afterToken", afterToken)
+                .setParameter("afterReaderId", afterReaderId);
+        bindMatch(query, "driver", tokenPrefix, phoneSuffix);
+        return query.setMaxResults(limit).getResultList();
+    }
+    
+    @Override
+    public Map<Long, String> verifyCandidates(Collection<Long> readerIds, String tokenPrefix, String phoneSuffix,
+                                              List<String> otherPrefixes, List<String> otherPhoneSuffixes) {
+        StringBuilder jpql = new StringBuilder("SELECT t.reader.id, MIN(t.token) FROM ReaderSearchToken t " +
+                "WHERE t.reader.id IN :readerIds AND ")
+                .append(matchPredicate("t", "driver", phoneSuffix != null));
+        for (int i = 0; i < otherPrefixes.size(); i++) {
+            String alias = "o" + i;
+            jpql.append(" AND EXISTS (SELECT ").append(alias).append(".id FROM ReaderSearchToken ").append(alias)
+                    .append(" WHERE ").append(alias).append(".reader.id = t.reader.id AND ")
+                    .append(matchPredicate(alias, "term" + i, otherPhoneSuffixes.get(i) != null)).append(")");
+        }
+        jpql.append(" GROUP BY t.reader.id");
+        
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class)
+                .setParameter("readerIds", readerIds);
+        bindMatch(query, "driver", tokenPrefix, phoneSuffix);
+        for (int i = 0; i < otherPrefixes.size(); i++) {
+            bindMatch(query, "term" + i, otherPrefixes.get(i), otherPhoneSuffixes.get(i));
+        }
+        
+        Map<Long, String> firstTokens = new HashMap<>();
+        for (Object[] row : query.getResultList()) {
+            firstTokens.put((Long) row[0], (String) row[1]);
+        }
+        return firstTokens;
+    }
+    
+    // Token thường khớp tiền tố từ khóa; token điện thoại (lưu đảo ngược) khớp tiền tố của từ khóa đảo ngược
+    private static String matchPredicate(String alias, String param, boolean withPhone) {
+        StringBuilder predicate = new StringBuilder("((").append(alias)
+                .append(".type <> com.model.ReaderSearchToken.TokenType.PHONE AND ").append(alias)
+                .append(".token LIKE :").append(param).append("Token ESCAPE '!')");
+        if (withPhone) {
+            predicate.append(" OR (").append(alias)
+                    .append(".type = com.model.ReaderSearchToken.TokenType.PHONE AND ").append(alias)
+                    .append(".token LIKE :").append(param).append("Phone ESCAPE '!')");
+        }
+        return predicate.append(")").toString();
+    }
+    
+    private static void bindMatch(TypedQuery<?> query, String param, String tokenPrefix, String phoneSuffix) {
+        query.setParameter(param + "Token", tokenPrefix + "%");
+        if (phoneSuffix != null) {
+            query.setParameter(param + "Phone", phoneSuffix + "%");
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.repository;
+
+import com.model.Reader;
+import com.model.ReaderSearchToken;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReaderSearchTokenRepository extends JpaRepository<ReaderSearchToken, Long> {
+    
+    @Modifying
+    @Query("DELETE FROM ReaderSearchToken t WHERE t.reader.id = :readerId")
+    int deleteByReaderId(@Param("readerId") Long readerId);
+    
+    @Query("SELECT r FROM Reader r WHERE r.id > :afterId " +
+           "AND NOT EXISTS (SELECT t.id FROM ReaderSearchToken t WHERE t.reader = r) ORDER BY r.id")
+    List<Reader> findReadersWithoutTokens(@Param("afterId") Long afterId, Limit limit);
+}
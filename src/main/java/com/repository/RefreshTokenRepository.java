@@ -0,0 +1,46 @@
+package com.repository;
+
+import com.model.RefreshToken;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+
+    // Chỉ thành công khi token chưa bị thu hồi: hai lần refresh đồng thời bằng cùng token thì chỉ một lần thắng
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.revokedAt = :now, t.replacedBy = :replacedBy " +
+           "WHERE t.tokenHash = :tokenHash AND t.revokedAt IS NULL")
+    int markRotated(@Param("tokenHash") String tokenHash,
+                    @Param("replacedBy") String replacedBy,
+                    @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.revokedAt = :now WHERE t.familyId = :familyId AND t.revokedAt IS NULL")
+    int revokeFamily(@Param("familyId") String familyId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.revokedAt = :now WHERE t.userId = :userId AND t.revokedAt IS NULL")
+    int revokeAllByUserId(@Param("userId") Long userId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken t WHERE t.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT t.tokenHash FROM RefreshToken t WHERE t.expiresAt < :now")
+    List<String> findExpiredHashes(@Param("now") LocalDateTime now, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken t WHERE t.tokenHash IN :tokenHashes")
+    int deleteByTokenHashIn(@Param("tokenHashes") Collection<String> tokenHashes);
+
+    long countByRevokedAtIsNullAndExpiresAtAfter(LocalDateTime now);
+}
@@ -1,20 +1,34 @@
 package com.repository;
 
+import com.dto.ReservationSummary;
 import com.model.Reservation;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
     
+    String SUMMARY_SELECT = "SELECT new com.dto.ReservationSummary(rs.id, rs.reservationCode, r.id, r.readerCode, " +
+            "r.fullName, b.id, b.bookCode, b.title, rs.reservationDate, rs.expiryDate, rs.notifiedAt, " +
+            "rs.fulfilledAt, rs.status) " +
+            "FROM Reservation rs JOIN rs.reader r JOIN rs.book b ";
+    
     Optional<Reservation> findByReservationCode(String reservationCode);
     
+    @EntityGraph(attributePaths = {"reader", "book"})
+    Optional<Reservation> findWithDetailsById(Long id);
+    
     List<Reservation> findByReaderId(Long readerId);
     
     List<Reservation> findByBookId(Long bookId);
@@ -25,15 +39,89 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     List<Reservation> findByReaderIdAndStatus(@Param("readerId") Long readerId, 
                                                @Param("status") Reservation.ReservationStatus status);
     
-    @Query("SELECT r FROM Reservation r WHERE r.book.id = :bookId AND r.status = 'PENDING'")
+    @Query("SELECT r FROM Reservation r WHERE r.book.id = :bookId AND r.status = 'PENDING' " +
+           "ORDER BY r.reservationDate, r.id")
     List<Reservation> findPendingReservationsByBookId(@Param("bookId") Long bookId);
     
-    @Query("SELECT r FROM Reservation r WHERE r.expiryDate < :currentDate AND r.status = 'PENDING'")
-    List<Reservation> findExpiredReservations(@Param("currentDate") LocalDate currentDate);
+    // Đầu hàng đợi của sách (theo idx_reservation_queue), bỏ qua dòng đang bị giao dịch khác khóa
+    // và các đặt trước đã quá hạn nhưng chưa được job hết hạn xử lý
+    @Query(value = "SELECT id FROM reservations WHERE book_id = :bookId AND status = 'PENDING' " +
+                   "AND expiry_date >= :today " +
+                   "ORDER BY reservation_date, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockQueueHeadIds(@Param("bookId") Long bookId, @Param("today") LocalDate today,
+                                @Param("limit") int limit);
+    
+    @Query("SELECT r.id FROM Reservation r WHERE r.reader.id = :readerId AND r.book.id = :bookId " +
+           "AND r.status = 'AVAILABLE'")
+    List<Long> findReadyHoldIds(@Param("readerId") Long readerId, @Param("bookId") Long bookId);
+    
+    @Modifying
+    @Query("UPDATE Reservation r SET r.status = :status, r.notifiedAt = :notifiedAt, " +
+           "r.expiryDate = :pickupExpiryDate, r.updatedAt = :notifiedAt WHERE r.id IN :ids")
+    int markAvailableByIds(@Param("ids") Collection<Long> ids,
+                           @Param("status") Reservation.ReservationStatus status,
+                           @Param("notifiedAt") LocalDateTime notifiedAt,
+                           @Param("pickupExpiryDate") LocalDate pickupExpiryDate);
+    
+    @Query("SELECT DISTINCT r.reader.id FROM Reservation r WHERE r.id IN :ids")
+    List<Long> findReaderIdsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Vị trí trong hàng đợi = số đặt trước PENDING của cùng sách đứng trước + 1
+    @Query("SELECT COUNT(r) + 1 FROM Reservation r WHERE r.book.id = :bookId AND r.status = 'PENDING' " +
+           "AND (r.reservationDate < :reservationDate OR (r.reservationDate = :reservationDate AND r.id < :id))")
+    long findQueuePosition(@Param("bookId") Long bookId,
+                           @Param("reservationDate") LocalDateTime reservationDate,
+                           @Param("id") Long id);
+    
+    long countByBookIdAndStatus(Long bookId, Reservation.ReservationStatus status);
+    
+    boolean existsByReaderIdAndBookIdAndStatusIn(Long readerId, Long bookId,
+                                                 Collection<Reservation.ReservationStatus> statuses);
     
-    @Query("SELECT r FROM Reservation r WHERE r.status = 'AVAILABLE' AND r.expiryDate < :currentDate")
-    List<Reservation> findExpiredAvailableReservations(@Param("currentDate") LocalDate currentDate);
+    // Lô đặt trước hết hạn, đọc theo đúng thứ tự idx_reservation_expiry (status, expiry_date, id):
+    // mỗi dòng là [id, bookId, expiryDate], dòng cuối làm con trỏ cho lô sau
+    @Query("SELECT r.id, r.book.id, r.expiryDate FROM Reservation r " +
+           "WHERE r.status = :status AND r.expiryDate < :currentDate ORDER BY r.expiryDate, r.id")
+    List<Object[]> findExpiredIdsAndBookIds(@Param("status") Reservation.ReservationStatus status,
+                                            @Param("currentDate") LocalDate currentDate,
+                                            Limit limit);
+    
+    @Query("SELECT r.id, r.book.id, r.expiryDate FROM Reservation r " +
+           "WHERE r.status = :status AND r.expiryDate < :currentDate AND r.expiryDate >= :afterDate " +
+           "AND (r.expiryDate > :afterDate OR r.id > :afterId) ORDER BY r.expiryDate, r.id")
+    List<Object[]> findExpiredIdsAndBookIdsAfter(@Param("status") Reservation.ReservationStatus status,
+                                                 @Param("currentDate") LocalDate currentDate,
+                                                 @Param("afterDate") LocalDate afterDate,
+                                                 @Param("afterId") Long afterId,
+                                                 Limit limit);
+    
+    @Modifying
+    @Query("UPDATE Reservation r SET r.status = :newStatus, r.updatedAt = :updatedAt " +
+           "WHERE r.id IN :ids AND r.status = :currentStatus")
+    int updateStatusByIds(@Param("ids") Collection<Long> ids,
+                          @Param("currentStatus") Reservation.ReservationStatus currentStatus,
+                          @Param("newStatus") Reservation.ReservationStatus newStatus,
+                          @Param("updatedAt") LocalDateTime updatedAt);
     
     @Query("SELECT COUNT(r) FROM Reservation r WHERE r.reader.id = :readerId AND r.status = 'PENDING'")
     long countPendingReservationsByReaderId(@Param("readerId") Long readerId);
+    
+    @Query(SUMMARY_SELECT)
+    List<ReservationSummary> findAllSummaries();
+    
+    @Query(SUMMARY_SELECT + "WHERE r.id = :readerId")
+    List<ReservationSummary> findSummariesByReaderId(@Param("readerId") Long readerId);
+    
+    @Query(SUMMARY_SELECT + "WHERE r.id = :readerId AND rs.status IN ('PENDING', 'AVAILABLE') " +
+           "ORDER BY rs.reservationDate")
+    List<ReservationSummary> findOpenSummariesByReaderId(@Param("readerId") Long readerId);
+    
+    @Query(SUMMARY_SELECT + "WHERE b.id = :bookId")
+    List<ReservationSummary> findSummariesByBookId(@Param("bookId") Long bookId);
+    
+    @Query(SUMMARY_SELECT + "WHERE b.id = :bookId AND rs.status = 'PENDING' ORDER BY rs.reservationDate, rs.id")
+    List<ReservationSummary> findQueueSummariesByBookId(@Param("bookId") Long bookId, Limit limit);
+    
+    @Query(SUMMARY_SELECT + "WHERE rs.status = :status")
+    List<ReservationSummary> findSummariesByStatus(@Param("status") Reservation.ReservationStatus status);
 }
\ No newline at end of file
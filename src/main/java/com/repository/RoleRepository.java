@@ -4,12 +4,8 @@ import com.model.Role;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
-
 @Repository
-public interface RoleRepository extends JpaRepository<Role, Long> {
-    
-    Optional<Role> findByName(String name);
+public interface RoleRepository extends JpaRepository<Role, Long>, RoleRepositoryCustom {
     
     boolean existsByName(String name);
 }
\ No newline at end of file
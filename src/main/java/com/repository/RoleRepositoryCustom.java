@@ -0,0 +1,11 @@
+package com.repository;
+
+import com.model.Role;
+
+import java.util.Optional;
+
+public interface RoleRepositoryCustom {
+    
+    // Tra cứu theo natural id, đi qua natural-id cache của Hibernate
+    Optional<Role> findByName(String name);
+}
@@ -1,6 +1,8 @@
 package com.repository;
 
+import com.dto.UserTokenVersion;
 import com.model.UserAccount;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,13 +14,22 @@ import java.util.Optional;
 @Repository
 public interface UserRepository extends JpaRepository<UserAccount, Long> {
     
-    // ✅ FIX: Eager load roles để tránh lazy loading exception
+    // Nạp roles cùng user trong một câu truy vấn (roles là LAZY)
     @Query("SELECT DISTINCT u FROM UserAccount u LEFT JOIN FETCH u.roles WHERE u.username = :username")
     Optional<UserAccount> findByUsername(@Param("username") String username);
     
-    Optional<UserAccount> findByEmail(String email);
+    @Override
+    @EntityGraph(attributePaths = "roles")
+    Optional<UserAccount> findById(Long id);
+    
+    @Override
+    @EntityGraph(attributePaths = "roles")
+    List<UserAccount> findAll();
     
-    Optional<UserAccount> findByRefreshToken(String refreshToken);
+    @Query("SELECT new com.dto.UserTokenVersion(u.id, u.tokenVersion) FROM UserAccount u WHERE u.username = :username")
+    Optional<UserTokenVersion> findTokenVersionByUsername(@Param("username") String username);
+    
+    Optional<UserAccount> findByEmail(String email);
     
     boolean existsByUsername(String username);
     
@@ -29,7 +40,7 @@ public interface UserRepository extends JpaRepository<UserAccount, Long> {
     @Query("SELECT u FROM UserAccount u JOIN u.roles r WHERE r.name = :roleName")
     List<UserAccount> findByRoleName(@Param("roleName") String roleName);
     
-    @Query("SELECT u FROM UserAccount u WHERE " +
+    @Query("SELECT DISTINCT u FROM UserAccount u LEFT JOIN FETCH u.roles WHERE " +
            "LOWER(u.username) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
            "LOWER(u.fullName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
            "LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%'))")
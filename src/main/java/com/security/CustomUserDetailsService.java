@@ -12,7 +12,6 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -24,10 +23,25 @@ import java.util.List;
 public class CustomUserDetailsService implements UserDetailsService {
     
     private final UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
     
+    /**
+     * Tra cứu qua cache; chỉ khi trượt mới đọc DB. Repository nạp roles bằng fetch join
+     * nên không cần mở transaction cho mỗi lần gọi.
+     */
     @Override
-    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        return userDetailsCache.get(username, this::loadFromDatabase);
+    }
+    
+    public UserDetails loadUserById(Long id) {
+        String username = userDetailsCache.getUsername(id, key -> userRepository.findById(key)
+                .map(UserAccount::getUsername)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + key)));
+        return loadUserByUsername(username);
+    }
+    
+    private UserDetails loadFromDatabase(String username) {
         log.info("Loading user by username: {}", username);
         
         UserAccount user = userRepository.findByUsername(username)
@@ -35,7 +49,7 @@ public class CustomUserDetailsService implements UserDetailsService {
         
         log.info("User found: {}, roles size: {}", user.getUsername(), user.getRoles() != null ? user.getRoles().size() : 0);
         
-        // ✅ FIX: Lấy authorities TRONG transaction để tránh lazy loading issue
+        // roles đã được fetch join cùng user nên đọc ngoài transaction vẫn an toàn
         Collection<? extends GrantedAuthority> authorities = getAuthorities(user);
         
         log.info("Authorities loaded: {}", authorities);
@@ -54,26 +68,6 @@ public class CustomUserDetailsService implements UserDetailsService {
         return userDetails;
     }
     
-    @Transactional(readOnly = true)
-    public UserDetails loadUserById(Long id) {
-        log.info("Loading user by id: {}", id);
-        
-        UserAccount user = userRepository.findById(id)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + id));
-        
-        Collection<? extends GrantedAuthority> authorities = getAuthorities(user);
-        
-        return User.builder()
-                .username(user.getUsername())
-                .password(user.getPassword())
-                .authorities(authorities)
-                .accountExpired(false)
-                .accountLocked(!user.getAccountNonLocked())
-                .credentialsExpired(false)
-                .disabled(!user.getEnabled())
-                .build();
-    }
-    
     // ✅ FIX: Method riêng để xử lý authorities an toàn
     private Collection<? extends GrantedAuthority> getAuthorities(UserAccount user) {
         List<GrantedAuthority> authorities = new ArrayList<>();
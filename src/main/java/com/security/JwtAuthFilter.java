@@ -1,5 +1,6 @@
 package com.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,6 +9,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
@@ -15,6 +17,7 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
@@ -22,7 +25,8 @@ import java.io.IOException;
 public class JwtAuthFilter extends OncePerRequestFilter {
     
     private final JwtTokenProvider jwtTokenProvider;
-    private final CustomUserDetailsService customUserDetailsService;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final TokenRevocationList tokenRevocationList;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, 
@@ -30,11 +34,25 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = getJwtFromRequest(request);
+            Optional<Claims> claims = StringUtils.hasText(jwt)
+                    ? jwtTokenProvider.parseVerifiedClaims(jwt)
+                    : Optional.empty();
             
-            if (StringUtils.hasText(jwt) && jwtTokenProvider.validateToken(jwt)) {
-                String username = jwtTokenProvider.getUsernameFromToken(jwt);
+            // Refresh token chỉ dùng cho /auth/refresh, không được dùng như access token.
+            // Quyền lấy từ token; chỉ kiểm tra danh sách thu hồi trong bộ nhớ (token đã đăng xuất)
+            // và phiên bản tài khoản (đã cache) để thu hồi token cũ.
+            if (claims.isPresent()
+                    && !jwtTokenProvider.isRefreshToken(claims.get())
+                    && !tokenRevocationList.isRevoked(claims.get().getId())
+                    && tokenVersionRegistry.isCurrent(claims.get().getSubject(),
+                            jwtTokenProvider.getUserId(claims.get()),
+                            jwtTokenProvider.getTokenVersion(claims.get()))) {
+                String username = claims.get().getSubject();
                 
-                UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = User.withUsername(username)
+                        .password("")
+                        .authorities(jwtTokenProvider.getAuthorities(claims.get()))
+                        .build();
                 UsernamePasswordAuthenticationToken authentication = 
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
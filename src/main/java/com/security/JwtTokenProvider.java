@@ -1,81 +1,157 @@
 package com.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.model.Role;
+import com.model.UserAccount;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Tạo và xác thực JWT. Khóa ký và parser được dựng một lần; mỗi token chỉ được parse và kiểm tra chữ ký
+ * một lần, sau đó claims đã xác thực được cache theo SHA-256 của token cho tới khi token hết hạn.
+ * Access token chứa quyền ({@code roles}), ID tài khoản ({@code uid}) và phiên bản tài khoản ({@code ver});
+ * refresh token có {@code typ=refresh}.
+ */
 @Component
 @Slf4j
 public class JwtTokenProvider {
     
-    @Value("${jwt.secret:mySecretKeyForLibraryManagementSystemMustBeLongEnoughForHS256Algorithm}")
-    private String jwtSecret;
+    private static final String CLAIM_ROLES = "roles";
+    private static final String CLAIM_TOKEN_VERSION = "ver";
+    private static final String CLAIM_USER_ID = "uid";
+    private static final String CLAIM_TOKEN_TYPE = "typ";
+    private static final String TOKEN_TYPE_REFRESH = "refresh";
     
-    @Value("${jwt.expiration:86400000}") // 24 hours
-    private long jwtExpirationMs;
+    private final long jwtExpirationMs;
+    private final long refreshTokenExpirationMs;
+    private final SecretKey signingKey;
+    private final JwtParser jwtParser;
+    private final Cache<String, Claims> verifiedClaims;
     
-    @Value("${jwt.refresh-expiration:604800000}") // 7 days
-    private long refreshTokenExpirationMs;
-    
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = jwtSecret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-    
-    public String generateToken(Authentication authentication) {
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        return generateToken(userDetails.getUsername());
+    public JwtTokenProvider(
+            @Value("${jwt.secret:mySecretKeyForLibraryManagementSystemMustBeLongEnoughForHS256Algorithm}") String jwtSecret,
+            @Value("${jwt.expiration:86400000}") long jwtExpirationMs, // 24 hours
+            @Value("${jwt.refresh-expiration:604800000}") long refreshTokenExpirationMs, // 7 days
+            @Value("${jwt.claims-cache.max-size:10000}") long claimsCacheMaxSize) {
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.refreshTokenExpirationMs = refreshTokenExpirationMs;
+        this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        return untilExpiration(claims);
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return untilExpiration(claims);
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
     }
     
-    public String generateToken(String username) {
+    /**
+     * Access token mang sẵn danh sách quyền và phiên bản tài khoản để filter dựng Authentication
+     * mà không cần truy vấn người dùng. {@code user.roles} phải đã được nạp.
+     * {@code jti} ngẫu nhiên cho phép thu hồi riêng token này khi đăng xuất.
+     */
+    public String generateToken(UserAccount user) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
+        List<String> roles = user.getRoles().stream()
+                .map(Role::getName)
+                .sorted()
+                .toList();
         
         return Jwts.builder()
-                .setSubject(username)
+                .setId(UUID.randomUUID().toString())
+                .setSubject(user.getUsername())
+                .claim(CLAIM_ROLES, roles)
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_TOKEN_VERSION, user.getTokenVersion())
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
-    public String generateRefreshToken(String username) {
+    public String generateRefreshToken(UserAccount user) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + refreshTokenExpirationMs);
         
+        // jti giúp hai refresh token cấp cùng giây cho cùng người dùng (nhiều thiết bị) vẫn khác nhau
         return Jwts.builder()
-                .setSubject(username)
+                .setId(UUID.randomUUID().toString())
+                .setSubject(user.getUsername())
+                .claim(CLAIM_TOKEN_TYPE, TOKEN_TYPE_REFRESH)
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_TOKEN_VERSION, user.getTokenVersion())
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
-    public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        
-        return claims.getSubject();
+    public List<GrantedAuthority> getAuthorities(Claims claims) {
+        List<?> roles = claims.get(CLAIM_ROLES, List.class);
+        if (roles == null) {
+            return List.of();
+        }
+        return roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(String.valueOf(role)))
+                .toList();
     }
     
-    public boolean validateToken(String token) {
+    public Long getUserId(Claims claims) {
+        return claims.get(CLAIM_USER_ID, Long.class);
+    }
+    
+    public Integer getTokenVersion(Claims claims) {
+        return claims.get(CLAIM_TOKEN_VERSION, Integer.class);
+    }
+    
+    public boolean isRefreshToken(Claims claims) {
+        return TOKEN_TYPE_REFRESH.equals(claims.get(CLAIM_TOKEN_TYPE, String.class));
+    }
+    
+    /**
+     * Parse và xác thực token một lần duy nhất; trả về claims đã xác thực hoặc rỗng nếu token không hợp lệ
+     */
+    public Optional<Claims> parseVerifiedClaims(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            return Optional.of(getClaims(token));
         } catch (SecurityException ex) {
             log.error("Invalid JWT signature");
         } catch (MalformedJwtException ex) {
@@ -86,18 +162,22 @@ public class JwtTokenProvider {
             log.error("Unsupported JWT token");
         } catch (IllegalArgumentException ex) {
             log.error("JWT claims string is empty");
+        } catch (JwtException ex) {
+            log.error("Invalid JWT token: {}", ex.getMessage());
         }
-        return false;
+        return Optional.empty();
+    }
+    
+    public String getUsernameFromToken(String token) {
+        return getClaims(token).getSubject();
+    }
+    
+    public boolean validateToken(String token) {
+        return parseVerifiedClaims(token).isPresent();
     }
     
     public Date getExpirationDateFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        
-        return claims.getExpiration();
+        return getClaims(token).getExpiration();
     }
     
     public boolean isTokenExpired(String token) {
@@ -108,4 +188,52 @@ public class JwtTokenProvider {
             return true;
         }
     }
-}
\ No newline at end of file
+    
+    public Map<String, Object> getClaimsCacheStats() {
+        CacheStats cacheStats = verifiedClaims.stats();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", verifiedClaims.estimatedSize());
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        return stats;
+    }
+    
+    /**
+     * Claims đã xác thực của token; ném JwtException nếu token sai chữ ký, sai định dạng hoặc đã hết hạn
+     */
+    private Claims getClaims(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("JWT token is empty");
+        }
+        String key = hashToken(token);
+        Claims cached = verifiedClaims.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        if (claims.getExpiration() != null) {
+            verifiedClaims.put(key, claims);
+        }
+        return claims;
+    }
+    
+    private static long untilExpiration(Claims claims) {
+        long remainingMs = claims.getExpiration().getTime() - System.currentTimeMillis();
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMs, 0));
+    }
+    
+    /**
+     * SHA-256 của token (Base64, 43 ký tự); dùng làm khóa cache và khóa lưu trữ refresh token
+     */
+    public static String hashToken(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
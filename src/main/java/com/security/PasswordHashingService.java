@@ -0,0 +1,143 @@
+package com.security;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chạy việc băm mật khẩu (BCrypt encode và verify) trên một pool riêng có giới hạn, để đợt đăng nhập dồn dập
+ * không chiếm hết luồng servlet. Tối đa {@code threads + queue-capacity} yêu cầu chờ băm cùng lúc; vượt quá thì
+ * bị từ chối ngay bằng {@link TaskRejectedException}, các endpoint xác thực trả về 429.
+ */
+@Component
+@Slf4j
+public class PasswordHashingService {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+    private final PasswordEncoder passwordEncoder;
+    private final int bcryptStrength;
+    private final Duration timeout;
+    private final ThreadPoolTaskExecutor executor;
+
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalHashNanos = new AtomicLong();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  @Value("${library.password-hashing.bcrypt-strength:10}") int bcryptStrength,
+                                  @Value("${library.password-hashing.threads:4}") int threads,
+                                  @Value("${library.password-hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${library.password-hashing.timeout:5s}") Duration timeout) {
+        this.passwordEncoder = passwordEncoder;
+        this.bcryptStrength = bcryptStrength;
+        this.timeout = timeout;
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        executor.initialize();
+    }
+
+    public String encode(CharSequence rawPassword) {
+        return run(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Chạy một tác vụ nặng về băm bất kỳ (ví dụ {@code AuthenticationManager.authenticate}) trên pool.
+     */
+    public <T> T run(Callable<T> task) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                totalWaitNanos.addAndGet(startedAt - submittedAt);
+                try {
+                    return task.call();
+                } finally {
+                    long elapsed = System.nanoTime() - startedAt;
+                    completedCount.incrementAndGet();
+                    totalHashNanos.addAndGet(elapsed);
+                    maxHashNanos.accumulateAndGet(elapsed, Math::max);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            rejectedCount.incrementAndGet();
+            log.warn("Pool băm mật khẩu đã đầy, từ chối yêu cầu");
+            throw e;
+        }
+
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejectedCount.incrementAndGet();
+            throw new TaskRejectedException("Băm mật khẩu quá thời gian chờ " + timeout.toMillis() + " ms", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new TaskRejectedException("Bị ngắt khi đang chờ băm mật khẩu", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * True khi hash đã lưu được tạo với cost BCrypt khác cost đang cấu hình.
+     */
+    public boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != bcryptStrength;
+    }
+
+    public Map<String, Object> getMetrics() {
+        long completed = completedCount.get();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("bcryptStrength", bcryptStrength);
+        metrics.put("threads", executor.getMaxPoolSize());
+        metrics.put("activeCount", executor.getActiveCount());
+        metrics.put("queueSize", executor.getQueueSize());
+        metrics.put("queueCapacity", executor.getQueueCapacity());
+        metrics.put("completedCount", completed);
+        metrics.put("rejectedCount", rejectedCount.get());
+        metrics.put("avgHashMillis", completed == 0 ? 0.0 : totalHashNanos.get() / 1_000_000.0 / completed);
+        metrics.put("maxHashMillis", maxHashNanos.get() / 1_000_000.0);
+        metrics.put("avgQueueWaitMillis", completed == 0 ? 0.0 : totalWaitNanos.get() / 1_000_000.0 / completed);
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
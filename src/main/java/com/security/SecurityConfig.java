@@ -1,6 +1,7 @@
 package com.security;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -24,9 +25,12 @@ public class SecurityConfig {
     private final CustomUserDetailsService customUserDetailsService;
     private final JwtAuthFilter jwtAuthFilter;
     
+    @Value("${library.password-hashing.bcrypt-strength:10}")
+    private int bcryptStrength;
+    
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
     
     @Bean
@@ -66,6 +70,9 @@ public class SecurityConfig {
                 // Quản lý phạt
                 .requestMatchers("/penalties/**").hasRole("LIBRARIAN")
                 
+                // Quét mã vạch tại quầy
+                .requestMatchers("/scan/**").hasRole("LIBRARIAN")
+                
                 // Quản lý đặt trước
                 .requestMatchers("/reservations/**").hasRole("LIBRARIAN")
                 
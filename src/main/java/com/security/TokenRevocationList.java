@@ -0,0 +1,291 @@
+package com.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Danh sách access token đã thu hồi theo mã token ({@code jti}), giữ trong bộ nhớ tới khi chính token đó hết hạn.
+ * Bloom filter trả lời trường hợp phổ biến "chưa bị thu hồi" mà không cần tra map; bộ lọc được dựng lại định kỳ
+ * để bỏ các mã đã hết hạn. Tập còn hiệu lực được ghi ra file snapshot gọn để việc thu hồi vẫn còn sau khi khởi động lại.
+ */
+@Component
+@Slf4j
+public class TokenRevocationList {
+
+    private static final int SNAPSHOT_MAGIC = 0x4A524C31; // "JRL1"
+
+    private final Path snapshotFile;
+    private final int expectedEntries;
+    private final double falsePositiveRate;
+    private final Cache<String, Long> revoked;
+
+    private volatile BloomFilter filter;
+    private volatile boolean dirty;
+
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong filterPositives = new AtomicLong();
+    private final AtomicLong revokedHits = new AtomicLong();
+
+    public TokenRevocationList(@Value("${jwt.revocation.snapshot-file:data/revoked-tokens.bin}") String snapshotFile,
+                               @Value("${jwt.revocation.expected-entries:100000}") int expectedEntries,
+                               @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.snapshotFile = Path.of(snapshotFile);
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        this.revoked = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, Long>() {
+                    @Override
+                    public long expireAfterCreate(String jti, Long expiresAtMillis, long currentTime) {
+                        return untilExpiration(expiresAtMillis);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String jti, Long expiresAtMillis, long currentTime, long currentDuration) {
+                        return untilExpiration(expiresAtMillis);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String jti, Long expiresAtMillis, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        this.filter = new BloomFilter(expectedEntries, falsePositiveRate);
+        loadSnapshot();
+    }
+
+    /**
+     * Kiểm tra trên mỗi request, không khóa; chỉ những mã lọt qua Bloom filter mới được tra trong map.
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        checks.incrementAndGet();
+        if (!filter.mightContain(jti)) {
+            return false;
+        }
+        filterPositives.incrementAndGet();
+        if (revoked.getIfPresent(jti) == null) {
+            return false;
+        }
+        revokedHits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Thu hồi token tới khi hết hạn. Chỉ cập nhật bộ nhớ; snapshot được ghi ở nền.
+     */
+    public synchronized void revoke(String jti, long expiresAtMillis) {
+        if (jti == null || expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        revoked.put(jti, expiresAtMillis);
+        filter.put(jti);
+        dirty = true;
+    }
+
+    /**
+     * Bỏ các mã đã hết hạn khỏi Bloom filter và ghi lại tập còn hiệu lực khi có thay đổi.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.snapshot-interval:60000}",
+               initialDelayString = "${jwt.revocation.snapshot-interval:60000}")
+    public void maintain() {
+        revoked.cleanUp();
+        synchronized (this) {
+            if (filter.insertions() > revoked.estimatedSize()) {
+                rebuildFilter();
+            }
+        }
+        if (dirty) {
+            writeSnapshot();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (dirty) {
+            writeSnapshot();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", revoked.estimatedSize());
+        stats.put("checks", checks.get());
+        stats.put("filterPositives", filterPositives.get());
+        stats.put("revokedHits", revokedHits.get());
+        stats.put("falsePositives", filterPositives.get() - revokedHits.get());
+        stats.put("filterInsertions", filter.insertions());
+        stats.put("filterBits", filter.bitSize());
+        return stats;
+    }
+
+    private void rebuildFilter() {
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, (int) revoked.estimatedSize()), falsePositiveRate);
+        revoked.asMap().keySet().forEach(rebuilt::put);
+        filter = rebuilt;
+    }
+
+    private void writeSnapshot() {
+        Map<UUID, Long> entries = new HashMap<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            revoked.asMap().forEach((jti, expiresAtMillis) -> {
+                UUID id = parseUuid(jti);
+                if (id != null && expiresAtMillis > now) {
+                    entries.put(id, expiresAtMillis);
+                }
+            });
+            dirty = false;
+        }
+        try {
+            Path parent = snapshotFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(entries.size());
+                // 24 byte mỗi mục: jti dạng UUID + thời điểm hết hạn (epoch millis)
+                for (Map.Entry<UUID, Long> entry : entries.entrySet()) {
+                    out.writeLong(entry.getKey().getMostSignificantBits());
+                    out.writeLong(entry.getKey().getLeastSignificantBits());
+                    out.writeLong(entry.getValue());
+                }
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Đã ghi {} mã token thu hồi vào {}", entries.size(), snapshotFile);
+        } catch (IOException e) {
+            dirty = true;
+            log.error("Không ghi được snapshot token thu hồi {}: {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    private void loadSnapshot() {
+        if (!Files.exists(snapshotFile)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                log.warn("Bỏ qua snapshot token thu hồi {} do định dạng không hợp lệ", snapshotFile);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID id = new UUID(in.readLong(), in.readLong());
+                long expiresAtMillis = in.readLong();
+                if (expiresAtMillis > now) {
+                    String jti = id.toString();
+                    revoked.put(jti, expiresAtMillis);
+                    filter.put(jti);
+                    loaded++;
+                }
+            }
+            log.info("Đã nạp {} mã token thu hồi từ {}", loaded, snapshotFile);
+        } catch (IOException e) {
+            log.warn("Không đọc được snapshot token thu hồi {}: {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    private static UUID parseUuid(String jti) {
+        try {
+            return UUID.fromString(jti);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long untilExpiration(long expiresAtMillis) {
+        long remainingMs = expiresAtMillis - System.currentTimeMillis();
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMs, 0));
+    }
+
+    /**
+     * Bloom filter kích thước cố định trên mã token, dùng băm kép. Bit chỉ được bật chứ không bao giờ tắt,
+     * nên luồng đọc đồng thời thấy bit cũ hoặc mới mà không cần khóa.
+     */
+    private static final class BloomFilter {
+
+        private final AtomicLongArray bits;
+        private final long bitSize;
+        private final int hashCount;
+        private final AtomicLong insertions = new AtomicLong();
+
+        BloomFilter(int expectedEntries, double falsePositiveRate) {
+            long optimalBits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bitSize = Math.max(64, optimalBits);
+            this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedEntries * Math.log(2)));
+            this.bits = new AtomicLongArray((int) ((bitSize + 63) / 64));
+        }
+
+        void put(String key) {
+            long h1 = mix(key.hashCode());
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitSize);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = bits.get(index);
+                } while ((current & mask) == 0 && !bits.compareAndSet(index, current, current | mask));
+            }
+            insertions.incrementAndGet();
+        }
+
+        boolean mightContain(String key) {
+            long h1 = mix(key.hashCode());
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitSize);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long insertions() {
+            return insertions.get();
+        }
+
+        long bitSize() {
+            return bitSize;
+        }
+
+        // Bước trộn cuối của MurmurHash3 64-bit
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
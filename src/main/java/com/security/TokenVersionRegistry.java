@@ -0,0 +1,79 @@
+package com.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.dto.UserTokenVersion;
+import com.repository.UserRepository;
+import com.service.TransactionHooks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Phiên bản token hiện tại theo username, dùng để thu hồi JWT đã cấp mà không phải tra user ở mỗi request.
+ * Phiên bản được đọc từ DB một lần rồi cache; thay đổi trên node này xóa mục cache sau khi commit,
+ * các node khác nhận thay đổi khi mục cache của chúng hết hạn.
+ */
+@Component
+@Slf4j
+public class TokenVersionRegistry {
+    
+    // Cache cho username không còn tồn tại để token của họ bị từ chối mà không phải truy vấn DB
+    private static final UserTokenVersion UNKNOWN_USER = new UserTokenVersion(null, -1);
+    
+    private final UserRepository userRepository;
+    private final Cache<String, UserTokenVersion> versions;
+    
+    public TokenVersionRegistry(UserRepository userRepository,
+                                @Value("${jwt.token-version-cache.max-size:10000}") long maxSize,
+                                @Value("${jwt.token-version-cache.expire-after-write:1m}") Duration expireAfterWrite) {
+        this.userRepository = userRepository;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * So sánh cả user id lẫn phiên bản: username bị xóa rồi tạo lại sẽ bắt đầu lại từ phiên bản 0,
+     * nếu chỉ so phiên bản thì token của tài khoản cũ vẫn lọt qua.
+     */
+    public boolean isCurrent(String username, Long userId, Integer tokenVersion) {
+        if (username == null || userId == null || tokenVersion == null) {
+            return false;
+        }
+        UserTokenVersion current = versions.get(username,
+                key -> userRepository.findTokenVersionByUsername(key).orElse(UNKNOWN_USER));
+        if (!userId.equals(current.userId()) || !tokenVersion.equals(current.tokenVersion())) {
+            log.debug("Từ chối token của '{}': user {} phiên bản {} không còn hiện hành ({} phiên bản {})",
+                    username, userId, tokenVersion, current.userId(), current.tokenVersion());
+            return false;
+        }
+        return true;
+    }
+    
+    public void invalidate(String username) {
+        versions.invalidate(username);
+    }
+    
+    public void invalidateAfterCommit(String username) {
+        TransactionHooks.afterCommit(() -> invalidate(username));
+    }
+    
+    public Map<String, Object> getStats() {
+        CacheStats cacheStats = versions.stats();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", versions.estimatedSize());
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        return stats;
+    }
+}
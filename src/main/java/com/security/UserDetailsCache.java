@@ -0,0 +1,88 @@
+package com.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.service.TransactionHooks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache {@link UserDetails} theo username, có giới hạn kích thước và TTL, kèm chỉ mục id sang username để tra theo id.
+ * Nơi gọi luôn nhận bản sao mới: authentication manager xóa mật khẩu trên đối tượng trả về,
+ * việc đó không được lan sang bản đang nằm trong cache.
+ */
+@Component
+public class UserDetailsCache {
+
+    private final Cache<String, UserDetails> usersByUsername;
+    private final Cache<Long, String> usernamesById;
+
+    public UserDetailsCache(@Value("${library.cache.user-details.max-size:1000}") long maxSize,
+                            @Value("${library.cache.user-details.expire-after-write:5m}") Duration expireAfterWrite) {
+        this.usersByUsername = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.usernamesById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        return copyOf(usersByUsername.get(username, loader));
+    }
+
+    public String getUsername(Long id, Function<Long, String> loader) {
+        return usernamesById.get(id, loader);
+    }
+
+    public void evict(String username) {
+        if (username != null) {
+            usersByUsername.invalidate(username);
+        }
+    }
+
+    public void evict(Long id, String username) {
+        usernamesById.invalidate(id);
+        evict(username);
+    }
+
+    /**
+     * Xóa khỏi cache sau khi transaction hiện tại commit, để request chạy song song không nạp lại trạng thái cũ.
+     */
+    public void evictAfterCommit(String username) {
+        TransactionHooks.afterCommit(() -> evict(username));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("byUsername", toMap(usersByUsername.stats(), usersByUsername.estimatedSize()));
+        stats.put("byId", toMap(usernamesById.stats(), usernamesById.estimatedSize()));
+        return stats;
+    }
+
+    private Map<String, Object> toMap(CacheStats cacheStats, long size) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", size);
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        return stats;
+    }
+
+    private UserDetails copyOf(UserDetails source) {
+        return User.withUserDetails(source).build();
+    }
+}
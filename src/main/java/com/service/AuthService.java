@@ -1,10 +1,16 @@
 package com.service;
 
+import com.model.RefreshToken;
 import com.model.Role;
 import com.model.UserAccount;
 import com.repository.RoleRepository;
 import com.repository.UserRepository;
 import com.security.JwtTokenProvider;
+import com.security.PasswordHashingService;
+import com.security.TokenRevocationList;
+import com.security.TokenVersionRegistry;
+import com.security.UserDetailsCache;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -12,9 +18,11 @@ import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -28,10 +36,20 @@ public class AuthService {
     
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider jwtTokenProvider;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final UserDetailsCache userDetailsCache;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationList tokenRevocationList;
+    private final TransactionTemplate transactionTemplate;
     
+    /**
+     * Không mở transaction bao quanh: việc kiểm tra mật khẩu chạy trên pool băm mật khẩu và có thể phải chờ,
+     * không nên giữ kết nối DB trong lúc đó. Mỗi lần lưu user tự commit.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Map<String, Object> login(String username, String password) {
         log.info("=== LOGIN ATTEMPT ===");
         log.info("Username: {}", username);
@@ -61,9 +79,9 @@ public class AuthService {
             
             // Authenticate với Spring Security
             log.info("Attempting Spring Security authentication...");
-            Authentication authentication = authenticationManager.authenticate(
+            Authentication authentication = passwordHashingService.run(() -> authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(username, password)
-            );
+            ));
             
             log.info("Authentication successful: {}", authentication.isAuthenticated());
             log.info("Authorities: {}", authentication.getAuthorities());
@@ -71,15 +89,24 @@ public class AuthService {
             SecurityContextHolder.getContext().setAuthentication(authentication);
             
             // Generate tokens
-            String accessToken = jwtTokenProvider.generateToken(authentication);
-            String refreshToken = jwtTokenProvider.generateRefreshToken(username);
+            String accessToken = jwtTokenProvider.generateToken(user);
+            String refreshToken = refreshTokenService.issue(user);
             
             log.info("Tokens generated successfully");
             
             // Update user
             user.setLastLoginAt(LocalDateTime.now());
             user.setFailedLoginAttempts(0);
-            user.setRefreshToken(refreshToken);
+            // Băm lại mật khẩu khi cost BCrypt cấu hình đã thay đổi
+            // Băm lại chỉ là tối ưu: pool băm quá tải thì để lần đăng nhập sau, không làm hỏng lần này
+            if (passwordHashingService.needsRehash(user.getPassword())) {
+                try {
+                    user.setPassword(passwordHashingService.encode(password));
+                    log.info("Password rehashed with the configured BCrypt cost for user: {}", username);
+                } catch (TaskRejectedException e) {
+                    log.warn("Bỏ qua băm lại mật khẩu cho {} do pool băm quá tải: {}", username, e.getMessage());
+                }
+            }
             userRepository.save(user);
             
             log.info("User updated successfully");
@@ -105,6 +132,10 @@ public class AuthService {
             log.info("=== LOGIN SUCCESS ===");
             return response;
             
+        } catch (TaskRejectedException e) {
+            // Quá tải băm mật khẩu: không tính là đăng nhập sai
+            throw e;
+            
         } catch (BadCredentialsException e) {
             log.error("Bad credentials for user: {}", username);
             updateFailedAttempts(username);
@@ -125,17 +156,29 @@ public class AuthService {
                 user.setFailedLoginAttempts(user.getFailedLoginAttempts() + 1);
                 log.warn("Failed login attempts for {}: {}", username, user.getFailedLoginAttempts());
                 
-                if (user.getFailedLoginAttempts() >= 5) {
+                boolean locked = user.getFailedLoginAttempts() >= 5;
+                if (locked) {
                     user.setAccountNonLocked(false);
+                    user.bumpTokenVersion();
                     log.warn("Account locked due to too many failed attempts: {}", username);
                 }
                 userRepository.save(user);
+                // login() chạy ngoài transaction nên save() đã commit; xóa cache ngay
+                if (locked) {
+                    tokenVersionRegistry.invalidate(username);
+                    userDetailsCache.evict(username);
+                }
             }
         } catch (Exception e) {
             log.error("Error updating failed attempts: {}", e.getMessage());
         }
     }
     
+    /**
+     * Băm mật khẩu trước khi mở transaction: pool băm có thể phải chờ, không giữ kết nối DB trong lúc đó.
+     * Chỉ phần ghi user chạy trong transaction.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Map<String, Object> register(UserAccount userAccount, String roleName) {
         log.info("=== REGISTER ATTEMPT ===");
         log.info("Username: {}", userAccount.getUsername());
@@ -148,21 +191,26 @@ public class AuthService {
             throw new RuntimeException("Email đã được sử dụng");
         }
         
-        String encodedPassword = passwordEncoder.encode(userAccount.getPassword());
+        String encodedPassword = passwordHashingService.encode(userAccount.getPassword());
         userAccount.setPassword(encodedPassword);
         
         // Default role là READER nếu không chỉ định
         String finalRoleName = (roleName != null && !roleName.isEmpty()) ? roleName : Role.READER;
         
-        Role role = roleRepository.findByName(finalRoleName)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy vai trò: " + finalRoleName));
-        
-        userAccount.addRole(role);
-        userAccount.setEnabled(true);
-        userAccount.setAccountNonLocked(true);
-        userAccount.setFailedLoginAttempts(0);
-        
-        UserAccount savedUser = userRepository.save(userAccount);
+        UserAccount savedUser = transactionTemplate.execute(tx -> {
+            Role role = roleRepository.findByName(finalRoleName)
+                    .orElseThrow(() -> new RuntimeException("Không tìm thấy vai trò: " + finalRoleName));
+            
+            userAccount.addRole(role);
+            userAccount.setEnabled(true);
+            userAccount.setAccountNonLocked(true);
+            userAccount.setFailedLoginAttempts(0);
+            
+            UserAccount saved = userRepository.save(userAccount);
+            // Tên đăng nhập có thể vừa được cache là không tồn tại (hoặc thuộc tài khoản cũ đã xóa)
+            tokenVersionRegistry.invalidateAfterCommit(saved.getUsername());
+            return saved;
+        });
         
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -175,24 +223,37 @@ public class AuthService {
         return response;
     }
     
+    /**
+     * Refresh chỉ tra bảng refresh_tokens theo khóa chính và đọc user, không ghi vào user_accounts.
+     * Chạy ngoài transaction để việc thu hồi chuỗi token khi phát hiện dùng lại vẫn được commit.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Map<String, Object> refreshToken(String refreshToken) {
-        if (!jwtTokenProvider.validateToken(refreshToken)) {
-            throw new RuntimeException("Refresh token không hợp lệ hoặc đã hết hạn");
+        Claims claims = jwtTokenProvider.parseVerifiedClaims(refreshToken)
+                .filter(jwtTokenProvider::isRefreshToken)
+                .orElseThrow(() -> new RuntimeException("Refresh token không hợp lệ hoặc đã hết hạn"));
+        RefreshToken stored = refreshTokenService.find(refreshToken)
+                .orElseThrow(() -> new RuntimeException("Refresh token không khớp"));
+        
+        if (stored.getRevokedAt() != null) {
+            refreshTokenService.revokeFamily(stored);
+            throw new RuntimeException("Refresh token đã được sử dụng, phiên đăng nhập đã bị thu hồi");
         }
         
-        String username = jwtTokenProvider.getUsernameFromToken(refreshToken);
-        UserAccount user = userRepository.findByUsername(username)
+        UserAccount user = userRepository.findById(stored.getUserId())
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng"));
         
-        if (!refreshToken.equals(user.getRefreshToken())) {
-            throw new RuntimeException("Refresh token không khớp");
+        if (!user.getTokenVersion().equals(jwtTokenProvider.getTokenVersion(claims))) {
+            throw new RuntimeException("Refresh token đã bị thu hồi");
         }
         
-        String newAccessToken = jwtTokenProvider.generateToken(username);
-        String newRefreshToken = jwtTokenProvider.generateRefreshToken(username);
+        if (!user.getEnabled() || !user.getAccountNonLocked()) {
+            throw new RuntimeException("Tài khoản đã bị khóa hoặc vô hiệu hóa");
+        }
         
-        user.setRefreshToken(newRefreshToken);
-        userRepository.save(user);
+        String newRefreshToken = refreshTokenService.rotate(stored, user)
+                .orElseThrow(() -> new RuntimeException("Refresh token đã được sử dụng, phiên đăng nhập đã bị thu hồi"));
+        String newAccessToken = jwtTokenProvider.generateToken(user);
         
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -203,32 +264,77 @@ public class AuthService {
         return response;
     }
     
-    public void logout(String username) {
+    /**
+     * Đăng xuất thiết bị giữ refresh token đã cho; nếu không gửi refresh token thì đăng xuất mọi thiết bị.
+     * Access token đang dùng bị thu hồi ngay (theo jti) thay vì còn hiệu lực tới khi hết hạn.
+     */
+    public void logout(String username, String accessToken, String refreshToken) {
         UserAccount user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng"));
         
-        user.setRefreshToken(null);
-        userRepository.save(user);
+        if (accessToken != null) {
+            jwtTokenProvider.parseVerifiedClaims(accessToken)
+                    .filter(claims -> username.equals(claims.getSubject()))
+                    .ifPresent(claims -> tokenRevocationList.revoke(
+                            claims.getId(), claims.getExpiration().getTime()));
+        }
+        
+        if (refreshToken != null && !refreshToken.isBlank()) {
+            refreshTokenService.revoke(refreshToken, user.getId());
+        } else {
+            // Đăng xuất mọi thiết bị: access token của các thiết bị khác cũng phải hết hiệu lực ngay
+            user.bumpTokenVersion();
+            userRepository.save(user);
+            refreshTokenService.revokeAllForUser(user.getId());
+            tokenVersionRegistry.invalidateAfterCommit(username);
+        }
+        userDetailsCache.evictAfterCommit(username);
         
         SecurityContextHolder.clearContext();
         log.info("User logged out: {}", username);
     }
     
+    /**
+     * Kiểm tra và băm mật khẩu ngoài transaction như login(); các thao tác ghi chạy trong một transaction ngắn.
+     * Nếu mật khẩu bị đổi bởi yêu cầu khác trong lúc băm thì từ chối, không ghi đè.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Map<String, Object> changePassword(String username, String oldPassword, String newPassword) {
         UserAccount user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng"));
         
-        if (!passwordEncoder.matches(oldPassword, user.getPassword())) {
+        String verifiedHash = user.getPassword();
+        if (!passwordHashingService.matches(oldPassword, verifiedHash)) {
             throw new RuntimeException("Mật khẩu cũ không đúng");
         }
+        String newHash = passwordHashingService.encode(newPassword);
         
-        user.setPassword(passwordEncoder.encode(newPassword));
-        user.setPasswordChangedAt(LocalDateTime.now());
-        userRepository.save(user);
+        String[] tokens = transactionTemplate.execute(tx -> {
+            UserAccount current = userRepository.findById(user.getId())
+                    .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng"));
+            if (!verifiedHash.equals(current.getPassword())) {
+                throw new RuntimeException("Mật khẩu vừa được thay đổi, vui lòng thử lại");
+            }
+            
+            current.setPassword(newHash);
+            current.setPasswordChangedAt(LocalDateTime.now());
+            // Thu hồi mọi token đã cấp; phiên hiện tại nhận cặp token mới
+            current.bumpTokenVersion();
+            userRepository.save(current);
+            refreshTokenService.revokeAllForUser(current.getId());
+            String accessToken = jwtTokenProvider.generateToken(current);
+            String refreshToken = refreshTokenService.issue(current);
+            tokenVersionRegistry.invalidateAfterCommit(username);
+            userDetailsCache.evictAfterCommit(username);
+            return new String[] {accessToken, refreshToken};
+        });
         
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
         response.put("message", "Đổi mật khẩu thành công");
+        response.put("accessToken", tokens[0]);
+        response.put("refreshToken", tokens[1]);
+        response.put("tokenType", "Bearer");
         
         log.info("Password changed for user: {}", username);
         return response;
@@ -0,0 +1,90 @@
+package com.service;
+
+import com.dto.CodeIndexEntry;
+import com.model.Book;
+import com.model.Reader;
+import com.repository.BookRepository;
+import com.repository.ReaderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chỉ mục băm trong bộ nhớ: mã sách / mã độc giả -> ID.
+ * Được nạp khi ứng dụng khởi động và cập nhật sau commit bởi BookService/ReaderService.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BarcodeIndexService {
+    
+    private final BookRepository bookRepository;
+    private final ReaderRepository readerRepository;
+    
+    private final Map<String, Long> bookIds = new ConcurrentHashMap<>();
+    private final Map<String, Long> readerIds = new ConcurrentHashMap<>();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        load(bookIds, bookRepository.findAllCodeIndexEntries());
+        load(readerIds, readerRepository.findAllCodeIndexEntries());
+        log.info("Nạp chỉ mục mã vạch: {} sách, {} độc giả", bookIds.size(), readerIds.size());
+    }
+    
+    public Optional<Long> findBookId(String bookCode) {
+        String code = normalize(bookCode);
+        Long id = bookIds.get(code);
+        if (id != null) {
+            return Optional.of(id);
+        }
+        // Không có trong chỉ mục (ví dụ vừa tạo ở node khác): tra natural id rồi bổ sung
+        Optional<Long> loaded = bookRepository.findByBookCode(code).map(Book::getId);
+        loaded.ifPresent(value -> bookIds.put(code, value));
+        return loaded;
+    }
+    
+    public Optional<Long> findReaderId(String readerCode) {
+        String code = normalize(readerCode);
+        Long id = readerIds.get(code);
+        if (id != null) {
+            return Optional.of(id);
+        }
+        Optional<Long> loaded = readerRepository.findByReaderCode(code).map(Reader::getId);
+        loaded.ifPresent(value -> readerIds.put(code, value));
+        return loaded;
+    }
+    
+    public void registerBook(String bookCode, Long id) {
+        TransactionHooks.afterCommit(() -> bookIds.put(normalize(bookCode), id));
+    }
+    
+    public void removeBook(String bookCode) {
+        TransactionHooks.afterCommit(() -> bookIds.remove(normalize(bookCode)));
+    }
+    
+    public void registerReader(String readerCode, Long id) {
+        TransactionHooks.afterCommit(() -> readerIds.put(normalize(readerCode), id));
+    }
+    
+    public void removeReader(String readerCode) {
+        TransactionHooks.afterCommit(() -> readerIds.remove(normalize(readerCode)));
+    }
+    
+    private void load(Map<String, Long> index, List<CodeIndexEntry> entries) {
+        index.clear();
+        for (CodeIndexEntry entry : entries) {
+            index.put(normalize(entry.code()), entry.id());
+        }
+    }
+    
+    private String normalize(String code) {
+        return code == null ? "" : code.trim();
+    }
+}
@@ -0,0 +1,110 @@
+package com.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.model.Book;
+import com.repository.BookRepository;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache đọc-xuyên (read-through) cho sách, tra cứu theo ID và theo mã sách.
+ * Giá trị trong cache là bản chụp đã tách khỏi persistence context; mỗi lần đọc trả về một bản sao
+ * để nơi gọi không thể sửa nhầm dữ liệu dùng chung.
+ * <p>
+ * Đây là tầng cache duy nhất cho sách: entity Book không bật second-level cache của Hibernate,
+ * tránh giữ hai bản sao với hai cơ chế làm mới khác nhau.
+ */
+@Service
+public class BookCacheService {
+
+    private final BookRepository bookRepository;
+    private final Cache<Long, Book> booksById;
+    private final Cache<String, Long> bookIdsByCode;
+
+    public BookCacheService(BookRepository bookRepository,
+                            @Value("${library.cache.book.max-size:500}") long maxSize,
+                            @Value("${library.cache.book.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.bookRepository = bookRepository;
+        this.booksById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.bookIdsByCode = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Book> getById(Long id) {
+        Book cached = booksById.get(id, key -> bookRepository.findById(key).map(this::copyOf).orElse(null));
+        if (cached != null) {
+            bookIdsByCode.put(cached.getBookCode(), cached.getId());
+        }
+        return Optional.ofNullable(cached).map(this::copyOf);
+    }
+
+    public Optional<Book> getByCode(String bookCode) {
+        Long id = bookIdsByCode.getIfPresent(bookCode);
+        if (id != null) {
+            Optional<Book> book = getById(id);
+            if (book.isPresent() && bookCode.equals(book.get().getBookCode())) {
+                return book;
+            }
+            bookIdsByCode.invalidate(bookCode);
+        }
+
+        // Chỉ tra ID theo mã; bản ghi sách được nạp qua getById để việc nạp nguyên tử với evict
+        Optional<Book> book = bookRepository.findIdByBookCode(bookCode).flatMap(this::getById);
+        return book.filter(b -> bookCode.equals(b.getBookCode()));
+    }
+
+    public void evict(Long id) {
+        Book cached = booksById.getIfPresent(id);
+        booksById.invalidate(id);
+        if (cached != null) {
+            bookIdsByCode.invalidate(cached.getBookCode());
+        }
+    }
+
+    /**
+     * Xóa sách khỏi cache sau khi transaction hiện tại commit thành công,
+     * tránh trường hợp một luồng khác nạp lại dữ liệu chưa commit.
+     */
+    public void evictAfterCommit(Long id) {
+        TransactionHooks.afterCommit(() -> evict(id));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("byId", toMap(booksById.stats(), booksById.estimatedSize()));
+        stats.put("byCode", toMap(bookIdsByCode.stats(), bookIdsByCode.estimatedSize()));
+        return stats;
+    }
+
+    private Map<String, Object> toMap(CacheStats cacheStats, long size) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", size);
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        stats.put("loadFailureCount", cacheStats.loadFailureCount());
+        return stats;
+    }
+
+    private Book copyOf(Book source) {
+        Book copy = new Book();
+        BeanUtils.copyProperties(source, copy);
+        return copy;
+    }
+}
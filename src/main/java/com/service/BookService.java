@@ -1,6 +1,8 @@
 package com.service;
 
+import com.dto.BookSummary;
 import com.model.Book;
+import com.model.BookCopy;
 import com.repository.BookRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,13 +18,19 @@ import java.util.List;
 public class BookService {
     
     private final BookRepository bookRepository;
+    private final BookCacheService bookCacheService;
+    private final BarcodeIndexService barcodeIndexService;
+    private final InventoryService inventoryService;
     
     public Book createBook(Book book) {
         if (bookRepository.existsByBookCode(book.getBookCode())) {
             throw new RuntimeException("Mã sách đã tồn tại: " + book.getBookCode());
         }
         log.info("Tạo sách mới: {}", book.getTitle());
-        return bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        inventoryService.adjustCopies(savedBook, savedBook.getTotalQuantity());
+        barcodeIndexService.registerBook(savedBook.getBookCode(), savedBook.getId());
+        return savedBook;
     }
     
     public Book updateBook(Long id, Book bookDetails) {
@@ -35,11 +43,13 @@ public class BookService {
         book.setPublishYear(bookDetails.getPublishYear());
         book.setCategory(bookDetails.getCategory());
         book.setIsbn(bookDetails.getIsbn());
+        inventoryService.adjustCopies(book, bookDetails.getTotalQuantity());
         book.setTotalQuantity(bookDetails.getTotalQuantity());
         book.setDescription(bookDetails.getDescription());
         book.setImageUrl(bookDetails.getImageUrl());
         
         log.info("Cập nhật sách: {}", book.getTitle());
+        bookCacheService.evictAfterCommit(id);
         return bookRepository.save(book);
     }
     
@@ -47,28 +57,42 @@ public class BookService {
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy sách với ID: " + id));
         log.info("Xóa sách: {}", book.getTitle());
+        bookCacheService.evictAfterCommit(id);
+        barcodeIndexService.removeBook(book.getBookCode());
+        inventoryService.deleteCopies(id);
         bookRepository.delete(book);
     }
     
     @Transactional(readOnly = true)
-    public List<Book> getAllBooks() {
-        return bookRepository.findAll();
+    public List<BookSummary> getAllBooks() {
+        return bookRepository.findAllSummaries();
     }
     
     @Transactional(readOnly = true)
     public Book getBookById(Long id) {
-        return bookRepository.findById(id)
+        return bookCacheService.getById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy sách với ID: " + id));
     }
     
     @Transactional(readOnly = true)
-    public List<Book> getAvailableBooks() {
-        return bookRepository.findAvailableBooks();
+    public List<BookCopy> getBookCopies(Long id) {
+        return inventoryService.getCopiesByBookId(id);
+    }
+    
+    @Transactional(readOnly = true)
+    public Book getBookByCode(String bookCode) {
+        return bookCacheService.getByCode(bookCode)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy sách với mã: " + bookCode));
+    }
+    
+    @Transactional(readOnly = true)
+    public List<BookSummary> getAvailableBooks() {
+        return bookRepository.findAvailableSummaries();
     }
     
     @Transactional(readOnly = true)
-    public List<Book> searchBooks(String keyword) {
-        return bookRepository.searchBooks(keyword);
+    public List<BookSummary> searchBooks(String keyword) {
+        return bookRepository.searchSummaries(keyword);
     }
     
     @Transactional(readOnly = true)
@@ -1,10 +1,10 @@
 package com.service;
 
+import com.dto.BorrowTicketSummary;
 import com.model.Book;
 import com.model.BorrowTicket;
 import com.model.Penalty;
 import com.model.Reader;
-import com.repository.BookRepository;
 import com.repository.BorrowRepository;
 import com.repository.PenaltyRepository;
 import com.repository.ReaderRepository;
@@ -16,6 +16,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -24,13 +25,19 @@ import java.util.List;
 public class BorrowService {
     
     private final BorrowRepository borrowRepository;
-    private final BookRepository bookRepository;
     private final ReaderRepository readerRepository;
     private final PenaltyRepository penaltyRepository;
+    private final BookCacheService bookCacheService;
+    private final InventoryService inventoryService;
+    private final ReaderAccountService readerAccountService;
+    private final LoanHistoryService loanHistoryService;
+    private final ReservationService reservationService;
+    private final PickupEstimateService pickupEstimateService;
+    private final PenaltyLedgerService penaltyLedgerService;
+    private final FineAccrualService fineAccrualService;
     
-    private static final int MAX_BORROW_BOOKS = 5;
-    private static final int DEFAULT_BORROW_DAYS = 14;
-    private static final BigDecimal OVERDUE_FEE_PER_DAY = new BigDecimal("5000");
+    public static final int MAX_BORROW_BOOKS = 5;
+    static final int DEFAULT_BORROW_DAYS = 14;
     
     public BorrowTicket createBorrowTicket(Long readerId, Long bookId, Integer quantity, Integer borrowDays) {
         Reader reader = readerRepository.findById(readerId)
@@ -49,10 +56,13 @@ public class BorrowService {
             throw new RuntimeException("Độc giả đã mượn tối đa " + MAX_BORROW_BOOKS + " quyển sách");
         }
         
-        Book book = bookRepository.findById(bookId)
+        penaltyLedgerService.assertWithinDebtLimit(readerId);
+        
+        Book book = bookCacheService.getById(bookId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy sách với ID: " + bookId));
         
-        if (book.getStatus() != Book.BookStatus.AVAILABLE) {
+        // OUT_OF_STOCK chỉ là số liệu tổng hợp; việc còn bản sách hay không do claimCopies quyết định
+        if (book.getStatus() == Book.BookStatus.MAINTENANCE) {
             throw new RuntimeException("Sách không ở trạng thái có sẵn");
         }
         
@@ -60,10 +70,6 @@ public class BorrowService {
             quantity = 1;
         }
         
-        if (book.getAvailableQuantity() < quantity) {
-            throw new RuntimeException("Không đủ sách để cho mượn. Còn lại: " + book.getAvailableQuantity());
-        }
-        
         String ticketCode = generateTicketCode();
         
         if (borrowDays == null || borrowDays <= 0) {
@@ -81,18 +87,24 @@ public class BorrowService {
                 .status(BorrowTicket.BorrowStatus.BORROWED)
                 .build();
         
-        book.setAvailableQuantity(book.getAvailableQuantity() - quantity);
-        if (book.getAvailableQuantity() == 0) {
-            book.setStatus(Book.BookStatus.OUT_OF_STOCK);
+        BorrowTicket savedTicket = borrowRepository.save(borrowTicket);
+        // Bản sách đang giữ cho độc giả khác không bao giờ được claimCopies chọn;
+        // nếu chính độc giả này có đặt trước sẵn sàng thì dùng bản đã giữ trước
+        int fromHold = reservationService.consumeReadyHold(readerId, bookId, savedTicket);
+        if (quantity > fromHold) {
+            inventoryService.claimCopies(savedTicket, bookId, quantity - fromHold);
         }
-        bookRepository.save(book);
+        // Bản đã giữ không còn nằm trong số lượng có sẵn
+        book.setAvailableQuantity(Math.max(book.getAvailableQuantity() - (quantity - fromHold), 0));
+        readerAccountService.evictAfterCommit(readerId);
+        pickupEstimateService.loanCreated(bookId, savedTicket.getDueDate(), quantity);
         
         log.info("Tạo phiếu mượn: {} cho độc giả: {} - Sách: {}", ticketCode, reader.getFullName(), book.getTitle());
-        return borrowRepository.save(borrowTicket);
+        return savedTicket;
     }
     
     public BorrowTicket returnBook(Long borrowTicketId, String returnedTo) {
-        BorrowTicket borrowTicket = borrowRepository.findById(borrowTicketId)
+        BorrowTicket borrowTicket = borrowRepository.findWithDetailsById(borrowTicketId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy phiếu mượn với ID: " + borrowTicketId));
         
         if (borrowTicket.getStatus() == BorrowTicket.BorrowStatus.RETURNED) {
@@ -108,18 +120,18 @@ public class BorrowService {
         }
         
         Book book = borrowTicket.getBook();
-        book.setAvailableQuantity(book.getAvailableQuantity() + borrowTicket.getQuantity());
-        if (book.getAvailableQuantity() > 0 && book.getStatus() == Book.BookStatus.OUT_OF_STOCK) {
-            book.setStatus(Book.BookStatus.AVAILABLE);
-        }
-        bookRepository.save(book);
+        inventoryService.releaseCopies(borrowTicket, book.getId());
+        pickupEstimateService.loanReturned(book.getId(), borrowTicket.getDueDate(), borrowTicket.getQuantity(),
+                !borrowTicket.isOverdue());
+        reservationService.promoteNextHolds(book.getId(), borrowTicket.getQuantity());
+        readerAccountService.evictAfterCommit(borrowTicket.getReader().getId());
         
         log.info("Trả sách: {} - Phiếu mượn: {}", book.getTitle(), borrowTicket.getTicketCode());
         return borrowRepository.save(borrowTicket);
     }
     
     public BorrowTicket renewBorrowTicket(Long borrowTicketId, Integer additionalDays) {
-        BorrowTicket borrowTicket = borrowRepository.findById(borrowTicketId)
+        BorrowTicket borrowTicket = borrowRepository.findWithDetailsById(borrowTicketId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy phiếu mượn với ID: " + borrowTicketId));
         
         if (borrowTicket.getStatus() != BorrowTicket.BorrowStatus.BORROWED) {
@@ -134,16 +146,26 @@ public class BorrowService {
             additionalDays = DEFAULT_BORROW_DAYS;
         }
         
-        borrowTicket.setDueDate(borrowTicket.getDueDate().plusDays(additionalDays));
+        LocalDate previousDueDate = borrowTicket.getDueDate();
+        borrowTicket.setDueDate(previousDueDate.plusDays(additionalDays));
+        pickupEstimateService.loanRenewed(borrowTicket.getBook().getId(), previousDueDate,
+                borrowTicket.getDueDate(), borrowTicket.getQuantity());
+        readerAccountService.evictAfterCommit(borrowTicket.getReader().getId());
         
         log.info("Gia hạn phiếu mượn: {} thêm {} ngày", borrowTicket.getTicketCode(), additionalDays);
         return borrowRepository.save(borrowTicket);
     }
     
     public BorrowTicket reportLostBook(Long borrowTicketId, String processedBy) {
-        BorrowTicket borrowTicket = borrowRepository.findById(borrowTicketId)
+        BorrowTicket borrowTicket = borrowRepository.findWithDetailsById(borrowTicketId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy phiếu mượn với ID: " + borrowTicketId));
         
+        // Phiếu đã trả/đã báo mất không còn bản sách nào đang cho mượn để đánh dấu mất
+        if (borrowTicket.getStatus() != BorrowTicket.BorrowStatus.BORROWED
+                && borrowTicket.getStatus() != BorrowTicket.BorrowStatus.OVERDUE) {
+            throw new RuntimeException("Chỉ có thể báo mất sách của phiếu đang mượn");
+        }
+        
         borrowTicket.setStatus(BorrowTicket.BorrowStatus.LOST);
         
         Book book = borrowTicket.getBook();
@@ -159,6 +181,11 @@ public class BorrowService {
                 .build();
         
         penaltyRepository.save(penalty);
+        penaltyLedgerService.recordCharge(borrowTicket.getReader().getId(), penalty);
+        fineAccrualService.discardAccrual(borrowTicket);
+        inventoryService.markCopiesLost(borrowTicket, book.getId());
+        pickupEstimateService.loanLost(book.getId(), borrowTicket.getDueDate(), borrowTicket.getQuantity());
+        readerAccountService.evictAfterCommit(borrowTicket.getReader().getId());
         
         log.info("Báo mất sách - Phiếu mượn: {}", borrowTicket.getTicketCode());
         return borrowRepository.save(borrowTicket);
@@ -166,7 +193,11 @@ public class BorrowService {
     
     private void createOverduePenalty(BorrowTicket borrowTicket) {
         long overdueDays = borrowTicket.getOverdueDays();
-        BigDecimal penaltyAmount = OVERDUE_FEE_PER_DAY.multiply(new BigDecimal(overdueDays));
+        BigDecimal penaltyAmount = fineAccrualService.finalizeFine(borrowTicket);
+        if (penaltyAmount.signum() == 0) {
+            // Còn trong thời gian ân hạn của biểu phí
+            return;
+        }
         
         Penalty penalty = Penalty.builder()
                 .borrowTicket(borrowTicket)
@@ -177,6 +208,7 @@ public class BorrowService {
                 .build();
         
         penaltyRepository.save(penalty);
+        penaltyLedgerService.recordCharge(borrowTicket.getReader().getId(), penalty);
         log.info("Tạo phiếu phạt quá hạn: {} - Số tiền: {}", borrowTicket.getTicketCode(), penaltyAmount);
     }
     
@@ -187,28 +219,33 @@ public class BorrowService {
     }
     
     @Transactional(readOnly = true)
-    public List<BorrowTicket> getAllBorrowTickets() {
-        return borrowRepository.findAll();
+    public List<BorrowTicketSummary> getAllBorrowTickets() {
+        return borrowRepository.findAllSummaries();
     }
     
     @Transactional(readOnly = true)
     public BorrowTicket getBorrowTicketById(Long id) {
-        return borrowRepository.findById(id)
+        return borrowRepository.findWithDetailsById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy phiếu mượn với ID: " + id));
     }
     
     @Transactional(readOnly = true)
-    public List<BorrowTicket> getBorrowTicketsByReaderId(Long readerId) {
-        return borrowRepository.findByReaderId(readerId);
+    public List<BorrowTicketSummary> getBorrowTicketsByReaderId(Long readerId) {
+        return borrowRepository.findSummariesByReaderId(readerId);
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<String, Object> getReaderLoanHistory(Long readerId, Long beforeId, int size) {
+        return loanHistoryService.getReaderHistory(readerId, beforeId, size);
     }
     
     @Transactional(readOnly = true)
-    public List<BorrowTicket> getOverdueTickets() {
-        return borrowRepository.findOverdueTickets(LocalDate.now());
+    public List<BorrowTicketSummary> getOverdueTickets() {
+        return borrowRepository.findOverdueSummaries(LocalDate.now());
     }
     
     @Transactional(readOnly = true)
-    public List<BorrowTicket> searchBorrowTickets(String keyword) {
-        return borrowRepository.searchBorrowTickets(keyword);
+    public List<BorrowTicketSummary> searchBorrowTickets(String keyword) {
+        return borrowRepository.searchSummaries(keyword);
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.service;
+
+import com.model.NotificationOutbox;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Kênh gửi thay thế dùng cho môi trường phát triển và kiểm thử: ghi mỗi thông báo thành một dòng
+ * vào tệp theo kênh và ngày (ví dụ EMAIL-2025-01-31.log) thay vì gửi qua SMTP/SMS thật.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "library.notification.sender", havingValue = "file", matchIfMissing = true)
+public class FileNotificationSender implements NotificationSender {
+    
+    private final Path directory;
+    
+    public FileNotificationSender(
+            @Value("${library.notification.file-directory:${java.io.tmpdir}/library-notifications}") String directory) {
+        this.directory = Path.of(directory);
+    }
+    
+    @Override
+    public boolean supports(NotificationOutbox.Channel channel) {
+        return true;
+    }
+    
+    @Override
+    public synchronized void send(NotificationOutbox message) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(message.getChannel() + "-" + LocalDate.now() + ".log");
+        String line = String.join("\t",
+                LocalDateTime.now().toString(),
+                String.valueOf(message.getId()),
+                message.getRecipient(),
+                message.getSubject(),
+                message.getBody().replace('\n', ' ')) + System.lineSeparator();
+        Files.writeString(file, line, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        log.debug("Đã ghi thông báo {} tới {} vào {}", message.getId(), message.getRecipient(), file);
+    }
+}
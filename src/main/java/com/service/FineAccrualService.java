@@ -0,0 +1,191 @@
+package com.service;
+
+import com.config.FineProperties;
+import com.model.BorrowTicket;
+import com.model.FineSchedule;
+import com.model.OverdueAccrual;
+import com.model.Reader;
+import com.repository.FineScheduleRepository;
+import com.repository.OverdueAccrualRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tính phạt quá hạn tạm thời cho các phiếu đang mượn. Hằng đêm duyệt phiếu quá hạn theo khóa ID, mỗi lô
+ * một câu INSERT ... SELECT ... ON DUPLICATE KEY UPDATE ghi tiền phạt theo biểu phí của loại độc giả
+ * và một câu cập nhật số dư của các độc giả trong lô. Khi trả sách, phạt được tính tiếp từ giá trị đã tích lũy.
+ */
+@Service
+@Slf4j
+@Transactional
+public class FineAccrualService {
+    
+    private final OverdueAccrualRepository accrualRepository;
+    private final FineScheduleRepository fineScheduleRepository;
+    private final PenaltyLedgerService penaltyLedgerService;
+    private final FineProperties fineProperties;
+    private final TransactionTemplate transactionTemplate;
+    
+    private final AtomicLong runs = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Map.of();
+    
+    public FineAccrualService(OverdueAccrualRepository accrualRepository,
+                              FineScheduleRepository fineScheduleRepository,
+                              PenaltyLedgerService penaltyLedgerService,
+                              FineProperties fineProperties,
+                              TransactionTemplate transactionTemplate) {
+        this.accrualRepository = accrualRepository;
+        this.fineScheduleRepository = fineScheduleRepository;
+        this.penaltyLedgerService = penaltyLedgerService;
+        this.fineProperties = fineProperties;
+        this.transactionTemplate = transactionTemplate;
+    }
+    
+    /**
+     * Khi khởi động: ghi biểu phí từ cấu hình vào bảng fine_schedules cho mọi loại độc giả
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void syncSchedules() {
+        List<FineSchedule> schedules = new ArrayList<>();
+        for (Reader.ReaderType type : Reader.ReaderType.values()) {
+            FineProperties.Schedule schedule = fineProperties.scheduleFor(type);
+            schedules.add(FineSchedule.builder()
+                    .readerType(type)
+                    .feePerDay(schedule.getFeePerDay())
+                    .graceDays(schedule.getGraceDays())
+                    .maxPerTicket(schedule.getMaxPerTicket())
+                    .build());
+        }
+        fineScheduleRepository.saveAll(schedules);
+    }
+    
+    @Scheduled(cron = "${library.fines.accrual-cron:0 0 1 * * *}")
+    public void scheduledAccrual() {
+        accrueOverdueFines();
+    }
+    
+    /**
+     * Cập nhật tiền phạt tạm tính cho tất cả phiếu đang quá hạn, mỗi lô một transaction ngắn
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public synchronized Map<String, Object> accrueOverdueFines() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        LocalDate today = startedAt.toLocalDate();
+        int chunkSize = fineProperties.getAccrualChunkSize();
+        
+        long tickets = 0;
+        long chunks = 0;
+        Long lastId = 0L;
+        while (true) {
+            Long afterId = lastId;
+            List<Object[]> page = transactionTemplate.execute(tx -> {
+                List<Object[]> rows = accrualRepository.findOverdueTicketPage(today, afterId, Limit.of(chunkSize));
+                if (rows.isEmpty()) {
+                    return rows;
+                }
+                
+                List<Long> ticketIds = new ArrayList<>(rows.size());
+                Set<Long> readerIds = new LinkedHashSet<>();
+                for (Object[] row : rows) {
+                    ticketIds.add((Long) row[0]);
+                    readerIds.add((Long) row[1]);
+                }
+                LocalDateTime now = LocalDateTime.now();
+                accrualRepository.upsertForTickets(ticketIds, today, now);
+                // Phiếu của một độc giả có thể nằm ở nhiều lô; lần tính ở lô cuối cùng chứa độc giả là đầy đủ
+                accrualRepository.refreshReaderBalances(readerIds, now);
+                return rows;
+            });
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            tickets += page.size();
+            chunks++;
+            lastId = (Long) page.get(page.size() - 1)[0];
+        }
+        
+        long durationMs = (System.nanoTime() - startNanos) / 1_000_000;
+        runs.incrementAndGet();
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("startedAt", startedAt);
+        result.put("durationMs", durationMs);
+        result.put("overdueTickets", tickets);
+        result.put("chunks", chunks);
+        result.put("ticketsPerSecond", durationMs > 0 ? tickets * 1000 / durationMs : tickets);
+        lastRun = result;
+        
+        log.info("Tính phạt quá hạn tạm thời: {} phiếu trong {} lô, {} ms", tickets, chunks, durationMs);
+        return result;
+    }
+    
+    /**
+     * Tiền phạt quá hạn khi trả sách. Nếu phiếu đã có giá trị tích lũy thì chỉ cộng thêm phí của những ngày
+     * sau lần tính gần nhất; dòng tích lũy được xóa và số dư tạm tính của độc giả được giảm tương ứng.
+     */
+    public BigDecimal finalizeFine(BorrowTicket borrowTicket) {
+        Reader reader = borrowTicket.getReader();
+        FineProperties.Schedule schedule = fineProperties.scheduleFor(reader.getReaderType());
+        long overdueDays = borrowTicket.getOverdueDays();
+        
+        OverdueAccrual accrual = accrualRepository.findById(borrowTicket.getId()).orElse(null);
+        if (accrual == null) {
+            return schedule.fineFor(overdueDays);
+        }
+        
+        long accruedDays = Math.max(accrual.getOverdueDays(), schedule.getGraceDays());
+        long extraDays = Math.max(overdueDays - accruedDays, 0);
+        BigDecimal fine = accrual.getAccruedAmount()
+                .add(schedule.getFeePerDay().multiply(BigDecimal.valueOf(extraDays)))
+                .min(schedule.getMaxPerTicket());
+        
+        discard(accrual);
+        return fine;
+    }
+    
+    /**
+     * Bỏ giá trị tích lũy của phiếu (ví dụ khi báo mất sách, phạt mất sách thay cho phạt quá hạn)
+     */
+    public void discardAccrual(BorrowTicket borrowTicket) {
+        accrualRepository.findById(borrowTicket.getId()).ifPresent(this::discard);
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("runs", runs.get());
+        metrics.put("accruingTickets", accrualRepository.count());
+        metrics.put("accruedAmount", accrualRepository.sumAccruedAmount());
+        metrics.put("lastRun", lastRun);
+        return metrics;
+    }
+    
+    @Transactional(readOnly = true)
+    public BigDecimal getTotalAccruedAmount() {
+        return accrualRepository.sumAccruedAmount();
+    }
+    
+    private void discard(OverdueAccrual accrual) {
+        accrualRepository.delete(accrual);
+        penaltyLedgerService.releaseAccrual(accrual.getReaderId(), accrual.getAccruedAmount());
+    }
+}
@@ -0,0 +1,242 @@
+package com.service;
+
+import com.model.Book;
+import com.model.BookCopy;
+import com.model.BorrowTicket;
+import com.repository.BookCopyRepository;
+import com.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Quản lý tồn kho theo từng bản sách (book_copies).
+ * Mượn/trả chỉ khóa các dòng bản sách; Book.availableQuantity được tính lại định kỳ
+ * cho những sách vừa thay đổi, nên các lượt mượn cùng một đầu sách không tranh chấp một dòng.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class InventoryService {
+    
+    private final BookRepository bookRepository;
+    private final BookCopyRepository bookCopyRepository;
+    private final BookCacheService bookCacheService;
+    private final TransactionTemplate transactionTemplate;
+    
+    private final Set<Long> dirtyBookIds = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Giữ {@code quantity} bản sách còn trên kệ cho phiếu mượn (phiếu phải đã được lưu)
+     */
+    public void claimCopies(BorrowTicket ticket, Long bookId, int quantity) {
+        List<Long> copyIds = bookCopyRepository.lockAvailableCopyIds(bookId, quantity);
+        if (copyIds.size() < quantity) {
+            // Bản sách ON_HOLD không được tính: chúng đã được hứa cho người đứng đầu hàng đợi
+            if (bookCopyRepository.countByBookIdAndStatus(bookId, BookCopy.CopyStatus.ON_HOLD) > 0) {
+                throw new RuntimeException("Không đủ sách để cho mượn. Còn lại: " + copyIds.size()
+                        + " (các bản khác đang được giữ cho độc giả đặt trước)");
+            }
+            throw new RuntimeException("Không đủ sách để cho mượn. Còn lại: " + copyIds.size());
+        }
+        bookCopyRepository.assignToTicket(copyIds, ticket, BookCopy.CopyStatus.ON_LOAN);
+        markDirtyAfterCommit(bookId);
+    }
+    
+    /**
+     * Giữ một bản sách trên kệ cho mỗi đặt trước theo thứ tự danh sách.
+     * Trả về số đặt trước được giữ bản sách (ít hơn danh sách khi không đủ bản sách trên kệ).
+     */
+    public int holdCopies(Long bookId, List<Long> reservationIds) {
+        List<Long> copyIds = bookCopyRepository.lockAvailableCopyIds(bookId, reservationIds.size());
+        for (int i = 0; i < copyIds.size(); i++) {
+            bookCopyRepository.holdForReservation(copyIds.get(i), reservationIds.get(i));
+        }
+        if (!copyIds.isEmpty()) {
+            markDirtyAfterCommit(bookId);
+        }
+        return copyIds.size();
+    }
+    
+    /**
+     * Chuyển bản sách đang giữ cho đặt trước sang phiếu mượn của chính người đặt; trả về số bản đã chuyển
+     */
+    public int claimHeldCopies(BorrowTicket ticket, Long reservationId, Long bookId) {
+        int claimed = bookCopyRepository.assignHeldToTicket(reservationId, ticket);
+        if (claimed > 0) {
+            markDirtyAfterCommit(bookId);
+        }
+        return claimed;
+    }
+    
+    /**
+     * Trả các bản sách đang giữ cho những đặt trước đã hết hạn/hủy về kệ
+     */
+    public int releaseHeldCopies(List<Long> reservationIds) {
+        if (reservationIds.isEmpty()) {
+            return 0;
+        }
+        List<Long> bookIds = bookCopyRepository.findBookIdsByHoldReservationIdIn(reservationIds);
+        int released = bookCopyRepository.releaseHeld(reservationIds);
+        bookIds.forEach(this::markDirtyAfterCommit);
+        return released;
+    }
+    
+    /**
+     * Đưa các bản sách của phiếu mượn trở lại kệ
+     */
+    public void releaseCopies(BorrowTicket ticket, Long bookId) {
+        int released = bookCopyRepository.releaseFromTicket(ticket, BookCopy.CopyStatus.AVAILABLE);
+        if (released == 0) {
+            List<Long> copyIds = bookCopyRepository.findUnassignedLoanCopyIds(bookId, Limit.of(ticket.getQuantity()));
+            if (!copyIds.isEmpty()) {
+                bookCopyRepository.updateStatusByIds(copyIds, BookCopy.CopyStatus.AVAILABLE);
+            }
+        }
+        markDirtyAfterCommit(bookId);
+    }
+    
+    /**
+     * Đánh dấu các bản sách của phiếu mượn là đã mất
+     */
+    public void markCopiesLost(BorrowTicket ticket, Long bookId) {
+        int lost = bookCopyRepository.updateStatusByTicket(ticket, BookCopy.CopyStatus.ON_LOAN, BookCopy.CopyStatus.LOST);
+        if (lost == 0) {
+            // Phiếu mượn tạo trước khi có bản sách: các bản ON_LOAN chưa gắn phiếu được tính là bị mất
+            List<Long> copyIds = bookCopyRepository.findUnassignedLoanCopyIds(bookId, Limit.of(ticket.getQuantity()));
+            if (!copyIds.isEmpty()) {
+                bookCopyRepository.updateStatusByIds(copyIds, BookCopy.CopyStatus.LOST);
+            }
+        }
+        markDirtyAfterCommit(bookId);
+    }
+    
+    /**
+     * Tạo thêm hoặc thanh lý bản sách để khớp với tổng số lượng mới
+     */
+    public void adjustCopies(Book book, int totalQuantity) {
+        long current = bookCopyRepository.countByBookIdAndStatusNot(book.getId(), BookCopy.CopyStatus.WITHDRAWN);
+        if (totalQuantity > current) {
+            int existing = (int) bookCopyRepository.countByBookId(book.getId());
+            createCopies(book, existing, totalQuantity - (int) current, BookCopy.CopyStatus.AVAILABLE);
+        } else if (totalQuantity < current) {
+            int toWithdraw = (int) (current - totalQuantity);
+            List<Long> copyIds = bookCopyRepository.lockAvailableCopyIds(book.getId(), toWithdraw);
+            if (copyIds.size() < toWithdraw) {
+                throw new RuntimeException("Không thể giảm số lượng: chỉ còn " + copyIds.size() + " bản sách trên kệ");
+            }
+            bookCopyRepository.updateStatusByIds(copyIds, BookCopy.CopyStatus.WITHDRAWN);
+        }
+        markDirtyAfterCommit(book.getId());
+    }
+    
+    public void deleteCopies(Long bookId) {
+        bookCopyRepository.deleteByBookId(bookId);
+    }
+    
+    @Transactional(readOnly = true)
+    public List<BookCopy> getCopiesByBookId(Long bookId) {
+        return bookCopyRepository.findByBookIdOrderByBarcode(bookId);
+    }
+    
+    /**
+     * Tính lại số lượng còn lại của các sách vừa có mượn/trả.
+     * Mỗi sách một transaction ngắn, bắt đầu sau khi bỏ sách khỏi tập cần đồng bộ,
+     * để thay đổi commit sau đó luôn được lần chạy kế tiếp xử lý.
+     */
+    @Scheduled(fixedDelayString = "${library.inventory.refresh-interval:2000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void refreshDirtyBooks() {
+        for (Long bookId : new ArrayList<>(dirtyBookIds)) {
+            dirtyBookIds.remove(bookId);
+            transactionTemplate.executeWithoutResult(status -> {
+                long available = bookCopyRepository.countByBookIdAndStatus(bookId, BookCopy.CopyStatus.AVAILABLE);
+                applyAvailability(bookId, (int) available);
+            });
+        }
+    }
+    
+    /**
+     * Khi khởi động: tạo bản sách cho các đầu sách cũ chưa có, rồi đồng bộ lại số lượng của các đầu sách bị lệch.
+     * Chạy ngoài transaction của lớp để mỗi đầu sách commit riêng, không giữ một transaction trên cả kho sách.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void backfillAndReconcile() {
+        for (Book book : bookRepository.findBooksWithoutCopies()) {
+            int total = book.getTotalQuantity();
+            int available = Math.min(book.getAvailableQuantity(), total);
+            transactionTemplate.executeWithoutResult(status -> {
+                createCopies(book, 0, available, BookCopy.CopyStatus.AVAILABLE);
+                createCopies(book, available, total - available, BookCopy.CopyStatus.ON_LOAN);
+            });
+            log.info("Tạo {} bản sách cho: {}", total, book.getTitle());
+        }
+        
+        Map<Long, Integer> availableByBook = new HashMap<>();
+        for (Object[] row : bookCopyRepository.countByStatusGroupByBook(BookCopy.CopyStatus.AVAILABLE)) {
+            availableByBook.put((Long) row[0], ((Long) row[1]).intValue());
+        }
+        int reconciled = 0;
+        for (Object[] row : bookRepository.findAvailabilityRows()) {
+            Long bookId = (Long) row[0];
+            int available = availableByBook.getOrDefault(bookId, 0);
+            if (isInSync((Integer) row[1], (Book.BookStatus) row[2], available)) {
+                continue;
+            }
+            transactionTemplate.executeWithoutResult(status -> applyAvailability(bookId, available));
+            reconciled++;
+        }
+        if (reconciled > 0) {
+            log.info("Đồng bộ lại số lượng có sẵn cho {} đầu sách", reconciled);
+        }
+    }
+    
+    // Cùng điều kiện với BookRepository.updateAvailability: chỉ cập nhật khi số lượng hoặc trạng thái kho lệch
+    private boolean isInSync(Integer storedAvailable, Book.BookStatus status, int available) {
+        if (storedAvailable == null || storedAvailable != available) {
+            return false;
+        }
+        if (available == 0) {
+            return status != Book.BookStatus.AVAILABLE;
+        }
+        return status != Book.BookStatus.OUT_OF_STOCK;
+    }
+    
+    private void applyAvailability(Long bookId, int available) {
+        if (bookRepository.updateAvailability(bookId, available) > 0) {
+            bookCacheService.evictAfterCommit(bookId);
+        }
+    }
+    
+    private void createCopies(Book book, int startIndex, int count, BookCopy.CopyStatus status) {
+        List<BookCopy> copies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            copies.add(BookCopy.builder()
+                    .book(book)
+                    .barcode(String.format("%s-%03d", book.getBookCode(), startIndex + i + 1))
+                    .status(status)
+                    .build());
+        }
+        bookCopyRepository.saveAll(copies);
+    }
+    
+    private void markDirtyAfterCommit(Long bookId) {
+        TransactionHooks.afterCommit(() -> dirtyBookIds.add(bookId));
+    }
+}
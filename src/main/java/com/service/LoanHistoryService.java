@@ -0,0 +1,122 @@
+package com.service;
+
+import com.dto.LoanHistoryEntry;
+import com.repository.BorrowRepository;
+import com.repository.BorrowTicketHistoryRepository;
+import com.repository.PenaltyHistoryRepository;
+import com.repository.PenaltyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lịch sử mượn của độc giả (phân trang keyset trên cả bảng phiếu mượn và bảng lưu trữ)
+ * và công việc định kỳ chuyển phiếu đã trả lâu ngày sang borrow_ticket_history
+ * (kèm phiếu phạt đã thanh toán/miễn sang penalty_history).
+ */
+@Service
+@Slf4j
+@Transactional(readOnly = true)
+public class LoanHistoryService {
+    
+    private final BorrowRepository borrowRepository;
+    private final BorrowTicketHistoryRepository historyRepository;
+    private final PenaltyRepository penaltyRepository;
+    private final PenaltyHistoryRepository penaltyHistoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration archiveAfter;
+    private final int batchSize;
+    
+    private static final int MAX_PAGE_SIZE = 100;
+    
+    public LoanHistoryService(BorrowRepository borrowRepository,
+                              BorrowTicketHistoryRepository historyRepository,
+                              PenaltyRepository penaltyRepository,
+                              PenaltyHistoryRepository penaltyHistoryRepository,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${library.archive.returned-after:365d}") Duration archiveAfter,
+                              @Value("${library.archive.batch-size:500}") int batchSize) {
+        this.borrowRepository = borrowRepository;
+        this.historyRepository = historyRepository;
+        this.penaltyRepository = penaltyRepository;
+        this.penaltyHistoryRepository = penaltyHistoryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.archiveAfter = archiveAfter;
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Lấy một trang lịch sử mượn, mới nhất trước. {@code beforeId} là ID cuối của trang trước (null cho trang đầu).
+     */
+    public Map<String, Object> getReaderHistory(Long readerId, Long beforeId, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        Long cursor = beforeId != null ? beforeId : Long.MAX_VALUE;
+        Limit limit = Limit.of(pageSize + 1);
+        
+        // ID phiếu được giữ nguyên khi lưu trữ nên gộp hai nguồn theo ID giảm dần là đúng thứ tự
+        List<LoanHistoryEntry> merged = new ArrayList<>(borrowRepository.findHistoryPage(readerId, cursor, limit));
+        merged.addAll(historyRepository.findHistoryPage(readerId, cursor, limit));
+        merged.sort(Comparator.comparing(LoanHistoryEntry::id).reversed());
+        
+        boolean hasNext = merged.size() > pageSize;
+        List<LoanHistoryEntry> content = hasNext ? merged.subList(0, pageSize) : merged;
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("content", content);
+        response.put("size", pageSize);
+        response.put("hasNext", hasNext);
+        response.put("nextBeforeId", hasNext ? content.get(content.size() - 1).id() : null);
+        return response;
+    }
+    
+    /**
+     * Chuyển các phiếu đã trả quá {@code library.archive.returned-after} sang bảng lưu trữ.
+     * Mỗi lô một transaction ngắn để không giữ khóa lâu trên bảng phiếu mượn.
+     */
+    @Scheduled(cron = "${library.archive.cron:0 30 2 * * *}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void archiveReturnedTickets() {
+        LocalDate cutoff = LocalDate.now().minusDays(archiveAfter.toDays());
+        long archived = 0;
+        Long lastId = 0L;
+        
+        while (true) {
+            Long afterId = lastId;
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<Long> batch = borrowRepository.findArchivableIds(cutoff, afterId, Limit.of(batchSize));
+                if (!batch.isEmpty()) {
+                    LocalDateTime archivedAt = LocalDateTime.now();
+                    historyRepository.copyFromBorrowTickets(batch, archivedAt);
+                    // Phiếu phạt đã thanh toán/miễn đi cùng phiếu mượn sang bảng lưu trữ
+                    penaltyHistoryRepository.copySettledFromPenalties(batch, archivedAt);
+                    penaltyRepository.deleteSettledByBorrowTicketIdIn(batch);
+                    borrowRepository.deleteByIdIn(batch);
+                }
+                return batch;
+            });
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+            archived += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+        
+        if (archived > 0) {
+            log.info("Lưu trữ {} phiếu mượn đã trả trước ngày {}", archived, cutoff);
+        }
+    }
+}
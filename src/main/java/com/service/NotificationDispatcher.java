@@ -0,0 +1,292 @@
+package com.service;
+
+import com.model.NotificationOutbox;
+import com.repository.NotificationOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gửi thông báo trong outbox theo lô. Mỗi lô được nhận bằng FOR UPDATE SKIP LOCKED và đánh dấu SENDING
+ * kèm thời hạn thuê, việc gửi diễn ra ngoài transaction; thất bại được thử lại với độ trễ tăng dần
+ * cho tới số lần tối đa. Tốc độ gửi được giới hạn riêng cho từng kênh.
+ */
+@Service
+@Slf4j
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class NotificationDispatcher {
+    
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final List<NotificationOutbox.OutboxStatus> FINISHED_STATUSES =
+            List.of(NotificationOutbox.OutboxStatus.SENT, NotificationOutbox.OutboxStatus.FAILED);
+    
+    private final NotificationOutboxRepository outboxRepository;
+    private final List<NotificationSender> senders;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryBaseDelay;
+    private final Duration retryMaxDelay;
+    private final Duration lease;
+    private final boolean dispatchEnabled;
+    private final Duration retention;
+    private final int purgeChunkSize;
+    private final Map<NotificationOutbox.Channel, ChannelRateLimiter> rateLimiters =
+            new EnumMap<>(NotificationOutbox.Channel.class);
+    
+    private final AtomicLong totalSent = new AtomicLong();
+    private final AtomicLong totalRetried = new AtomicLong();
+    private final AtomicLong totalFailed = new AtomicLong();
+    private final AtomicLong totalPurged = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Map.of();
+    
+    public NotificationDispatcher(NotificationOutboxRepository outboxRepository,
+                                  List<NotificationSender> senders,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${library.notification.batch-size:500}") int batchSize,
+                                  @Value("${library.notification.max-attempts:5}") int maxAttempts,
+                                  @Value("${library.notification.retry-base-delay:1m}") Duration retryBaseDelay,
+                                  @Value("${library.notification.retry-max-delay:1h}") Duration retryMaxDelay,
+                                  @Value("${library.notification.lease:5m}") Duration lease,
+                                  @Value("${library.notification.dispatch-enabled:true}") boolean dispatchEnabled,
+                                  @Value("${library.notification.rate-limit.email:20}") int emailPerSecond,
+                                  @Value("${library.notification.rate-limit.sms:5}") int smsPerSecond,
+                                  @Value("${library.notification.retention:30d}") Duration retention,
+                                  @Value("${library.notification.purge-chunk-size:1000}") int purgeChunkSize) {
+        this.outboxRepository = outboxRepository;
+        this.senders = senders;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseDelay = retryBaseDelay;
+        this.retryMaxDelay = retryMaxDelay;
+        this.lease = lease;
+        this.dispatchEnabled = dispatchEnabled;
+        this.retention = retention;
+        this.purgeChunkSize = purgeChunkSize;
+        rateLimiters.put(NotificationOutbox.Channel.EMAIL, new ChannelRateLimiter(emailPerSecond));
+        rateLimiters.put(NotificationOutbox.Channel.SMS, new ChannelRateLimiter(smsPerSecond));
+    }
+    
+    @Scheduled(fixedDelayString = "${library.notification.dispatch-interval:5000}",
+               initialDelayString = "${library.notification.dispatch-interval:5000}")
+    public void scheduledDispatch() {
+        // Node không đảm nhận việc gửi (hoặc môi trường test) tắt bằng library.notification.dispatch-enabled=false
+        if (!dispatchEnabled) {
+            return;
+        }
+        dispatchPending();
+    }
+    
+    /**
+     * Gửi các thông báo đã đến lượt cho tới khi hết lô, trả về số liệu của lần chạy
+     */
+    public synchronized Map<String, Object> dispatchPending() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        int sent = 0;
+        int retried = 0;
+        int failed = 0;
+        
+        while (true) {
+            List<NotificationOutbox> batch = claimBatch();
+            if (batch.isEmpty()) {
+                break;
+            }
+            
+            List<Long> sentIds = new ArrayList<>(batch.size());
+            List<NotificationOutbox> failures = new ArrayList<>();
+            List<String> errors = new ArrayList<>();
+            for (NotificationOutbox message : batch) {
+                try {
+                    rateLimiters.get(message.getChannel()).acquire();
+                    senderFor(message.getChannel()).send(message);
+                    sentIds.add(message.getId());
+                } catch (InterruptedException e) {
+                    // Các dòng chưa gửi sẽ được nhận lại khi hết thời hạn thuê
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    failures.add(message);
+                    errors.add(e.getClass().getSimpleName() + ": " + e.getMessage());
+                }
+            }
+            
+            int[] outcome = recordOutcome(sentIds, failures, errors);
+            sent += sentIds.size();
+            retried += outcome[0];
+            failed += outcome[1];
+            
+            if (Thread.currentThread().isInterrupted() || batch.size() < batchSize) {
+                break;
+            }
+        }
+        
+        long durationMs = (System.nanoTime() - startNanos) / 1_000_000;
+        totalSent.addAndGet(sent);
+        totalRetried.addAndGet(retried);
+        totalFailed.addAndGet(failed);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("startedAt", startedAt);
+        result.put("durationMs", durationMs);
+        result.put("sent", sent);
+        result.put("retryScheduled", retried);
+        result.put("failed", failed);
+        lastRun = result;
+        
+        if (sent + retried + failed > 0) {
+            log.info("Gửi thông báo: {} thành công, {} hẹn thử lại, {} thất bại trong {} ms",
+                    sent, retried, failed, durationMs);
+        }
+        return result;
+    }
+    
+    @Scheduled(cron = "${library.notification.purge-cron:0 45 3 * * *}")
+    public void scheduledPurge() {
+        purgeFinished();
+    }
+    
+    /**
+     * Xóa thông báo SENT và FAILED cũ hơn thời gian lưu giữ theo lô, mỗi lô một transaction.
+     * Dòng outbox cũng là dấu chống tạo trùng, nên thời gian lưu giữ phải dài hơn hạn nhận sách đặt trước.
+     */
+    public long purgeFinished() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        long purged = 0;
+        while (true) {
+            Integer deleted = transactionTemplate.execute(tx -> {
+                List<Long> ids = outboxRepository.findIdsByStatusInAndCreatedAtBefore(
+                        FINISHED_STATUSES, before, Limit.of(purgeChunkSize));
+                return ids.isEmpty() ? 0 : outboxRepository.deleteByIdIn(ids);
+            });
+            if (deleted == null || deleted == 0) {
+                break;
+            }
+            purged += deleted;
+        }
+        totalPurged.addAndGet(purged);
+        if (purged > 0) {
+            log.info("Đã xóa {} thông báo đã xử lý xong", purged);
+        }
+        return purged;
+    }
+    
+    @Transactional(readOnly = true, propagation = Propagation.REQUIRED)
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        Map<String, Long> queue = new HashMap<>();
+        for (NotificationOutbox.OutboxStatus status : NotificationOutbox.OutboxStatus.values()) {
+            queue.put(status.name(), outboxRepository.countByStatus(status));
+        }
+        metrics.put("outbox", queue);
+        metrics.put("totalSent", totalSent.get());
+        metrics.put("totalRetryScheduled", totalRetried.get());
+        metrics.put("totalFailed", totalFailed.get());
+        metrics.put("totalPurged", totalPurged.get());
+        metrics.put("lastRun", lastRun);
+        return metrics;
+    }
+    
+    private List<NotificationOutbox> claimBatch() {
+        List<NotificationOutbox> batch = transactionTemplate.execute(tx -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = outboxRepository.lockDueIds(now, batchSize);
+            if (ids.isEmpty()) {
+                return List.<NotificationOutbox>of();
+            }
+            outboxRepository.markSending(ids, NotificationOutbox.OutboxStatus.SENDING, now.plus(lease));
+            List<NotificationOutbox> claimed = new ArrayList<>(outboxRepository.findAllById(ids));
+            claimed.sort(Comparator.comparing(NotificationOutbox::getId));
+            return claimed;
+        });
+        return batch != null ? batch : List.of();
+    }
+    
+    /**
+     * Ghi kết quả gửi của một lô; trả về [số dòng hẹn thử lại, số dòng thất bại hẳn]
+     */
+    private int[] recordOutcome(List<Long> sentIds, List<NotificationOutbox> failures, List<String> errors) {
+        int[] outcome = new int[2];
+        transactionTemplate.executeWithoutResult(tx -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (!sentIds.isEmpty()) {
+                outboxRepository.markSent(sentIds, NotificationOutbox.OutboxStatus.SENT, now);
+            }
+            for (int i = 0; i < failures.size(); i++) {
+                NotificationOutbox message = failures.get(i);
+                int attempts = message.getAttempts() + 1;
+                boolean exhausted = attempts >= maxAttempts;
+                String error = errors.get(i);
+                if (error.length() > MAX_ERROR_LENGTH) {
+                    error = error.substring(0, MAX_ERROR_LENGTH);
+                }
+                
+                outboxRepository.markAttemptFailed(message.getId(),
+                        exhausted ? NotificationOutbox.OutboxStatus.FAILED : NotificationOutbox.OutboxStatus.PENDING,
+                        attempts, now.plus(backoff(attempts)), error);
+                if (exhausted) {
+                    outcome[1]++;
+                    log.warn("Thông báo {} tới {} thất bại sau {} lần: {}",
+                            message.getId(), message.getRecipient(), attempts, error);
+                } else {
+                    outcome[0]++;
+                }
+            }
+        });
+        return outcome;
+    }
+    
+    private Duration backoff(int attempts) {
+        // base * 2^(attempts - 1), giới hạn bởi retryMaxDelay
+        Duration delay = retryBaseDelay.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(retryMaxDelay) > 0 ? retryMaxDelay : delay;
+    }
+    
+    private NotificationSender senderFor(NotificationOutbox.Channel channel) {
+        for (NotificationSender sender : senders) {
+            if (sender.supports(channel)) {
+                return sender;
+            }
+        }
+        throw new IllegalStateException("Không có kênh gửi cho " + channel);
+    }
+    
+    /**
+     * Giới hạn tốc độ đơn giản: giãn cách đều các lần gửi theo số thông báo mỗi giây
+     */
+    private static final class ChannelRateLimiter {
+        
+        private final long intervalNanos;
+        private long nextFreeAt = System.nanoTime();
+        
+        ChannelRateLimiter(int permitsPerSecond) {
+            this.intervalNanos = permitsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / permitsPerSecond : 0;
+        }
+        
+        synchronized void acquire() throws InterruptedException {
+            long now = System.nanoTime();
+            long waitNanos = nextFreeAt - now;
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            nextFreeAt = Math.max(now, nextFreeAt) + intervalNanos;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.service;
+
+import com.model.NotificationOutbox;
+
+/**
+ * Kênh gửi thông báo (email, SMS...). Mỗi triển khai khai báo các kênh nó hỗ trợ;
+ * ném ngoại lệ khi gửi thất bại để NotificationDispatcher lên lịch thử lại.
+ */
+public interface NotificationSender {
+    
+    boolean supports(NotificationOutbox.Channel channel);
+    
+    void send(NotificationOutbox message) throws Exception;
+}
@@ -0,0 +1,161 @@
+package com.service;
+
+import com.dto.NotificationTarget;
+import com.model.NotificationOutbox;
+import com.repository.NotificationOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Tạo thông báo vào outbox theo lô: duyệt phiếu mượn đến hạn ngày mai và đặt trước đã sẵn sàng
+ * theo khóa ID, mỗi trang dựng nội dung và ghi trong một transaction ngắn.
+ * Việc gửi thực tế do NotificationDispatcher đảm nhận.
+ */
+@Service
+@Slf4j
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class NotificationService {
+    
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    
+    private final NotificationOutboxRepository outboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    
+    public NotificationService(NotificationOutboxRepository outboxRepository,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${library.notification.batch-size:500}") int batchSize) {
+        this.outboxRepository = outboxRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+    
+    @Scheduled(cron = "${library.notification.reminder-cron:0 0 8 * * *}")
+    public void scheduledDueReminders() {
+        enqueueDueReminders();
+    }
+    
+    @Scheduled(fixedDelayString = "${library.notification.hold-ready-interval:60000}",
+               initialDelayString = "${library.notification.hold-ready-interval:60000}")
+    public void scheduledHoldReadyNotices() {
+        enqueueHoldReadyNotices();
+    }
+    
+    /**
+     * Tạo nhắc hạn trả cho các phiếu mượn đến hạn vào ngày mai; phiếu đã có nhắc hạn được bỏ qua
+     */
+    public synchronized int enqueueDueReminders() {
+        LocalDate dueDate = LocalDate.now().plusDays(1);
+        int created = enqueueInPages(NotificationOutbox.NotificationType.DUE_REMINDER,
+                afterId -> outboxRepository.findDueReminderTargets(dueDate, afterId, Limit.of(batchSize)));
+        if (created > 0) {
+            log.info("Đã tạo {} nhắc hạn trả sách cho ngày {}", created, dueDate);
+        }
+        return created;
+    }
+    
+    /**
+     * Tạo thông báo cho các đặt trước đã sẵn sàng mà độc giả chưa được báo
+     */
+    public synchronized int enqueueHoldReadyNotices() {
+        int created = enqueueInPages(NotificationOutbox.NotificationType.HOLD_READY,
+                afterId -> outboxRepository.findHoldReadyTargets(afterId, Limit.of(batchSize)));
+        if (created > 0) {
+            log.info("Đã tạo {} thông báo sách đặt trước sẵn sàng", created);
+        }
+        return created;
+    }
+    
+    private int enqueueInPages(NotificationOutbox.NotificationType type,
+                               Function<Long, List<NotificationTarget>> pageLoader) {
+        int created = 0;
+        Long lastId = 0L;
+        
+        while (true) {
+            Long afterId = lastId;
+            List<NotificationTarget> page = transactionTemplate.execute(tx -> pageLoader.apply(afterId));
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            
+            List<NotificationOutbox> messages = new ArrayList<>(page.size());
+            for (NotificationTarget target : page) {
+                messages.add(render(type, target));
+            }
+            try {
+                transactionTemplate.executeWithoutResult(tx -> outboxRepository.saveAll(messages));
+                created += messages.size();
+            } catch (DataIntegrityViolationException e) {
+                // Một node khác vừa tạo một số thông báo của trang: ghi lại từng dòng để chỉ bỏ qua dòng trùng
+                log.warn("Lô thông báo {} bị trùng lặp, ghi lại từng dòng: {}", type, e.getMessage());
+                created += enqueueEach(type, page);
+            }
+            
+            if (page.size() < batchSize) {
+                break;
+            }
+            lastId = page.get(page.size() - 1).referenceId();
+        }
+        return created;
+    }
+    
+    private int enqueueEach(NotificationOutbox.NotificationType type, List<NotificationTarget> page) {
+        int created = 0;
+        for (NotificationTarget target : page) {
+            // Dựng lại bản ghi vì các đối tượng của lô vừa rollback có thể đã được gán ID
+            NotificationOutbox message = render(type, target);
+            try {
+                transactionTemplate.executeWithoutResult(tx -> outboxRepository.saveAndFlush(message));
+                created++;
+            } catch (DataIntegrityViolationException e) {
+                // Thường là dòng trùng do node khác vừa tạo; ghi rõ nguyên nhân để không che lỗi dữ liệu khác
+                log.debug("Bỏ qua thông báo {} cho ID {}: {}", type, target.referenceId(),
+                        e.getMostSpecificCause().getMessage());
+            }
+        }
+        return created;
+    }
+    
+    private NotificationOutbox render(NotificationOutbox.NotificationType type, NotificationTarget target) {
+        boolean hasEmail = target.email() != null && !target.email().isBlank();
+        NotificationOutbox.Channel channel = hasEmail ? NotificationOutbox.Channel.EMAIL : NotificationOutbox.Channel.SMS;
+        String date = target.referenceDate().format(DATE_FORMAT);
+        
+        String subject;
+        String body;
+        if (type == NotificationOutbox.NotificationType.DUE_REMINDER) {
+            subject = "Nhắc hạn trả sách";
+            body = String.format("Xin chào %s, sách \"%s\" (phiếu %s) sẽ đến hạn trả vào ngày %s. "
+                    + "Vui lòng trả hoặc gia hạn đúng hạn để tránh bị phạt.",
+                    target.readerName(), target.bookTitle(), target.referenceCode(), date);
+        } else {
+            subject = "Sách đặt trước đã sẵn sàng";
+            body = String.format("Xin chào %s, sách \"%s\" (mã đặt trước %s) đã sẵn sàng. "
+                    + "Vui lòng đến thư viện nhận sách trước ngày %s.",
+                    target.readerName(), target.bookTitle(), target.referenceCode(), date);
+        }
+        
+        return NotificationOutbox.builder()
+                .type(type)
+                .referenceId(target.referenceId())
+                .referenceDate(target.referenceDate())
+                .channel(channel)
+                .recipient(hasEmail ? target.email() : target.phoneNumber())
+                .subject(subject)
+                .body(body)
+                .build();
+    }
+}
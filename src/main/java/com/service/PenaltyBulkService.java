@@ -0,0 +1,203 @@
+package com.service;
+
+import com.dto.PenaltyBulkOutcome;
+import com.dto.PenaltyState;
+import com.model.Penalty;
+import com.model.PenaltyLedgerEntry;
+import com.repository.PenaltyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Thanh toán và miễn phạt hàng loạt. Mỗi lô đọc trạng thái bằng một truy vấn, cập nhật bằng một câu UPDATE
+ * cho mỗi nhóm phiên bản (kiểm tra phiên bản lạc quan) và ghi sổ phạt một lần cho mỗi độc giả.
+ * Nếu có phiếu bị sửa đồng thời giữa lúc đọc và lúc cập nhật, lô được rollback và xử lý lại.
+ */
+@Service
+@Slf4j
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PenaltyBulkService {
+    
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+    
+    private final PenaltyRepository penaltyRepository;
+    private final PenaltyLedgerService penaltyLedgerService;
+    private final ReaderAccountService readerAccountService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    
+    public PenaltyBulkService(PenaltyRepository penaltyRepository,
+                              PenaltyLedgerService penaltyLedgerService,
+                              ReaderAccountService readerAccountService,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${library.penalty.bulk-chunk-size:1000}") int chunkSize) {
+        this.penaltyRepository = penaltyRepository;
+        this.penaltyLedgerService = penaltyLedgerService;
+        this.readerAccountService = readerAccountService;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Thanh toán các phiếu phạt theo danh sách ID hoặc toàn bộ phạt chưa thanh toán của một độc giả
+     */
+    public Map<String, Object> payPenalties(List<Long> penaltyIds, Long readerId,
+                                            Map<Long, Long> expectedVersions, String processedBy) {
+        LocalDate today = LocalDate.now();
+        return settle("Thanh toán phạt hàng loạt", penaltyIds, readerId, expectedVersions,
+                PenaltyLedgerEntry.EntryType.PAYMENT, processedBy,
+                (group, version) -> penaltyRepository.settleByIds(
+                        group, version, Penalty.PaymentStatus.PAID, today, processedBy));
+    }
+    
+    /**
+     * Miễn các phiếu phạt theo danh sách ID hoặc toàn bộ phạt chưa thanh toán của một độc giả
+     */
+    public Map<String, Object> waivePenalties(List<Long> penaltyIds, Long readerId,
+                                              Map<Long, Long> expectedVersions, String processedBy, String reason) {
+        LocalDate today = LocalDate.now();
+        String reasonSuffix = " - Miễn phạt: " + reason;
+        return settle("Miễn phạt hàng loạt", penaltyIds, readerId, expectedVersions,
+                PenaltyLedgerEntry.EntryType.WAIVER, processedBy,
+                (group, version) -> penaltyRepository.waiveByIds(
+                        group, version, Penalty.PaymentStatus.WAIVED, today, processedBy, reasonSuffix));
+    }
+    
+    private Map<String, Object> settle(String operation, List<Long> penaltyIds, Long readerId,
+                                       Map<Long, Long> expectedVersions, PenaltyLedgerEntry.EntryType entryType,
+                                       String processedBy, GroupUpdate update) {
+        boolean byIds = penaltyIds != null && !penaltyIds.isEmpty();
+        if (byIds == (readerId != null)) {
+            throw new RuntimeException("Cần chỉ định danh sách phạt hoặc độc giả (chỉ một trong hai)");
+        }
+        
+        long startNanos = System.nanoTime();
+        List<Long> ids = byIds
+                ? new ArrayList<>(new LinkedHashSet<>(penaltyIds))
+                : penaltyRepository.findUnpaidIdsByReaderId(readerId);
+        Map<Long, Long> versions = expectedVersions != null ? expectedVersions : Map.of();
+        
+        List<PenaltyBulkOutcome> outcomes = new ArrayList<>(ids.size());
+        BigDecimal settledAmount = BigDecimal.ZERO;
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            ChunkResult result = settleChunkWithRetry(chunk, versions, entryType, processedBy, update);
+            outcomes.addAll(result.outcomes());
+            settledAmount = settledAmount.add(result.settledAmount());
+        }
+        
+        Map<PenaltyBulkOutcome.Outcome, Long> counts = new EnumMap<>(PenaltyBulkOutcome.Outcome.class);
+        for (PenaltyBulkOutcome outcome : outcomes) {
+            counts.merge(outcome.outcome(), 1L, Long::sum);
+        }
+        long durationMs = (System.nanoTime() - startNanos) / 1_000_000;
+        long settled = counts.getOrDefault(PenaltyBulkOutcome.Outcome.SETTLED, 0L);
+        log.info("{}: {}/{} phiếu, tổng {} trong {} ms", operation, settled, ids.size(), settledAmount, durationMs);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("requested", ids.size());
+        response.put("settled", settled);
+        response.put("settledAmount", settledAmount);
+        response.put("outcomeCounts", counts);
+        response.put("items", outcomes);
+        response.put("durationMs", durationMs);
+        return response;
+    }
+    
+    private ChunkResult settleChunkWithRetry(List<Long> chunk, Map<Long, Long> expectedVersions,
+                                             PenaltyLedgerEntry.EntryType entryType, String processedBy,
+                                             GroupUpdate update) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(tx -> settleChunk(chunk, expectedVersions, entryType,
+                        processedBy, update));
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= MAX_CHUNK_ATTEMPTS) {
+                    log.warn("Bỏ qua lô {} phiếu phạt do xung đột phiên bản liên tục", chunk.size());
+                    List<PenaltyBulkOutcome> conflicts = chunk.stream()
+                            .map(id -> new PenaltyBulkOutcome(id, PenaltyBulkOutcome.Outcome.VERSION_CONFLICT, null))
+                            .toList();
+                    return new ChunkResult(conflicts, BigDecimal.ZERO);
+                }
+            }
+        }
+    }
+    
+    private ChunkResult settleChunk(List<Long> chunk, Map<Long, Long> expectedVersions,
+                                    PenaltyLedgerEntry.EntryType entryType, String processedBy, GroupUpdate update) {
+        Map<Long, PenaltyState> states = new HashMap<>();
+        for (PenaltyState state : penaltyRepository.findStatesByIdIn(chunk)) {
+            states.put(state.id(), state);
+        }
+        
+        Map<Long, PenaltyBulkOutcome> outcomes = new LinkedHashMap<>();
+        Map<Long, List<PenaltyState>> candidatesByVersion = new TreeMap<>();
+        for (Long id : chunk) {
+            PenaltyState state = states.get(id);
+            Long expected = expectedVersions.get(id);
+            if (state == null) {
+                outcomes.put(id, new PenaltyBulkOutcome(id, PenaltyBulkOutcome.Outcome.NOT_FOUND, null));
+            } else if (expected != null && !expected.equals(state.version())) {
+                outcomes.put(id, new PenaltyBulkOutcome(id, PenaltyBulkOutcome.Outcome.VERSION_CONFLICT, state.version()));
+            } else if (state.paymentStatus() == Penalty.PaymentStatus.PAID) {
+                outcomes.put(id, new PenaltyBulkOutcome(id, PenaltyBulkOutcome.Outcome.ALREADY_PAID, state.version()));
+            } else if (state.paymentStatus() == Penalty.PaymentStatus.WAIVED) {
+                outcomes.put(id, new PenaltyBulkOutcome(id, PenaltyBulkOutcome.Outcome.ALREADY_WAIVED, state.version()));
+            } else {
+                candidatesByVersion.computeIfAbsent(state.version(), v -> new ArrayList<>()).add(state);
+            }
+        }
+        
+        // Thường chỉ có một vài phiên bản khác nhau trong một lô nên số câu UPDATE rất nhỏ
+        List<PenaltyState> settled = new ArrayList<>();
+        candidatesByVersion.forEach((version, group) -> {
+            List<Long> groupIds = group.stream().map(PenaltyState::id).toList();
+            int updated = update.apply(groupIds, version);
+            if (updated != group.size()) {
+                throw new OptimisticLockingFailureException("Phiếu phạt đã bị thay đổi bởi thao tác khác");
+            }
+            settled.addAll(group);
+        });
+        
+        BigDecimal settledAmount = BigDecimal.ZERO;
+        Set<Long> readerIds = new HashSet<>();
+        for (PenaltyState state : settled) {
+            outcomes.put(state.id(),
+                    new PenaltyBulkOutcome(state.id(), PenaltyBulkOutcome.Outcome.SETTLED, state.version() + 1));
+            settledAmount = settledAmount.add(state.amount());
+            readerIds.add(state.readerId());
+        }
+        if (!settled.isEmpty()) {
+            penaltyLedgerService.recordBulkSettlement(entryType, settled, processedBy);
+            readerAccountService.evictAllAfterCommit(readerIds);
+        }
+        return new ChunkResult(chunk.stream().map(outcomes::get).toList(), settledAmount);
+    }
+    
+    @FunctionalInterface
+    private interface GroupUpdate {
+        int apply(List<Long> ids, Long version);
+    }
+    
+    private record ChunkResult(List<PenaltyBulkOutcome> outcomes, BigDecimal settledAmount) {
+    }
+}
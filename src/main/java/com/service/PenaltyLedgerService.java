@@ -0,0 +1,229 @@
+package com.service;
+
+import com.dto.PenaltyState;
+import com.model.Penalty;
+import com.model.PenaltyLedgerEntry;
+import com.model.ReaderPenaltyBalance;
+import com.repository.OverdueAccrualRepository;
+import com.repository.PenaltyLedgerRepository;
+import com.repository.ReaderPenaltyBalanceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Sổ phạt theo độc giả. Mỗi lần phát sinh, thanh toán hoặc miễn phạt ghi một bút toán và cập nhật
+ * số dư còn nợ trong cùng transaction với nghiệp vụ gọi tới, nên đọc số nợ chỉ cần một dòng theo khóa chính.
+ */
+@Service
+@Slf4j
+@Transactional
+public class PenaltyLedgerService {
+    
+    private static final int MAX_PAGE_SIZE = 100;
+    
+    private final PenaltyLedgerRepository ledgerRepository;
+    private final ReaderPenaltyBalanceRepository balanceRepository;
+    private final OverdueAccrualRepository accrualRepository;
+    private final BigDecimal maxOutstandingBalance;
+    
+    public PenaltyLedgerService(PenaltyLedgerRepository ledgerRepository,
+                                ReaderPenaltyBalanceRepository balanceRepository,
+                                OverdueAccrualRepository accrualRepository,
+                                @Value("${library.penalty.max-outstanding-balance:200000}") BigDecimal maxOutstandingBalance) {
+        this.ledgerRepository = ledgerRepository;
+        this.balanceRepository = balanceRepository;
+        this.accrualRepository = accrualRepository;
+        this.maxOutstandingBalance = maxOutstandingBalance;
+    }
+    
+    public PenaltyLedgerEntry recordCharge(Long readerId, Penalty penalty) {
+        return post(readerId, penalty.getId(), PenaltyLedgerEntry.EntryType.CHARGE,
+                penalty.getAmount(), 1, penalty.getProcessedBy());
+    }
+    
+    public PenaltyLedgerEntry recordPayment(Long readerId, Penalty penalty, String processedBy) {
+        return post(readerId, penalty.getId(), PenaltyLedgerEntry.EntryType.PAYMENT,
+                penalty.getAmount(), -1, processedBy);
+    }
+    
+    public PenaltyLedgerEntry recordWaiver(Long readerId, Penalty penalty, String processedBy) {
+        return post(readerId, penalty.getId(), PenaltyLedgerEntry.EntryType.WAIVER,
+                penalty.getAmount(), -1, processedBy);
+    }
+    
+    /**
+     * Ghi có cho một lô phiếu phạt đã thanh toán/miễn: mỗi phiếu phạt một bút toán (giữ liên kết penalty_id),
+     * nhưng mỗi độc giả chỉ khóa và cập nhật số dư một lần.
+     * Khóa số dư theo thứ tự ID độc giả để hai lô chạy song song không gây deadlock.
+     */
+    public void recordBulkSettlement(PenaltyLedgerEntry.EntryType type, Collection<PenaltyState> settled,
+                                     String processedBy) {
+        Map<Long, List<PenaltyState>> byReader = new TreeMap<>();
+        for (PenaltyState state : settled) {
+            byReader.computeIfAbsent(state.readerId(), id -> new ArrayList<>()).add(state);
+        }
+        List<PenaltyLedgerEntry> entries = new ArrayList<>();
+        byReader.forEach((readerId, penalties) -> {
+            ReaderPenaltyBalance balance = lockBalance(readerId);
+            BigDecimal running = balance.getOutstandingAmount();
+            for (PenaltyState penalty : penalties) {
+                running = running.subtract(penalty.amount()).max(BigDecimal.ZERO);
+                entries.add(PenaltyLedgerEntry.builder()
+                        .readerId(readerId)
+                        .penaltyId(penalty.id())
+                        .entryType(type)
+                        .amount(penalty.amount())
+                        .balanceAfter(running)
+                        .processedBy(processedBy)
+                        .build());
+            }
+            balance.setOutstandingAmount(running);
+            balance.setUnpaidCount(Math.max(balance.getUnpaidCount() - penalties.size(), 0L));
+            balanceRepository.save(balance);
+        });
+        ledgerRepository.saveAll(entries);
+    }
+    
+    @Transactional(readOnly = true)
+    public BigDecimal getOutstandingBalance(Long readerId) {
+        return balanceRepository.findById(readerId)
+                .map(ReaderPenaltyBalance::getOutstandingAmount)
+                .orElse(BigDecimal.ZERO);
+    }
+    
+    /**
+     * Trừ tiền phạt tạm tính của một phiếu khỏi số dư khi phiếu được trả hoặc báo mất
+     */
+    public void releaseAccrual(Long readerId, BigDecimal accruedAmount) {
+        balanceRepository.findForUpdate(readerId).ifPresent(balance -> {
+            balance.setAccruedAmount(balance.getAccruedAmount().subtract(accruedAmount).max(BigDecimal.ZERO));
+            balanceRepository.save(balance);
+        });
+    }
+    
+    /**
+     * Chặn mượn sách khi tiền phạt còn nợ cộng tiền phạt tạm tính của sách đang quá hạn
+     * vượt {@code library.penalty.max-outstanding-balance}
+     */
+    @Transactional(readOnly = true)
+    public void assertWithinDebtLimit(Long readerId) {
+        checkDebtLimit(readerId).ifPresent(reason -> {
+            throw new RuntimeException(reason);
+        });
+    }
+    
+    /**
+     * Lý do không được mượn vì nợ phạt (rỗng nếu còn trong hạn mức); dùng chung cho lập phiếu và quét thẻ tại quầy
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> checkDebtLimit(Long readerId) {
+        BigDecimal outstanding = balanceRepository.findById(readerId)
+                .map(balance -> balance.getOutstandingAmount().add(balance.getAccruedAmount()))
+                .orElse(BigDecimal.ZERO);
+        if (outstanding.compareTo(maxOutstandingBalance) > 0) {
+            return Optional.of("Độc giả đang nợ phạt " + outstanding.toPlainString()
+                    + ", vượt mức cho phép " + maxOutstandingBalance.toPlainString());
+        }
+        return Optional.empty();
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<String, Object> getReaderLedger(Long readerId, Long beforeId, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        Long cursor = beforeId != null ? beforeId : Long.MAX_VALUE;
+        List<PenaltyLedgerEntry> entries = ledgerRepository.findPage(readerId, cursor, Limit.of(pageSize + 1));
+        
+        boolean hasNext = entries.size() > pageSize;
+        List<PenaltyLedgerEntry> content = hasNext ? entries.subList(0, pageSize) : entries;
+        ReaderPenaltyBalance balance = balanceRepository.findById(readerId).orElse(null);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("readerId", readerId);
+        response.put("outstandingAmount", balance != null ? balance.getOutstandingAmount() : BigDecimal.ZERO);
+        response.put("unpaidCount", balance != null ? balance.getUnpaidCount() : 0L);
+        response.put("accruedAmount", balance != null ? balance.getAccruedAmount() : BigDecimal.ZERO);
+        response.put("content", content);
+        response.put("size", pageSize);
+        response.put("hasNext", hasNext);
+        response.put("nextBeforeId", hasNext ? content.get(content.size() - 1).getId() : null);
+        return response;
+    }
+    
+    public void deleteReaderLedger(Long readerId) {
+        ledgerRepository.deleteByReaderId(readerId);
+        accrualRepository.deleteByReaderId(readerId);
+        balanceRepository.deleteByReaderId(readerId);
+    }
+    
+    /**
+     * Khi khởi động: lập số dư đầu kỳ cho các độc giả còn phạt chưa thanh toán nhưng chưa có trong sổ
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        List<Object[]> totals = balanceRepository.findUnpaidTotalsWithoutBalance();
+        for (Object[] row : totals) {
+            Long readerId = (Long) row[0];
+            long unpaidCount = (Long) row[1];
+            BigDecimal amount = (BigDecimal) row[2];
+            
+            balanceRepository.save(ReaderPenaltyBalance.builder()
+                    .readerId(readerId)
+                    .outstandingAmount(amount)
+                    .unpaidCount(unpaidCount)
+                    .build());
+            ledgerRepository.save(PenaltyLedgerEntry.builder()
+                    .readerId(readerId)
+                    .entryType(PenaltyLedgerEntry.EntryType.OPENING)
+                    .amount(amount)
+                    .balanceAfter(amount)
+                    .build());
+        }
+        if (!totals.isEmpty()) {
+            log.info("Lập số dư phạt đầu kỳ cho {} độc giả", totals.size());
+        }
+    }
+    
+    private PenaltyLedgerEntry post(Long readerId, Long penaltyId, PenaltyLedgerEntry.EntryType type,
+                                    BigDecimal amount, int unpaidDelta, String processedBy) {
+        ReaderPenaltyBalance balance = lockBalance(readerId);
+        
+        BigDecimal signed = type == PenaltyLedgerEntry.EntryType.CHARGE ? amount : amount.negate();
+        balance.setOutstandingAmount(balance.getOutstandingAmount().add(signed).max(BigDecimal.ZERO));
+        balance.setUnpaidCount(Math.max(balance.getUnpaidCount() + unpaidDelta, 0L));
+        balanceRepository.save(balance);
+        
+        PenaltyLedgerEntry entry = PenaltyLedgerEntry.builder()
+                .readerId(readerId)
+                .penaltyId(penaltyId)
+                .entryType(type)
+                .amount(amount)
+                .balanceAfter(balance.getOutstandingAmount())
+                .processedBy(processedBy)
+                .build();
+        return ledgerRepository.save(entry);
+    }
+    
+    /**
+     * Bảo đảm dòng số dư tồn tại rồi khóa nó, để các bút toán đồng thời của cùng độc giả
+     * (kể cả bút toán đầu tiên) được cộng dồn tuần tự thay vì cùng chèn một dòng mới
+     */
+    private ReaderPenaltyBalance lockBalance(Long readerId) {
+        balanceRepository.createIfAbsent(readerId);
+        return balanceRepository.findForUpdate(readerId)
+                .orElseThrow(() -> new RuntimeException("Không tạo được số dư phạt cho độc giả ID: " + readerId));
+    }
+}
@@ -1,5 +1,6 @@
 package com.service;
 
+import com.dto.PenaltySummary;
 import com.model.Penalty;
 import com.repository.PenaltyRepository;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +10,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -17,21 +19,30 @@ import java.util.List;
 public class PenaltyService {
     
     private final PenaltyRepository penaltyRepository;
+    private final ReaderAccountService readerAccountService;
+    private final PenaltyLedgerService penaltyLedgerService;
     
     /**
      * Thanh toán phạt
      */
     public Penalty payPenalty(Long penaltyId, String processedBy) {
-        Penalty penalty = penaltyRepository.findById(penaltyId)
+        Penalty penalty = penaltyRepository.findWithDetailsById(penaltyId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy phạt với ID: " + penaltyId));
         
         if (penalty.getPaymentStatus() == Penalty.PaymentStatus.PAID) {
             throw new RuntimeException("Phạt đã được thanh toán trước đó");
         }
         
+        Long readerId = penalty.getBorrowTicket().getReader().getId();
+        // Phạt đã miễn không còn trong số dư nợ nên không ghi thêm bút toán
+        if (penalty.getPaymentStatus() == Penalty.PaymentStatus.UNPAID) {
+            penaltyLedgerService.recordPayment(readerId, penalty, processedBy);
+        }
+        
         penalty.setPaymentStatus(Penalty.PaymentStatus.PAID);
         penalty.setPaymentDate(LocalDate.now());
         penalty.setProcessedBy(processedBy);
+        readerAccountService.evictAfterCommit(readerId);
         
         log.info("Thanh toán phạt ID: {} - Số tiền: {}", penaltyId, penalty.getAmount());
         return penaltyRepository.save(penalty);
@@ -41,28 +52,44 @@ public class PenaltyService {
      * Miễn phạt
      */
     public Penalty waivePenalty(Long penaltyId, String processedBy, String reason) {
-        Penalty penalty = penaltyRepository.findById(penaltyId)
+        Penalty penalty = penaltyRepository.findWithDetailsById(penaltyId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy phạt với ID: " + penaltyId));
         
         if (penalty.getPaymentStatus() == Penalty.PaymentStatus.PAID) {
             throw new RuntimeException("Không thể miễn phạt đã thanh toán");
         }
         
+        if (penalty.getPaymentStatus() == Penalty.PaymentStatus.WAIVED) {
+            throw new RuntimeException("Phạt đã được miễn trước đó");
+        }
+        
+        Long readerId = penalty.getBorrowTicket().getReader().getId();
+        penaltyLedgerService.recordWaiver(readerId, penalty, processedBy);
+        
         penalty.setPaymentStatus(Penalty.PaymentStatus.WAIVED);
         penalty.setPaymentDate(LocalDate.now());
         penalty.setProcessedBy(processedBy);
+        readerAccountService.evictAfterCommit(readerId);
         penalty.setReason(penalty.getReason() + " - Miễn phạt: " + reason);
         
         log.info("Miễn phạt ID: {} - Người xử lý: {}", penaltyId, processedBy);
         return penaltyRepository.save(penalty);
     }
     
+    /**
+     * Sổ phạt và số dư còn nợ của độc giả
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getReaderLedger(Long readerId, Long beforeId, int size) {
+        return penaltyLedgerService.getReaderLedger(readerId, beforeId, size);
+    }
+    
     /**
      * Lấy tất cả phạt
      */
     @Transactional(readOnly = true)
-    public List<Penalty> getAllPenalties() {
-        return penaltyRepository.findAll();
+    public List<PenaltySummary> getAllPenalties() {
+        return penaltyRepository.findAllSummaries();
     }
     
     /**
@@ -70,7 +97,7 @@ public class PenaltyService {
      */
     @Transactional(readOnly = true)
     public Penalty getPenaltyById(Long id) {
-        return penaltyRepository.findById(id)
+        return penaltyRepository.findWithDetailsById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy phạt với ID: " + id));
     }
     
@@ -78,31 +105,31 @@ public class PenaltyService {
      * Lấy danh sách phạt chưa thanh toán
      */
     @Transactional(readOnly = true)
-    public List<Penalty> getUnpaidPenalties() {
-        return penaltyRepository.findUnpaidPenalties();
+    public List<PenaltySummary> getUnpaidPenalties() {
+        return penaltyRepository.findSummariesByPaymentStatus(Penalty.PaymentStatus.UNPAID);
     }
     
     /**
      * Lấy danh sách phạt theo độc giả
      */
     @Transactional(readOnly = true)
-    public List<Penalty> getPenaltiesByReaderId(Long readerId) {
-        return penaltyRepository.findByReaderId(readerId);
+    public List<PenaltySummary> getPenaltiesByReaderId(Long readerId) {
+        return penaltyRepository.findSummariesByReaderId(readerId);
     }
     
     /**
      * Lấy danh sách phạt theo loại
      */
     @Transactional(readOnly = true)
-    public List<Penalty> getPenaltiesByType(Penalty.PenaltyType penaltyType) {
-        return penaltyRepository.findByPenaltyType(penaltyType);
+    public List<PenaltySummary> getPenaltiesByType(Penalty.PenaltyType penaltyType) {
+        return penaltyRepository.findSummariesByPenaltyType(penaltyType);
     }
     
     /**
      * Lấy danh sách phạt theo trạng thái thanh toán
      */
     @Transactional(readOnly = true)
-    public List<Penalty> getPenaltiesByPaymentStatus(Penalty.PaymentStatus paymentStatus) {
-        return penaltyRepository.findByPaymentStatus(paymentStatus);
+    public List<PenaltySummary> getPenaltiesByPaymentStatus(Penalty.PaymentStatus paymentStatus) {
+        return penaltyRepository.findSummariesByPaymentStatus(paymentStatus);
     }
 }
\ No newline at end of file
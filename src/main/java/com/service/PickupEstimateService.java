@@ -0,0 +1,196 @@
+package com.service;
+
+import com.model.Book;
+import com.model.Reservation;
+import com.repository.BorrowRepository;
+import com.repository.BorrowTicketHistoryRepository;
+import com.repository.ReservationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ước tính ngày sách sẵn sàng cho một đặt trước.
+ * Mỗi đầu sách có một mô hình trong bộ nhớ gồm hạn trả của các lượt mượn chưa trả và tỷ lệ trả đúng hạn,
+ * được nạp khi khởi động và cập nhật sau commit bởi các nghiệp vụ mượn/trả/gia hạn/báo mất.
+ */
+@Service
+@Slf4j
+@Transactional(readOnly = true)
+public class PickupEstimateService {
+    
+    private final BorrowRepository borrowRepository;
+    private final BorrowTicketHistoryRepository historyRepository;
+    private final ReservationRepository reservationRepository;
+    private final BookCacheService bookCacheService;
+    private final int lateReturnDelayDays;
+    
+    private final Map<Long, BookModel> models = new ConcurrentHashMap<>();
+    private final BookModel overall = new BookModel();
+    
+    public PickupEstimateService(BorrowRepository borrowRepository,
+                                 BorrowTicketHistoryRepository historyRepository,
+                                 ReservationRepository reservationRepository,
+                                 BookCacheService bookCacheService,
+                                 @Value("${library.pickup-eta.late-return-delay-days:3}") int lateReturnDelayDays) {
+        this.borrowRepository = borrowRepository;
+        this.historyRepository = historyRepository;
+        this.reservationRepository = reservationRepository;
+        this.bookCacheService = bookCacheService;
+        this.lateReturnDelayDays = lateReturnDelayDays;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        models.clear();
+        for (Object[] row : borrowRepository.findOutstandingLoanDueDates()) {
+            model((Long) row[0]).addLoan((LocalDate) row[1], (Integer) row[2]);
+        }
+        List<Object[]> returnStats = new ArrayList<>(borrowRepository.countReturnsByBook());
+        returnStats.addAll(historyRepository.countReturnsByBook());
+        for (Object[] row : returnStats) {
+            long total = ((Number) row[1]).longValue();
+            long onTime = row[2] != null ? ((Number) row[2]).longValue() : 0;
+            model((Long) row[0]).addReturnStats(total, onTime);
+            overall.addReturnStats(total, onTime);
+        }
+        log.info("Nạp mô hình ước tính ngày lấy sách cho {} đầu sách", models.size());
+    }
+    
+    public void loanCreated(Long bookId, LocalDate dueDate, int quantity) {
+        TransactionHooks.afterCommit(() -> model(bookId).addLoan(dueDate, quantity));
+    }
+    
+    public void loanRenewed(Long bookId, LocalDate oldDueDate, LocalDate newDueDate, int quantity) {
+        TransactionHooks.afterCommit(() -> {
+            BookModel model = model(bookId);
+            model.removeLoan(oldDueDate, quantity);
+            model.addLoan(newDueDate, quantity);
+        });
+    }
+    
+    public void loanReturned(Long bookId, LocalDate dueDate, int quantity, boolean onTime) {
+        TransactionHooks.afterCommit(() -> {
+            model(bookId).removeLoan(dueDate, quantity);
+            model(bookId).addReturnStats(1, onTime ? 1 : 0);
+            overall.addReturnStats(1, onTime ? 1 : 0);
+        });
+    }
+    
+    public void loanLost(Long bookId, LocalDate dueDate, int quantity) {
+        TransactionHooks.afterCommit(() -> model(bookId).removeLoan(dueDate, quantity));
+    }
+    
+    /**
+     * Ước tính ngày sẵn sàng: người thứ k trong hàng đợi (sau khi trừ bản sách còn trên kệ)
+     * nhận bản sách được trả về thứ k theo ngày trả dự kiến.
+     */
+    public Map<String, Object> estimate(Long reservationId) {
+        Reservation reservation = reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy đặt trước với ID: " + reservationId));
+        Long bookId = reservation.getBook().getId();
+        LocalDate today = LocalDate.now();
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("reservationId", reservationId);
+        response.put("bookId", bookId);
+        response.put("status", reservation.getStatus());
+        
+        if (reservation.getStatus() == Reservation.ReservationStatus.AVAILABLE) {
+            response.put("estimatedReadyDate", today);
+            response.put("pickupBefore", reservation.getExpiryDate());
+            return response;
+        }
+        if (reservation.getStatus() != Reservation.ReservationStatus.PENDING) {
+            throw new RuntimeException("Đặt trước không còn ở trạng thái chờ");
+        }
+        
+        long position = reservationRepository.findQueuePosition(bookId, reservation.getReservationDate(), reservationId);
+        int shelfCopies = bookCacheService.getById(bookId)
+                .map(Book::getAvailableQuantity)
+                .orElse(0);
+        
+        BookModel model = model(bookId);
+        double onTimeRate = model.onTimeRate(overall.onTimeRate(1.0));
+        List<LocalDate> expectedReturns = model.expectedReturnDates(today, onTimeRate, lateReturnDelayDays);
+        
+        long needed = position - shelfCopies;
+        LocalDate estimatedReadyDate;
+        if (needed <= 0) {
+            estimatedReadyDate = today;
+        } else if (expectedReturns.isEmpty()) {
+            estimatedReadyDate = null;
+        } else {
+            // Vượt quá số lượt mượn đang có: bản sách phải qua thêm một vòng mượn của người đứng trước
+            int index = (int) ((needed - 1) % expectedReturns.size());
+            long extraRounds = (needed - 1) / expectedReturns.size();
+            estimatedReadyDate = expectedReturns.get(index)
+                    .plusDays(extraRounds * (BorrowService.DEFAULT_BORROW_DAYS + ReservationService.PICKUP_VALIDITY_DAYS));
+        }
+        
+        response.put("position", position);
+        response.put("shelfCopies", shelfCopies);
+        response.put("outstandingLoans", expectedReturns.size());
+        response.put("onTimeReturnRate", onTimeRate);
+        response.put("estimatedReadyDate", estimatedReadyDate);
+        return response;
+    }
+    
+    private BookModel model(Long bookId) {
+        return models.computeIfAbsent(bookId, id -> new BookModel());
+    }
+    
+    /**
+     * Hạn trả của các lượt mượn chưa trả (theo số bản) và thống kê trả đúng hạn của một đầu sách
+     */
+    private static final class BookModel {
+        
+        private final TreeMap<LocalDate, Integer> dueDates = new TreeMap<>();
+        private long returns;
+        private long onTimeReturns;
+        
+        synchronized void addLoan(LocalDate dueDate, int quantity) {
+            dueDates.merge(dueDate, quantity, Integer::sum);
+        }
+        
+        synchronized void removeLoan(LocalDate dueDate, int quantity) {
+            dueDates.computeIfPresent(dueDate, (date, count) -> count > quantity ? count - quantity : null);
+        }
+        
+        synchronized void addReturnStats(long total, long onTime) {
+            returns += total;
+            onTimeReturns += onTime;
+        }
+        
+        synchronized double onTimeRate(double fallback) {
+            return returns == 0 ? fallback : (double) onTimeReturns / returns;
+        }
+        
+        // Ngày trả dự kiến = hạn trả + phần trễ kỳ vọng; lượt đã quá hạn tính từ hôm nay
+        synchronized List<LocalDate> expectedReturnDates(LocalDate today, double onTimeRate, int lateDelayDays) {
+            long expectedDelay = Math.round((1 - onTimeRate) * lateDelayDays);
+            List<LocalDate> result = new ArrayList<>();
+            dueDates.forEach((dueDate, count) -> {
+                LocalDate expected = dueDate.isBefore(today)
+                        ? today.plusDays(Math.max(expectedDelay, 1))
+                        : dueDate.plusDays(expectedDelay);
+                for (int i = 0; i < count; i++) {
+                    result.add(expected);
+                }
+            });
+            result.sort(null);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.service;
+
+import com.dto.BorrowTicketSummary;
+import com.dto.ReaderAccountSummary;
+import com.dto.ReaderCirculationStatus;
+import com.dto.ReservationSummary;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.repository.BorrowRepository;
+import com.repository.ReaderRepository;
+import com.repository.ReservationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tổng quan tài khoản độc giả, dựng từ ba truy vấn projection và cache theo từng độc giả.
+ * Các nghiệp vụ mượn/trả, đặt trước và phạt xóa cache của độc giả liên quan sau khi commit.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ReaderAccountService {
+    
+    private final ReaderRepository readerRepository;
+    private final BorrowRepository borrowRepository;
+    private final ReservationRepository reservationRepository;
+    private final Cache<Long, ReaderAccountSummary> summaries;
+    
+    public ReaderAccountService(ReaderRepository readerRepository,
+                                BorrowRepository borrowRepository,
+                                ReservationRepository reservationRepository,
+                                @Value("${library.cache.reader-account.max-size:2000}") long maxSize,
+                                @Value("${library.cache.reader-account.expire-after-write:5m}") Duration expireAfterWrite) {
+        this.readerRepository = readerRepository;
+        this.borrowRepository = borrowRepository;
+        this.reservationRepository = reservationRepository;
+        this.summaries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * Nạp qua {@code Cache.get} để lần nạp và việc xóa cache của cùng độc giả không xen vào nhau:
+     * lệnh xóa đến trong lúc đang nạp sẽ chờ rồi xóa luôn kết quả cũ.
+     */
+    public ReaderAccountSummary getSummary(Long readerId) {
+        return summaries.get(readerId, this::load);
+    }
+    
+    public void evict(Long readerId) {
+        summaries.invalidate(readerId);
+    }
+    
+    /**
+     * Xóa tổng quan của độc giả sau khi transaction hiện tại commit thành công
+     */
+    public void evictAfterCommit(Long readerId) {
+        TransactionHooks.afterCommit(() -> evict(readerId));
+    }
+    
+    public void evictAllAfterCommit(Collection<Long> readerIds) {
+        List<Long> ids = List.copyOf(readerIds);
+        TransactionHooks.afterCommit(() -> summaries.invalidateAll(ids));
+    }
+    
+    public Map<String, Object> getStats() {
+        CacheStats cacheStats = summaries.stats();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", summaries.estimatedSize());
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        return stats;
+    }
+    
+    private ReaderAccountSummary load(Long readerId) {
+        ReaderCirculationStatus account = readerRepository.findCirculationStatus(readerId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy độc giả với ID: " + readerId));
+        List<BorrowTicketSummary> activeLoans = borrowRepository.findActiveSummariesByReaderId(readerId);
+        List<ReservationSummary> openReservations = reservationRepository.findOpenSummariesByReaderId(readerId);
+        
+        LocalDate today = LocalDate.now();
+        LocalDate nextDueDate = activeLoans.isEmpty() ? null : activeLoans.get(0).dueDate();
+        long overdueLoans = activeLoans.stream()
+                .filter(loan -> loan.dueDate().isBefore(today))
+                .count();
+        
+        return new ReaderAccountSummary(account, activeLoans, nextDueDate, overdueLoans, openReservations);
+    }
+}
@@ -0,0 +1,153 @@
+package com.service;
+
+import com.model.Reader;
+import com.repository.ReaderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Xử lý thẻ độc giả theo lô: chuyển thẻ quá hạn sang EXPIRED và gia hạn hàng loạt.
+ * Mỗi lô là một câu UPDATE trên tối đa {@code library.reader-card.chunk-size} độc giả, commit riêng.
+ */
+@Service
+@Slf4j
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReaderCardService {
+    
+    private final ReaderRepository readerRepository;
+    private final ReaderAccountService readerAccountService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    
+    private static final List<Reader.ReaderStatus> RENEWABLE_STATUSES =
+            List.of(Reader.ReaderStatus.ACTIVE, Reader.ReaderStatus.EXPIRED);
+    
+    public ReaderCardService(ReaderRepository readerRepository,
+                             ReaderAccountService readerAccountService,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${library.reader-card.chunk-size:1000}") int chunkSize) {
+        this.readerRepository = readerRepository;
+        this.readerAccountService = readerAccountService;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Chuyển các thẻ đang ACTIVE đã quá ngày hết hạn sang EXPIRED
+     */
+    @Scheduled(cron = "${library.reader-card.expiry-cron:0 5 0 * * *}")
+    public void expireCards() {
+        LocalDate today = LocalDate.now();
+        runInChunks("Hết hạn thẻ độc giả",
+                afterId -> readerRepository.findIdsByStatusAndExpiredBefore(
+                        Reader.ReaderStatus.ACTIVE, today, afterId, Limit.of(chunkSize)),
+                ids -> readerRepository.expireCards(
+                        ids, Reader.ReaderStatus.ACTIVE, Reader.ReaderStatus.EXPIRED, today));
+    }
+    
+    /**
+     * Gia hạn hàng loạt theo danh sách ID hoặc theo tiền tố mã độc giả (ví dụ cả một khóa sinh viên).
+     * Hạn mới là {@code expiryDate} nếu có, ngược lại là hôm nay cộng {@code months} tháng.
+     */
+    public Map<String, Object> renewCards(List<Long> readerIds, String readerCodePrefix,
+                                          LocalDate expiryDate, Integer months) {
+        boolean byIds = readerIds != null && !readerIds.isEmpty();
+        boolean byPrefix = readerCodePrefix != null && !readerCodePrefix.isBlank();
+        if (byIds == byPrefix) {
+            throw new RuntimeException("Cần chỉ định danh sách độc giả hoặc tiền tố mã độc giả (chỉ một trong hai)");
+        }
+        
+        LocalDate today = LocalDate.now();
+        LocalDate newExpiryDate = expiryDate != null
+                ? expiryDate
+                : today.plusMonths(months != null && months > 0 ? months : ReaderService.DEFAULT_CARD_VALIDITY_MONTHS);
+        if (!newExpiryDate.isAfter(today)) {
+            throw new RuntimeException("Ngày hết hạn mới phải sau ngày hôm nay");
+        }
+        
+        Function<Long, List<Long>> nextChunk;
+        if (byIds) {
+            List<Long> sortedIds = readerIds.stream().distinct().sorted().toList();
+            nextChunk = afterId -> nextChunkOf(sortedIds, afterId);
+        } else {
+            // Escape ký tự đại diện để "DG_" chỉ khớp đúng tiền tố đó chứ không phải mọi mã "DG?"
+            String prefix = escapeLike(readerCodePrefix.trim());
+            nextChunk = afterId -> readerRepository.findIdsByReaderCodePrefix(prefix, afterId, Limit.of(chunkSize));
+        }
+        
+        Map<String, Object> result = runInChunks("Gia hạn thẻ hàng loạt", nextChunk,
+                ids -> readerRepository.renewCards(ids, newExpiryDate, Reader.ReaderStatus.ACTIVE,
+                        RENEWABLE_STATUSES, today));
+        result.put("success", true);
+        result.put("expiryDate", newExpiryDate);
+        return result;
+    }
+    
+    /**
+     * Chạy {@code update} cho từng lô ID theo thứ tự tăng dần, mỗi lô một transaction,
+     * và trả về số dòng đã cập nhật, số lô, thời gian chạy và tốc độ (dòng/giây).
+     */
+    private Map<String, Object> runInChunks(String jobName, Function<Long, List<Long>> nextChunk,
+                                            ToIntFunction<List<Long>> update) {
+        long startedAt = System.nanoTime();
+        long updated = 0;
+        int chunks = 0;
+        Long lastId = 0L;
+        
+        while (true) {
+            Long afterId = lastId;
+            int[] chunkUpdated = new int[1];
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<Long> chunk = nextChunk.apply(afterId);
+                if (!chunk.isEmpty()) {
+                    chunkUpdated[0] = update.applyAsInt(chunk);
+                    readerAccountService.evictAllAfterCommit(chunk);
+                }
+                return chunk;
+            });
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+            updated += chunkUpdated[0];
+            chunks++;
+            lastId = ids.get(ids.size() - 1);
+        }
+        
+        long durationMs = Math.max((System.nanoTime() - startedAt) / 1_000_000, 1);
+        long rowsPerSecond = updated * 1000 / durationMs;
+        log.info("{}: {} độc giả trong {} lô, {} ms ({} dòng/giây)", jobName, updated, chunks, durationMs, rowsPerSecond);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("updatedCount", updated);
+        result.put("chunks", chunks);
+        result.put("durationMs", durationMs);
+        result.put("rowsPerSecond", rowsPerSecond);
+        return result;
+    }
+    
+    private List<Long> nextChunkOf(List<Long> sortedIds, Long afterId) {
+        int position = Collections.binarySearch(sortedIds, afterId);
+        int from = position >= 0 ? position + 1 : -position - 1;
+        return new ArrayList<>(sortedIds.subList(from, Math.min(from + chunkSize, sortedIds.size())));
+    }
+    
+    // Dùng '!' làm ký tự thoát nên dấu '\' trong tiền tố được hiểu đúng nghĩa đen
+    private String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
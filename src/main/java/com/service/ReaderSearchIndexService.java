@@ -0,0 +1,248 @@
+package com.service;
+
+import com.dto.ReaderSummary;
+import com.model.Reader;
+import com.model.ReaderSearchToken;
+import com.repository.ReaderRepository;
+import com.repository.ReaderSearchTokenRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Chỉ mục tìm kiếm độc giả: họ tên bỏ dấu, mã độc giả, tiền tố email và đuôi số điện thoại.
+ * Mọi truy vấn đều là tìm theo tiền tố trên index của bảng reader_search_tokens.
+ * Tìm kiếm đi theo từ khóa chọn lọc nhất và chỉ đọc tối đa {@value #MAX_SCANNED_TOKENS} token mỗi lần gọi,
+ * nên thời gian trả lời không phụ thuộc số độc giả.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class ReaderSearchIndexService {
+    
+    private final ReaderRepository readerRepository;
+    private final ReaderSearchTokenRepository tokenRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    private static final int MIN_KEYWORD_LENGTH = 2;
+    private static final int MAX_KEYWORD_TERMS = 5;
+    private static final int MAX_PAGE_SIZE = 50;
+    private static final int MAX_TOKEN_LENGTH = 100;
+    private static final int SCAN_BATCH_SIZE = 200;
+    private static final int MAX_SCANNED_TOKENS = 2000;
+    private static final int BACKFILL_CHUNK_SIZE = 500;
+    
+    /** Ghi lại toàn bộ token của một độc giả */
+    public void index(Reader reader) {
+        tokenRepository.deleteByReaderId(reader.getId());
+        tokenRepository.saveAll(buildTokens(reader));
+    }
+    
+    /** Ghi token cho các độc giả vừa tạo (chưa có token cũ) */
+    public void indexNew(List<Reader> readers) {
+        List<ReaderSearchToken> tokens = new ArrayList<>();
+        readers.forEach(reader -> tokens.addAll(buildTokens(reader)));
+        tokenRepository.saveAll(tokens);
+    }
+    
+    public void remove(Long readerId) {
+        tokenRepository.deleteByReaderId(readerId);
+    }
+    
+    /**
+     * Tìm độc giả theo từ khóa, phân trang theo keyset trên (token, readerId) của từ khóa dẫn đường:
+     * {@code afterToken}/{@code afterId} lấy từ nextAfterToken/nextAfterId của trang trước (null cho trang đầu).
+     * Từ khóa ngắn hơn {@value #MIN_KEYWORD_LENGTH} ký tự bị bỏ qua vì khớp tiền tố quá rộng.
+     * <p>
+     * Từ khóa dài nhất (chọn lọc nhất) dẫn đường: token của nó được quét theo thứ tự index từng lô,
+     * các từ khóa còn lại chỉ được kiểm tra trên độc giả ứng viên của lô đó. Khi đã đọc
+     * {@value #MAX_SCANNED_TOKENS} token mà chưa đủ trang, trả về phần đã có cùng con trỏ để đọc tiếp.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> search(String keyword, String afterToken, Long afterId, int size) {
+        List<String> terms = parseKeyword(keyword);
+        if (terms.isEmpty()) {
+            throw new RuntimeException("Từ khóa tìm kiếm phải có ít nhất " + MIN_KEYWORD_LENGTH + " ký tự");
+        }
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        
+        int driver = 0;
+        for (int i = 1; i < terms.size(); i++) {
+            if (terms.get(i).length() > terms.get(driver).length()) {
+                driver = i;
+            }
+        }
+        List<String> otherPrefixes = new ArrayList<>();
+        List<String> otherPhoneSuffixes = new ArrayList<>();
+        for (int i = 0; i < terms.size(); i++) {
+            if (i != driver) {
+                otherPrefixes.add(escapeLike(terms.get(i)));
+                otherPhoneSuffixes.add(phoneSuffix(terms.get(i)));
+            }
+        }
+        String driverPrefix = escapeLike(terms.get(driver));
+        String driverPhoneSuffix = phoneSuffix(terms.get(driver));
+        
+        String lastToken = afterToken != null ? afterToken : "";
+        Long lastReaderId = afterId != null ? afterId : 0L;
+        List<Long> matchedIds = new ArrayList<>();
+        boolean hasNext = true;
+        int scanned = 0;
+        
+        scan:
+        while (scanned < MAX_SCANNED_TOKENS) {
+            List<Object[]> rows = readerRepository.findTokenMatches(
+                    driverPrefix, driverPhoneSuffix, lastToken, lastReaderId, SCAN_BATCH_SIZE);
+            scanned += rows.size();
+            
+            Set<Long> candidates = new HashSet<>();
+            rows.forEach(row -> candidates.add((Long) row[1]));
+            Map<Long, String> firstTokens = candidates.isEmpty() ? Map.of()
+                    : readerRepository.verifyCandidates(candidates, driverPrefix, driverPhoneSuffix,
+                            otherPrefixes, otherPhoneSuffixes);
+            
+            for (Object[] row : rows) {
+                String token = (String) row[0];
+                Long readerId = (Long) row[1];
+                // Độc giả có nhiều token khớp chỉ được tính ở token nhỏ nhất, nên không lặp lại giữa các trang
+                if (token.equals(firstTokens.get(readerId))) {
+                    if (matchedIds.size() == pageSize) {
+                        break scan;
+                    }
+                    matchedIds.add(readerId);
+                }
+                lastToken = token;
+                lastReaderId = readerId;
+            }
+            if (rows.size() < SCAN_BATCH_SIZE) {
+                hasNext = false;
+                break;
+            }
+        }
+        
+        Map<Long, ReaderSummary> summaries = new HashMap<>();
+        if (!matchedIds.isEmpty()) {
+            readerRepository.findSummariesByIdIn(matchedIds).forEach(summary -> summaries.put(summary.id(), summary));
+        }
+        List<ReaderSummary> content = matchedIds.stream().map(summaries::get).filter(Objects::nonNull).toList();
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("content", content);
+        response.put("size", pageSize);
+        response.put("hasNext", hasNext);
+        response.put("nextAfterToken", hasNext ? lastToken : null);
+        response.put("nextAfterId", hasNext ? lastReaderId : null);
+        return response;
+    }
+    
+    /**
+     * Khi khởi động: tạo token cho các độc giả chưa được đưa vào chỉ mục, mỗi lô một transaction ngắn
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void backfill() {
+        long indexed = 0;
+        Long lastId = 0L;
+        
+        while (true) {
+            Long afterId = lastId;
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<Reader> readers = tokenRepository.findReadersWithoutTokens(afterId, Limit.of(BACKFILL_CHUNK_SIZE));
+                indexNew(readers);
+                return readers.stream().map(Reader::getId).toList();
+            });
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+            indexed += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+        
+        if (indexed > 0) {
+            log.info("Tạo chỉ mục tìm kiếm cho {} độc giả", indexed);
+        }
+    }
+    
+    /**
+     * Bỏ dấu tiếng Việt và chuyển về chữ thường: "Nguyễn Văn Đức" -> "nguyen van duc"
+     */
+    private static String normalize(String value) {
+        String stripped = Normalizer.normalize(value, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.replace('đ', 'd').replace('Đ', 'D').toLowerCase(Locale.ROOT).trim();
+    }
+    
+    private List<ReaderSearchToken> buildTokens(Reader reader) {
+        Map<String, ReaderSearchToken.TokenType> tokens = new HashMap<>();
+        for (String word : normalize(reader.getFullName()).split("\\s+")) {
+            if (!word.isEmpty()) {
+                tokens.putIfAbsent(word, ReaderSearchToken.TokenType.NAME);
+            }
+        }
+        tokens.putIfAbsent(normalize(reader.getReaderCode()), ReaderSearchToken.TokenType.CODE);
+        if (reader.getEmail() != null) {
+            tokens.putIfAbsent(normalize(reader.getEmail()), ReaderSearchToken.TokenType.EMAIL);
+        }
+        
+        List<ReaderSearchToken> result = new ArrayList<>();
+        tokens.forEach((token, type) -> result.add(newToken(reader, token, type)));
+        if (reader.getPhoneNumber() != null) {
+            String digits = reader.getPhoneNumber().replaceAll("\\D", "");
+            if (!digits.isEmpty()) {
+                result.add(newToken(reader, new StringBuilder(digits).reverse().toString(),
+                        ReaderSearchToken.TokenType.PHONE));
+            }
+        }
+        return result;
+    }
+    
+    private ReaderSearchToken newToken(Reader reader, String token, ReaderSearchToken.TokenType type) {
+        return ReaderSearchToken.builder()
+                .reader(reader)
+                .token(token.length() > MAX_TOKEN_LENGTH ? token.substring(0, MAX_TOKEN_LENGTH) : token)
+                .type(type)
+                .build();
+    }
+    
+    /**
+     * Tách từ khóa: bỏ từ ngắn hơn {@value #MIN_KEYWORD_LENGTH} ký tự, bỏ trùng, giữ tối đa {@value #MAX_KEYWORD_TERMS} từ
+     */
+    private List<String> parseKeyword(String keyword) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (keyword == null) {
+            return List.of();
+        }
+        for (String word : normalize(keyword).split("\\s+")) {
+            if (word.length() >= MIN_KEYWORD_LENGTH && terms.size() < MAX_KEYWORD_TERMS) {
+                terms.add(word.length() > MAX_TOKEN_LENGTH ? word.substring(0, MAX_TOKEN_LENGTH) : word);
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+    
+    // Số điện thoại lưu đảo ngược nên từ khóa toàn chữ số cũng được so với token điện thoại đảo ngược
+    private String phoneSuffix(String term) {
+        return term.chars().allMatch(Character::isDigit) ? escapeLike(new StringBuilder(term).reverse().toString()) : null;
+    }
+    
+    private String escapeLike(String term) {
+        return term.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
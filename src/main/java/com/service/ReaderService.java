@@ -1,14 +1,31 @@
 package com.service;
 
+import com.dto.ReaderAccountSummary;
+import com.dto.ReaderSummary;
+import com.dto.ReaderUniqueKeys;
 import com.model.Reader;
 import com.repository.ReaderRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -17,35 +34,110 @@ import java.util.List;
 public class ReaderService {
     
     private final ReaderRepository readerRepository;
+    private final BarcodeIndexService barcodeIndexService;
+    private final ReaderSearchIndexService readerSearchIndexService;
+    private final ReaderAccountService readerAccountService;
+    private final ReaderCardService readerCardService;
+    private final PenaltyLedgerService penaltyLedgerService;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
     
-    private static final int DEFAULT_CARD_VALIDITY_MONTHS = 12;
+    static final int DEFAULT_CARD_VALIDITY_MONTHS = 12;
+    private static final int BULK_CHUNK_SIZE = 1000;
     
     public Reader createReader(Reader reader) {
-        // Kiểm tra mã độc giả đã tồn tại
-        if (readerRepository.existsByReaderCode(reader.getReaderCode())) {
-            throw new RuntimeException("Mã độc giả đã tồn tại: " + reader.getReaderCode());
-        }
+        normalizeContact(reader);
+        applyCardDefaults(reader);
         
-        // Kiểm tra email đã tồn tại
-        if (reader.getEmail() != null && readerRepository.existsByEmail(reader.getEmail())) {
-            throw new RuntimeException("Email đã được sử dụng: " + reader.getEmail());
+        // Trùng mã/email/số điện thoại do unique index phát hiện ngay khi insert
+        log.info("Tạo độc giả mới: {}", reader.getFullName());
+        Reader savedReader;
+        try {
+            savedReader = readerRepository.saveAndFlush(reader);
+        } catch (DataIntegrityViolationException e) {
+            throw translateUniqueViolation(e, reader);
         }
+        readerSearchIndexService.indexNew(List.of(savedReader));
+        barcodeIndexService.registerReader(savedReader.getReaderCode(), savedReader.getId());
+        return savedReader;
+    }
+    
+    /**
+     * Đăng ký hàng loạt: kiểm tra trùng bằng các tập trong bộ nhớ,
+     * mỗi lô chỉ một truy vấn lấy các khóa đã tồn tại trong DB.
+     * Độc giả không hợp lệ được bỏ qua và trả về trong danh sách lỗi.
+     * Mỗi lô được lưu trong transaction riêng để một dòng trùng không làm mất cả yêu cầu.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Map<String, Object> createReaders(List<Reader> readers) {
+        Set<String> readerCodes = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        Set<String> phoneNumbers = new HashSet<>();
         
-        // Kiểm tra số điện thoại đã tồn tại
-        if (reader.getPhoneNumber() != null && readerRepository.existsByPhoneNumber(reader.getPhoneNumber())) {
-            throw new RuntimeException("Số điện thoại đã được sử dụng: " + reader.getPhoneNumber());
+        for (int from = 0; from < readers.size(); from += BULK_CHUNK_SIZE) {
+            List<Reader> chunk = readers.subList(from, Math.min(from + BULK_CHUNK_SIZE, readers.size()));
+            chunk.forEach(this::normalizeContact);
+            List<ReaderUniqueKeys> existing = readerRepository.findUniqueKeyConflicts(
+                    collectKeys(chunk, Reader::getReaderCode),
+                    collectKeys(chunk, Reader::getEmail),
+                    collectKeys(chunk, Reader::getPhoneNumber));
+            for (ReaderUniqueKeys keys : existing) {
+                addKey(readerCodes, keys.readerCode());
+                addKey(emails, keys.email());
+                addKey(phoneNumbers, keys.phoneNumber());
+            }
         }
         
-        // Thiết lập ngày phát hành và hết hạn nếu chưa có
-        if (reader.getIssueDate() == null) {
-            reader.setIssueDate(LocalDate.now());
+        List<Reader> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        List<Map<String, Object>> errors = new ArrayList<>();
+        for (int i = 0; i < readers.size(); i++) {
+            Reader reader = readers.get(i);
+            String error = validateForBulk(reader, readerCodes, emails, phoneNumbers);
+            if (error != null) {
+                errors.add(bulkError(i, reader, error));
+                continue;
+            }
+            addKey(readerCodes, reader.getReaderCode());
+            addKey(emails, reader.getEmail());
+            addKey(phoneNumbers, reader.getPhoneNumber());
+            applyCardDefaults(reader);
+            accepted.add(reader);
+            acceptedIndexes.add(i);
         }
-        if (reader.getExpiryDate() == null) {
-            reader.setExpiryDate(LocalDate.now().plusMonths(DEFAULT_CARD_VALIDITY_MONTHS));
+        
+        List<Reader> savedReaders = new ArrayList<>();
+        for (int from = 0; from < accepted.size(); from += BULK_CHUNK_SIZE) {
+            int to = Math.min(from + BULK_CHUNK_SIZE, accepted.size());
+            List<Reader> chunk = accepted.subList(from, to);
+            try {
+                savedReaders.addAll(transactionTemplate.execute(tx -> saveAndIndex(chunk)));
+            } catch (DataIntegrityViolationException e) {
+                // Một độc giả trùng vừa được tạo bởi yêu cầu khác trong lúc xử lý lô: lưu lại từng dòng
+                log.warn("Lô đăng ký độc giả bị trùng, lưu lại từng dòng: {}", e.getMostSpecificCause().getMessage());
+                for (int i = from; i < to; i++) {
+                    Reader reader = accepted.get(i);
+                    // Lô vừa rollback có thể đã gán ID cho đối tượng
+                    reader.setId(null);
+                    try {
+                        savedReaders.addAll(transactionTemplate.execute(tx -> saveAndIndex(List.of(reader))));
+                    } catch (DataIntegrityViolationException rowError) {
+                        errors.add(bulkError(acceptedIndexes.get(i), reader,
+                                translateUniqueViolation(rowError, reader).getMessage()));
+                    }
+                }
+            }
         }
+        savedReaders.forEach(saved -> barcodeIndexService.registerReader(saved.getReaderCode(), saved.getId()));
         
-        log.info("Tạo độc giả mới: {}", reader.getFullName());
-        return readerRepository.save(reader);
+        log.info("Đăng ký hàng loạt: {} độc giả thành công, {} bị từ chối", savedReaders.size(), errors.size());
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("createdCount", savedReaders.size());
+        response.put("failedCount", errors.size());
+        response.put("errors", errors);
+        return response;
     }
     
     public Reader updateReader(Long id, Reader readerDetails) {
@@ -59,9 +151,21 @@ public class ReaderService {
         reader.setEmail(readerDetails.getEmail());
         reader.setPhoneNumber(readerDetails.getPhoneNumber());
         reader.setIdentityCard(readerDetails.getIdentityCard());
+        if (readerDetails.getReaderType() != null) {
+            reader.setReaderType(readerDetails.getReaderType());
+        }
+        normalizeContact(reader);
         
         log.info("Cập nhật độc giả: {}", reader.getFullName());
-        return readerRepository.save(reader);
+        Reader savedReader;
+        try {
+            savedReader = readerRepository.saveAndFlush(reader);
+        } catch (DataIntegrityViolationException e) {
+            throw translateUniqueViolation(e, reader);
+        }
+        readerSearchIndexService.index(savedReader);
+        readerAccountService.evictAfterCommit(id);
+        return savedReader;
     }
     
     public void deleteReader(Long id) {
@@ -69,12 +173,16 @@ public class ReaderService {
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy độc giả với ID: " + id));
         
         log.info("Xóa độc giả: {}", reader.getFullName());
+        barcodeIndexService.removeReader(reader.getReaderCode());
+        readerSearchIndexService.remove(id);
+        readerAccountService.evictAfterCommit(id);
+        penaltyLedgerService.deleteReaderLedger(id);
         readerRepository.delete(reader);
     }
     
     @Transactional(readOnly = true)
-    public List<Reader> getAllReaders() {
-        return readerRepository.findAll();
+    public List<ReaderSummary> getAllReaders() {
+        return readerRepository.findAllSummaries();
     }
     
     @Transactional(readOnly = true)
@@ -84,8 +192,18 @@ public class ReaderService {
     }
     
     @Transactional(readOnly = true)
-    public List<Reader> searchReaders(String keyword) {
-        return readerRepository.searchReaders(keyword);
+    public ReaderAccountSummary getReaderAccount(Long id) {
+        return readerAccountService.getSummary(id);
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<String, Object> searchReaders(String keyword, String afterToken, Long afterId, int size) {
+        return readerSearchIndexService.search(keyword, afterToken, afterId, size);
+    }
+    
+    public Map<String, Object> renewReaderCards(List<Long> readerIds, String readerCodePrefix,
+                                                LocalDate expiryDate, Integer months) {
+        return readerCardService.renewCards(readerIds, readerCodePrefix, expiryDate, months);
     }
     
     public Reader renewReaderCard(Long id, Integer months) {
@@ -98,8 +216,101 @@ public class ReaderService {
         
         reader.setExpiryDate(reader.getExpiryDate().plusMonths(months));
         reader.setStatus(Reader.ReaderStatus.ACTIVE);
+        readerAccountService.evictAfterCommit(id);
         
         log.info("Gia hạn thẻ độc giả: {} thêm {} tháng", reader.getFullName(), months);
         return readerRepository.save(reader);
     }
+    
+    private List<Reader> saveAndIndex(List<Reader> readers) {
+        List<Reader> saved = readerRepository.saveAll(readers);
+        readerRepository.flush();
+        readerSearchIndexService.indexNew(saved);
+        return saved;
+    }
+    
+    private Map<String, Object> bulkError(int index, Reader reader, String message) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("index", index);
+        item.put("readerCode", reader.getReaderCode());
+        item.put("message", message);
+        return item;
+    }
+    
+    private String validateForBulk(Reader reader, Set<String> readerCodes, Set<String> emails, Set<String> phoneNumbers) {
+        Set<ConstraintViolation<Reader>> violations = validator.validate(reader);
+        if (!violations.isEmpty()) {
+            return violations.iterator().next().getMessage();
+        }
+        if (readerCodes.contains(toKey(reader.getReaderCode()))) {
+            return "Mã độc giả đã tồn tại: " + reader.getReaderCode();
+        }
+        if (reader.getEmail() != null && emails.contains(toKey(reader.getEmail()))) {
+            return "Email đã được sử dụng: " + reader.getEmail();
+        }
+        if (reader.getPhoneNumber() != null && phoneNumbers.contains(toKey(reader.getPhoneNumber()))) {
+            return "Số điện thoại đã được sử dụng: " + reader.getPhoneNumber();
+        }
+        return null;
+    }
+    
+    /**
+     * Chuyển lỗi vi phạm unique index thành thông báo cho người dùng dựa vào tên ràng buộc
+     */
+    private RuntimeException translateUniqueViolation(DataIntegrityViolationException e, Reader reader) {
+        String constraintName = e.getCause() instanceof ConstraintViolationException violation
+                ? violation.getConstraintName() : null;
+        String name = constraintName != null ? constraintName.toLowerCase(Locale.ROOT) : "";
+        if (name.contains("email")) {
+            return new RuntimeException("Email đã được sử dụng" + (reader != null ? ": " + reader.getEmail() : ""));
+        }
+        if (name.contains("phone")) {
+            return new RuntimeException("Số điện thoại đã được sử dụng" + (reader != null ? ": " + reader.getPhoneNumber() : ""));
+        }
+        // Tên khóa MySQL tự đặt cho cột cũ là "reader_code", bảng mới dùng uk_readers_reader_code
+        if (name.contains("reader_code")) {
+            return new RuntimeException("Mã độc giả đã tồn tại" + (reader != null ? ": " + reader.getReaderCode() : ""));
+        }
+        // Ràng buộc khác (khóa ngoại, cột bắt buộc...) không được báo nhầm thành trùng mã
+        log.error("Lỗi ràng buộc dữ liệu độc giả: {}", e.getMostSpecificCause().getMessage());
+        return new RuntimeException("Dữ liệu độc giả không hợp lệ hoặc đã tồn tại");
+    }
+    
+    // Chuỗi rỗng được lưu là NULL để unique index không coi chúng là trùng nhau
+    private void normalizeContact(Reader reader) {
+        if (reader.getEmail() != null && reader.getEmail().isBlank()) {
+            reader.setEmail(null);
+        }
+        if (reader.getPhoneNumber() != null && reader.getPhoneNumber().isBlank()) {
+            reader.setPhoneNumber(null);
+        }
+    }
+    
+    private void applyCardDefaults(Reader reader) {
+        if (reader.getIssueDate() == null) {
+            reader.setIssueDate(LocalDate.now());
+        }
+        if (reader.getExpiryDate() == null) {
+            reader.setExpiryDate(LocalDate.now().plusMonths(DEFAULT_CARD_VALIDITY_MONTHS));
+        }
+    }
+    
+    private List<String> collectKeys(List<Reader> readers, Function<Reader, String> getter) {
+        return readers.stream()
+                .map(getter)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
+    
+    // Collation của bảng không phân biệt hoa thường nên khóa trong bộ nhớ cũng vậy
+    private void addKey(Set<String> keys, String value) {
+        if (value != null) {
+            keys.add(toKey(value));
+        }
+    }
+    
+    private String toKey(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.service;
+
+import com.model.RefreshToken;
+import com.model.UserAccount;
+import com.repository.RefreshTokenRepository;
+import com.security.JwtTokenProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lưu trữ refresh token theo hash trong bảng riêng: mỗi thiết bị một chuỗi token, xoay vòng khi refresh
+ * và phát hiện dùng lại token cũ. Tra cứu theo khóa chính, không ghi vào bảng user_accounts.
+ */
+@Service
+@Slf4j
+public class RefreshTokenService {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final TransactionTemplate transactionTemplate;
+    private final int purgeChunkSize;
+
+    private final AtomicLong reuseDetected = new AtomicLong();
+    private final AtomicLong totalPurged = new AtomicLong();
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               JwtTokenProvider jwtTokenProvider,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${library.refresh-token.purge-chunk-size:1000}") int purgeChunkSize) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.transactionTemplate = transactionTemplate;
+        this.purgeChunkSize = purgeChunkSize;
+    }
+
+    /**
+     * Cấp refresh token cho một phiên đăng nhập mới (chuỗi token mới)
+     */
+    @Transactional
+    public String issue(UserAccount user) {
+        String token = jwtTokenProvider.generateRefreshToken(user);
+        saveToken(token, user.getId(), UUID.randomUUID().toString(), LocalDateTime.now());
+        return token;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<RefreshToken> find(String rawToken) {
+        return refreshTokenRepository.findById(JwtTokenProvider.hashToken(rawToken));
+    }
+
+    /**
+     * Thu hồi token hiện tại và cấp token kế tiếp trong cùng chuỗi.
+     * Trả về rỗng nếu token đã bị dùng bởi một lần refresh khác; khi đó cả chuỗi bị thu hồi.
+     */
+    @Transactional
+    public Optional<String> rotate(RefreshToken current, UserAccount user) {
+        LocalDateTime now = LocalDateTime.now();
+        String next = jwtTokenProvider.generateRefreshToken(user);
+        int updated = refreshTokenRepository.markRotated(
+                current.getTokenHash(), JwtTokenProvider.hashToken(next), now);
+        if (updated == 0) {
+            revokeFamily(current);
+            return Optional.empty();
+        }
+        saveToken(next, user.getId(), current.getFamilyId(), now);
+        return Optional.of(next);
+    }
+
+    /**
+     * Token đã thu hồi bị dùng lại: coi như bị lộ, thu hồi toàn bộ chuỗi token của thiết bị đó
+     */
+    @Transactional
+    public void revokeFamily(RefreshToken reused) {
+        int revoked = refreshTokenRepository.revokeFamily(reused.getFamilyId(), LocalDateTime.now());
+        reuseDetected.incrementAndGet();
+        log.warn("Phát hiện dùng lại refresh token của người dùng {}, thu hồi {} token trong chuỗi {}",
+                reused.getUserId(), revoked, reused.getFamilyId());
+    }
+
+    /**
+     * Đăng xuất một thiết bị: thu hồi chuỗi chứa token này.
+     * Token phải thuộc về người đang đăng xuất, không cho thu hồi phiên của người khác.
+     */
+    @Transactional
+    public void revoke(String rawToken, Long userId) {
+        find(rawToken).ifPresent(token -> {
+            if (!token.getUserId().equals(userId)) {
+                throw new RuntimeException("Refresh token không thuộc về người dùng hiện tại");
+            }
+            refreshTokenRepository.revokeFamily(token.getFamilyId(), LocalDateTime.now());
+        });
+    }
+
+    @Transactional
+    public int revokeAllForUser(Long userId) {
+        return refreshTokenRepository.revokeAllByUserId(userId, LocalDateTime.now());
+    }
+
+    @Transactional
+    public void deleteAllForUser(Long userId) {
+        refreshTokenRepository.deleteByUserId(userId);
+    }
+
+    @Scheduled(cron = "${library.refresh-token.purge-cron:0 30 3 * * *}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void scheduledPurge() {
+        purgeExpired();
+    }
+
+    /**
+     * Xóa token đã hết hạn theo lô, mỗi lô một transaction. Token đã thu hồi nhưng chưa hết hạn
+     * được giữ lại để còn phát hiện dùng lại.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        long purged = 0;
+        while (true) {
+            Integer deleted = transactionTemplate.execute(tx -> {
+                List<String> hashes = refreshTokenRepository.findExpiredHashes(now, Limit.of(purgeChunkSize));
+                return hashes.isEmpty() ? 0 : refreshTokenRepository.deleteByTokenHashIn(hashes);
+            });
+            if (deleted == null || deleted == 0) {
+                break;
+            }
+            purged += deleted;
+        }
+        totalPurged.addAndGet(purged);
+        if (purged > 0) {
+            log.info("Đã xóa {} refresh token hết hạn", purged);
+        }
+        return purged;
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("activeTokens", refreshTokenRepository.countByRevokedAtIsNullAndExpiresAtAfter(LocalDateTime.now()));
+        metrics.put("totalTokens", refreshTokenRepository.count());
+        metrics.put("reuseDetected", reuseDetected.get());
+        metrics.put("totalPurged", totalPurged.get());
+        return metrics;
+    }
+
+    private void saveToken(String token, Long userId, String familyId, LocalDateTime now) {
+        LocalDateTime expiresAt = LocalDateTime.ofInstant(
+                jwtTokenProvider.getExpirationDateFromToken(token).toInstant(), ZoneId.systemDefault());
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(JwtTokenProvider.hashToken(token))
+                .userId(userId)
+                .familyId(familyId)
+                .issuedAt(now)
+                .expiresAt(expiresAt)
+                .build());
+    }
+}
@@ -0,0 +1,147 @@
+package com.service;
+
+import com.model.Reservation;
+import com.repository.ReservationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Xử lý đặt trước hết hạn theo lô: mỗi lô một câu UPDATE và một transaction.
+ * Khi một đặt trước đã sẵn sàng bị hết hạn lấy sách, người kế tiếp trong hàng đợi của sách được đẩy lên.
+ */
+@Service
+@Slf4j
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReservationExpiryService {
+    
+    private final ReservationRepository reservationRepository;
+    private final ReservationService reservationService;
+    private final InventoryService inventoryService;
+    private final ReaderAccountService readerAccountService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalExpired = new AtomicLong();
+    private final AtomicLong totalPromoted = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Map.of();
+    
+    public ReservationExpiryService(ReservationRepository reservationRepository,
+                                    ReservationService reservationService,
+                                    InventoryService inventoryService,
+                                    ReaderAccountService readerAccountService,
+                                    TransactionTemplate transactionTemplate,
+                                    @Value("${library.reservation.expiry-chunk-size:1000}") int chunkSize) {
+        this.reservationRepository = reservationRepository;
+        this.reservationService = reservationService;
+        this.inventoryService = inventoryService;
+        this.readerAccountService = readerAccountService;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+    }
+    
+    @Scheduled(cron = "${library.reservation.expiry-cron:0 */10 * * * *}")
+    public void scheduledRun() {
+        processExpiredReservations();
+    }
+    
+    /**
+     * Chuyển các đặt trước PENDING/AVAILABLE đã quá hạn sang EXPIRED và trả về số liệu của lần chạy
+     */
+    public synchronized Map<String, Object> processExpiredReservations() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        LocalDate today = startedAt.toLocalDate();
+        
+        long[] expiredPending = expireInChunks(Reservation.ReservationStatus.PENDING, today, false);
+        long[] expiredAvailable = expireInChunks(Reservation.ReservationStatus.AVAILABLE, today, true);
+        
+        long durationMs = (System.nanoTime() - startNanos) / 1_000_000;
+        long expired = expiredPending[0] + expiredAvailable[0];
+        runs.incrementAndGet();
+        totalExpired.addAndGet(expired);
+        totalPromoted.addAndGet(expiredAvailable[1]);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("startedAt", startedAt);
+        result.put("durationMs", durationMs);
+        result.put("expiredPending", expiredPending[0]);
+        result.put("expiredAvailable", expiredAvailable[0]);
+        result.put("promotedHolds", expiredAvailable[1]);
+        lastRun = result;
+        
+        if (expired > 0) {
+            log.info("Hết hạn đặt trước: {} đang chờ, {} sẵn sàng, đẩy lên {} người kế tiếp trong {} ms",
+                    expiredPending[0], expiredAvailable[0], expiredAvailable[1], durationMs);
+        }
+        return result;
+    }
+    
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("runs", runs.get());
+        metrics.put("totalExpired", totalExpired.get());
+        metrics.put("totalPromotedHolds", totalPromoted.get());
+        metrics.put("lastRun", lastRun);
+        return metrics;
+    }
+    
+    /**
+     * Trả về [số đặt trước đã hết hạn, số đặt trước kế tiếp được đẩy lên]
+     */
+    private long[] expireInChunks(Reservation.ReservationStatus status, LocalDate today, boolean promoteNext) {
+        long[] totals = new long[2];
+        Object[] lastRow = null;
+        
+        while (true) {
+            Object[] cursor = lastRow;
+            List<Object[]> rows = transactionTemplate.execute(tx -> {
+                List<Object[]> chunk = cursor == null
+                        ? reservationRepository.findExpiredIdsAndBookIds(status, today, Limit.of(chunkSize))
+                        : reservationRepository.findExpiredIdsAndBookIdsAfter(
+                                status, today, (LocalDate) cursor[2], (Long) cursor[0], Limit.of(chunkSize));
+                if (chunk.isEmpty()) {
+                    return chunk;
+                }
+                
+                List<Long> ids = new ArrayList<>(chunk.size());
+                Map<Long, Integer> freedByBook = new HashMap<>();
+                for (Object[] row : chunk) {
+                    ids.add((Long) row[0]);
+                    freedByBook.merge((Long) row[1], 1, Integer::sum);
+                }
+                
+                readerAccountService.evictAllAfterCommit(reservationRepository.findReaderIdsByIdIn(ids));
+                totals[0] += reservationRepository.updateStatusByIds(
+                        ids, status, Reservation.ReservationStatus.EXPIRED, LocalDateTime.now());
+                if (promoteNext) {
+                    inventoryService.releaseHeldCopies(ids);
+                    // Bản sách đang giữ cho các đặt trước vừa hết hạn trở về kệ rồi được giữ cho người kế tiếp.
+                    // Mỗi sách một lần gọi cho cả lô, số người được đẩy lên bằng số chỗ vừa trống
+                    freedByBook.forEach((bookId, freed) ->
+                            totals[1] += reservationService.promoteNextHolds(bookId, freed));
+                }
+                return chunk;
+            });
+            if (rows == null || rows.isEmpty()) {
+                break;
+            }
+            lastRow = rows.get(rows.size() - 1);
+        }
+        return totals;
+    }
+}
@@ -1,6 +1,8 @@
 package com.service;
 
+import com.dto.ReservationSummary;
 import com.model.Book;
+import com.model.BorrowTicket;
 import com.model.Reader;
 import com.model.Reservation;
 import com.repository.BookRepository;
@@ -8,12 +10,16 @@ import com.repository.ReaderRepository;
 import com.repository.ReservationRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -24,10 +30,15 @@ public class ReservationService {
     private final ReservationRepository reservationRepository;
     private final BookRepository bookRepository;
     private final ReaderRepository readerRepository;
+    private final ReaderAccountService readerAccountService;
+    private final PickupEstimateService pickupEstimateService;
+    private final InventoryService inventoryService;
     
     private static final int MAX_RESERVATIONS_PER_READER = 3;
     private static final int RESERVATION_VALIDITY_DAYS = 7;
-    private static final int PICKUP_VALIDITY_DAYS = 3;
+    static final int PICKUP_VALIDITY_DAYS = 3;
+    private static final List<Reservation.ReservationStatus> ACTIVE_STATUSES =
+            List.of(Reservation.ReservationStatus.PENDING, Reservation.ReservationStatus.AVAILABLE);
     
     /**
      * Tạo đặt trước sách
@@ -48,14 +59,8 @@ public class ReservationService {
         Book book = bookRepository.findById(bookId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy sách với ID: " + bookId));
         
-        // Kiểm tra xem độc giả đã đặt trước sách này chưa
-        List<Reservation> existingReservations = reservationRepository.findByReaderIdAndStatus(
-                readerId, Reservation.ReservationStatus.PENDING);
-        
-        boolean alreadyReserved = existingReservations.stream()
-                .anyMatch(r -> r.getBook().getId().equals(bookId));
-        
-        if (alreadyReserved) {
+        // Kiểm tra xem độc giả đã đặt trước sách này chưa (đang chờ hoặc đã sẵn sàng)
+        if (reservationRepository.existsByReaderIdAndBookIdAndStatusIn(readerId, bookId, ACTIVE_STATUSES)) {
             throw new RuntimeException("Độc giả đã đặt trước sách này rồi");
         }
         
@@ -72,35 +77,123 @@ public class ReservationService {
                 .notes(notes)
                 .build();
         
+        readerAccountService.evictAfterCommit(readerId);
         log.info("Tạo đặt trước: {} cho độc giả: {} - Sách: {}", 
                 reservationCode, reader.getFullName(), book.getTitle());
-        return reservationRepository.save(reservation);
+        
+        // Hai yêu cầu đồng thời vượt qua bước kiểm tra trên sẽ bị unique index chặn lại
+        try {
+            return reservationRepository.saveAndFlush(reservation);
+        } catch (DataIntegrityViolationException e) {
+            throw new RuntimeException("Độc giả đã đặt trước sách này rồi");
+        }
     }
     
     /**
      * Đánh dấu sách đã có sẵn để lấy
      */
     public Reservation markAsAvailable(Long reservationId) {
-        Reservation reservation = reservationRepository.findById(reservationId)
+        Reservation reservation = reservationRepository.findWithDetailsById(reservationId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đặt trước với ID: " + reservationId));
         
         if (reservation.getStatus() != Reservation.ReservationStatus.PENDING) {
             throw new RuntimeException("Chỉ có thể đánh dấu sẵn sàng cho đặt trước đang chờ");
         }
         
+        if (inventoryService.holdCopies(reservation.getBook().getId(), List.of(reservationId)) == 0) {
+            throw new RuntimeException("Không còn bản sách trên kệ để giữ cho đặt trước này");
+        }
+        
         reservation.setStatus(Reservation.ReservationStatus.AVAILABLE);
         reservation.setNotifiedAt(LocalDateTime.now());
         reservation.setExpiryDate(LocalDate.now().plusDays(PICKUP_VALIDITY_DAYS));
+        readerAccountService.evictAfterCommit(reservation.getReader().getId());
         
         log.info("Đánh dấu sách sẵn sàng cho đặt trước: {}", reservation.getReservationCode());
         return reservationRepository.save(reservation);
     }
     
+    /**
+     * Chuyển tối đa {@code count} đặt trước đứng đầu hàng đợi của sách sang sẵn sàng để lấy.
+     * Gọi trong transaction trả sách để bản sách vừa trả được giao ngay cho người chờ lâu nhất.
+     * Mỗi đặt trước được đẩy lên giữ một bản sách (ON_HOLD) nên người mượn vãng lai không lấy được bản đó.
+     */
+    public int promoteNextHolds(Long bookId, int count) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> reservationIds = reservationRepository.lockQueueHeadIds(bookId, now.toLocalDate(), count);
+        if (reservationIds.isEmpty()) {
+            return 0;
+        }
+        
+        int held = inventoryService.holdCopies(bookId, reservationIds);
+        if (held == 0) {
+            return 0;
+        }
+        List<Long> promotedIds = reservationIds.subList(0, held);
+        reservationRepository.markAvailableByIds(promotedIds, Reservation.ReservationStatus.AVAILABLE,
+                now, now.toLocalDate().plusDays(PICKUP_VALIDITY_DAYS));
+        readerAccountService.evictAllAfterCommit(reservationRepository.findReaderIdsByIdIn(promotedIds));
+        
+        log.info("Chuyển {} đặt trước sang sẵn sàng cho sách ID: {}", held, bookId);
+        return held;
+    }
+    
+    /**
+     * Độc giả mượn đúng sách đang được giữ cho mình: dùng bản sách đã giữ và hoàn thành đặt trước.
+     * Trả về số bản sách lấy từ chỗ giữ (0 nếu độc giả không có đặt trước sẵn sàng cho sách này).
+     */
+    public int consumeReadyHold(Long readerId, Long bookId, BorrowTicket ticket) {
+        List<Long> holdIds = reservationRepository.findReadyHoldIds(readerId, bookId);
+        if (holdIds.isEmpty()) {
+            return 0;
+        }
+        Long reservationId = holdIds.get(0);
+        int claimed = inventoryService.claimHeldCopies(ticket, reservationId, bookId);
+        reservationRepository.findById(reservationId).ifPresent(reservation -> {
+            reservation.setStatus(Reservation.ReservationStatus.FULFILLED);
+            reservation.setFulfilledAt(LocalDateTime.now());
+        });
+        log.info("Độc giả ID: {} nhận sách ID: {} theo đặt trước ID: {}", readerId, bookId, reservationId);
+        return claimed;
+    }
+    
+    /**
+     * Vị trí của đặt trước trong hàng đợi của sách (chỉ có ý nghĩa khi đang chờ)
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getQueuePosition(Long reservationId) {
+        Reservation reservation = reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy đặt trước với ID: " + reservationId));
+        Long bookId = reservation.getBook().getId();
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("reservationId", reservationId);
+        response.put("bookId", bookId);
+        response.put("status", reservation.getStatus());
+        response.put("queueLength", reservationRepository.countByBookIdAndStatus(
+                bookId, Reservation.ReservationStatus.PENDING));
+        if (reservation.getStatus() == Reservation.ReservationStatus.PENDING) {
+            response.put("position", reservationRepository.findQueuePosition(
+                    bookId, reservation.getReservationDate(), reservationId));
+        }
+        return response;
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<String, Object> getPickupEstimate(Long reservationId) {
+        return pickupEstimateService.estimate(reservationId);
+    }
+    
+    @Transactional(readOnly = true)
+    public List<ReservationSummary> getHoldQueue(Long bookId, int limit) {
+        return reservationRepository.findQueueSummariesByBookId(bookId, Limit.of(Math.min(Math.max(limit, 1), 200)));
+    }
+    
     /**
      * Hoàn thành đặt trước (đã mượn sách)
      */
     public Reservation fulfillReservation(Long reservationId) {
-        Reservation reservation = reservationRepository.findById(reservationId)
+        Reservation reservation = reservationRepository.findWithDetailsById(reservationId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đặt trước với ID: " + reservationId));
         
         if (reservation.getStatus() != Reservation.ReservationStatus.AVAILABLE) {
@@ -109,6 +202,9 @@ public class ReservationService {
         
         reservation.setStatus(Reservation.ReservationStatus.FULFILLED);
         reservation.setFulfilledAt(LocalDateTime.now());
+        // Phiếu mượn lập không qua đặt trước đã lấy bản sách khác; trả bản đang giữ về kệ
+        inventoryService.releaseHeldCopies(List.of(reservationId));
+        readerAccountService.evictAfterCommit(reservation.getReader().getId());
         
         log.info("Hoàn thành đặt trước: {}", reservation.getReservationCode());
         return reservationRepository.save(reservation);
@@ -118,39 +214,26 @@ public class ReservationService {
      * Hủy đặt trước
      */
     public Reservation cancelReservation(Long reservationId) {
-        Reservation reservation = reservationRepository.findById(reservationId)
+        Reservation reservation = reservationRepository.findWithDetailsById(reservationId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đặt trước với ID: " + reservationId));
         
         if (reservation.getStatus() == Reservation.ReservationStatus.FULFILLED) {
             throw new RuntimeException("Không thể hủy đặt trước đã hoàn thành");
         }
         
+        Reservation.ReservationStatus previousStatus = reservation.getStatus();
         reservation.setStatus(Reservation.ReservationStatus.CANCELLED);
+        readerAccountService.evictAfterCommit(reservation.getReader().getId());
+        if (previousStatus == Reservation.ReservationStatus.AVAILABLE
+                && inventoryService.releaseHeldCopies(List.of(reservationId)) > 0) {
+            // Bản sách vừa trả về kệ được giữ ngay cho người kế tiếp trong hàng đợi
+            promoteNextHolds(reservation.getBook().getId(), 1);
+        }
         
         log.info("Hủy đặt trước: {}", reservation.getReservationCode());
         return reservationRepository.save(reservation);
     }
     
-    /**
-     * Xử lý đặt trước hết hạn
-     */
-    public void processExpiredReservations() {
-        List<Reservation> expiredPending = reservationRepository.findExpiredReservations(LocalDate.now());
-        List<Reservation> expiredAvailable = reservationRepository.findExpiredAvailableReservations(LocalDate.now());
-        
-        for (Reservation reservation : expiredPending) {
-            reservation.setStatus(Reservation.ReservationStatus.EXPIRED);
-            reservationRepository.save(reservation);
-            log.info("Đặt trước hết hạn (chờ): {}", reservation.getReservationCode());
-        }
-        
-        for (Reservation reservation : expiredAvailable) {
-            reservation.setStatus(Reservation.ReservationStatus.EXPIRED);
-            reservationRepository.save(reservation);
-            log.info("Đặt trước hết hạn (sẵn sàng): {}", reservation.getReservationCode());
-        }
-    }
-    
     private String generateReservationCode() {
         String prefix = "RS";
         String timestamp = String.valueOf(System.currentTimeMillis());
@@ -158,28 +241,28 @@ public class ReservationService {
     }
     
     @Transactional(readOnly = true)
-    public List<Reservation> getAllReservations() {
-        return reservationRepository.findAll();
+    public List<ReservationSummary> getAllReservations() {
+        return reservationRepository.findAllSummaries();
     }
     
     @Transactional(readOnly = true)
     public Reservation getReservationById(Long id) {
-        return reservationRepository.findById(id)
+        return reservationRepository.findWithDetailsById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đặt trước với ID: " + id));
     }
     
     @Transactional(readOnly = true)
-    public List<Reservation> getReservationsByReaderId(Long readerId) {
-        return reservationRepository.findByReaderId(readerId);
+    public List<ReservationSummary> getReservationsByReaderId(Long readerId) {
+        return reservationRepository.findSummariesByReaderId(readerId);
     }
     
     @Transactional(readOnly = true)
-    public List<Reservation> getReservationsByBookId(Long bookId) {
-        return reservationRepository.findByBookId(bookId);
+    public List<ReservationSummary> getReservationsByBookId(Long bookId) {
+        return reservationRepository.findSummariesByBookId(bookId);
     }
     
     @Transactional(readOnly = true)
-    public List<Reservation> getReservationsByStatus(Reservation.ReservationStatus status) {
-        return reservationRepository.findByStatus(status);
+    public List<ReservationSummary> getReservationsByStatus(Reservation.ReservationStatus status) {
+        return reservationRepository.findSummariesByStatus(status);
     }
 }
\ No newline at end of file
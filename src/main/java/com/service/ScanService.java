@@ -0,0 +1,62 @@
+package com.service;
+
+import com.dto.BookScanResult;
+import com.dto.ReaderCirculationStatus;
+import com.dto.ReaderScanResult;
+import com.model.Book;
+import com.model.Reader;
+import com.repository.ReaderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tra cứu nhanh khi quét mã sách / thẻ độc giả tại quầy mượn trả
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ScanService {
+    
+    private final BarcodeIndexService barcodeIndexService;
+    private final BookCacheService bookCacheService;
+    private final ReaderRepository readerRepository;
+    private final PenaltyLedgerService penaltyLedgerService;
+    
+    public BookScanResult scanBook(String bookCode) {
+        Book book = barcodeIndexService.findBookId(bookCode)
+                .flatMap(bookCacheService::getById)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy sách với mã: " + bookCode));
+        
+        boolean borrowable = book.getStatus() == Book.BookStatus.AVAILABLE && book.getAvailableQuantity() > 0;
+        return new BookScanResult(book.getId(), book.getBookCode(), book.getTitle(),
+                book.getAvailableQuantity(), book.getStatus(), borrowable);
+    }
+    
+    public ReaderScanResult scanReader(String readerCode) {
+        ReaderCirculationStatus status = barcodeIndexService.findReaderId(readerCode)
+                .flatMap(readerRepository::findCirculationStatus)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy độc giả với mã: " + readerCode));
+        
+        List<String> reasons = new ArrayList<>();
+        if (status.status() != Reader.ReaderStatus.ACTIVE) {
+            reasons.add("Độc giả không ở trạng thái hoạt động");
+        }
+        if (status.expiryDate().isBefore(LocalDate.now())) {
+            reasons.add("Thẻ độc giả đã hết hạn");
+        }
+        if (status.activeLoans() >= BorrowService.MAX_BORROW_BOOKS) {
+            reasons.add("Độc giả đã mượn tối đa " + BorrowService.MAX_BORROW_BOOKS + " quyển sách");
+        }
+        // Cùng hạn mức nợ phạt mà BorrowService kiểm tra khi lập phiếu
+        penaltyLedgerService.checkDebtLimit(status.id()).ifPresent(reasons::add);
+        
+        return new ReaderScanResult(status.id(), status.readerCode(), status.fullName(), status.status(),
+                status.expiryDate(), status.activeLoans(), status.unpaidPenaltyCount(),
+                status.unpaidPenaltyAmount(), reasons.isEmpty(), reasons);
+    }
+}
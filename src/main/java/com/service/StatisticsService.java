@@ -2,10 +2,21 @@ package com.service;
 
 import com.repository.BookRepository;
 import com.repository.BorrowRepository;
+import com.repository.LoanRecordRepository;
+import com.repository.PenaltyRecordRepository;
 import com.repository.PenaltyRepository;
 import com.repository.ReaderRepository;
+import com.security.JwtTokenProvider;
+import com.security.TokenRevocationList;
+import com.security.TokenVersionRegistry;
+import com.security.UserDetailsCache;
+import jakarta.persistence.EntityManagerFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,6 +35,16 @@ public class StatisticsService {
     private final ReaderRepository readerRepository;
     private final BorrowRepository borrowRepository;
     private final PenaltyRepository penaltyRepository;
+    private final LoanRecordRepository loanRecordRepository;
+    private final PenaltyRecordRepository penaltyRecordRepository;
+    private final BookCacheService bookCacheService;
+    private final ReaderAccountService readerAccountService;
+    private final FineAccrualService fineAccrualService;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final TokenRevocationList tokenRevocationList;
+    private final UserDetailsCache userDetailsCache;
+    private final EntityManagerFactory entityManagerFactory;
     
     /**
      * Lấy thống kê tổng quan
@@ -33,13 +54,14 @@ public class StatisticsService {
         
         stats.put("totalBooks", bookRepository.count());
         stats.put("totalReaders", readerRepository.count());
-        stats.put("totalBorrowTickets", borrowRepository.count());
-        stats.put("totalPenalties", penaltyRepository.count());
+        // Tổng số tính cả phiếu đã lưu trữ
+        stats.put("totalBorrowTickets", loanRecordRepository.count());
+        stats.put("totalPenalties", penaltyRecordRepository.count());
         
-        stats.put("activeReaders", readerRepository.findByStatus(com.model.Reader.ReaderStatus.ACTIVE).size());
-        stats.put("borrowedBooks", borrowRepository.findByStatus(com.model.BorrowTicket.BorrowStatus.BORROWED).size());
-        stats.put("overdueTickets", borrowRepository.findOverdueTickets(LocalDate.now()).size());
-        stats.put("unpaidPenalties", penaltyRepository.findUnpaidPenalties().size());
+        stats.put("activeReaders", readerRepository.countByStatus(com.model.Reader.ReaderStatus.ACTIVE));
+        stats.put("borrowedBooks", borrowRepository.countByStatus(com.model.BorrowTicket.BorrowStatus.BORROWED));
+        stats.put("overdueTickets", borrowRepository.countOverdueTickets(LocalDate.now()));
+        stats.put("unpaidPenalties", penaltyRepository.countByPaymentStatus(com.model.Penalty.PaymentStatus.UNPAID));
         
         stats.put("timestamp", System.currentTimeMillis());
         
@@ -67,22 +89,17 @@ public class StatisticsService {
     }
     
     /**
-     * Top sách được mượn nhiều nhất
+     * Top sách được mượn nhiều nhất (tính cả phiếu đã lưu trữ)
      */
     public List<Map<String, Object>> getTopBorrowedBooks(int limit) {
-        var allBorrows = borrowRepository.findAll();
+        List<Object[]> rows = loanRecordRepository.countLoansByBook(Limit.of(limit));
+        Map<Long, com.model.Book> books = bookRepository.findAllById(rows.stream().map(row -> (Long) row[0]).toList())
+                .stream()
+                .collect(Collectors.toMap(com.model.Book::getId, book -> book));
         
-        Map<Long, Long> bookBorrowCount = allBorrows.stream()
-                .collect(Collectors.groupingBy(
-                    bt -> bt.getBook().getId(),
-                    Collectors.counting()
-                ));
-        
-        return bookBorrowCount.entrySet().stream()
-                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
-                .limit(limit)
-                .map(entry -> {
-                    var book = bookRepository.findById(entry.getKey()).orElse(null);
+        return rows.stream()
+                .map(row -> {
+                    var book = books.get((Long) row[0]);
                     if (book == null) return null;
                     
                     Map<String, Object> stat = new HashMap<>();
@@ -90,7 +107,7 @@ public class StatisticsService {
                     stat.put("bookCode", book.getBookCode());
                     stat.put("title", book.getTitle());
                     stat.put("author", book.getAuthor());
-                    stat.put("borrowCount", entry.getValue());
+                    stat.put("borrowCount", row[1]);
                     return stat;
                 })
                 .filter(Objects::nonNull)
@@ -98,29 +115,24 @@ public class StatisticsService {
     }
     
     /**
-     * Top độc giả mượn sách nhiều nhất
+     * Top độc giả mượn sách nhiều nhất (tính cả phiếu đã lưu trữ)
      */
     public List<Map<String, Object>> getTopActiveReaders(int limit) {
-        var allBorrows = borrowRepository.findAll();
+        List<Object[]> rows = loanRecordRepository.countLoansByReader(Limit.of(limit));
+        Map<Long, com.model.Reader> readers = readerRepository.findAllById(rows.stream().map(row -> (Long) row[0]).toList())
+                .stream()
+                .collect(Collectors.toMap(com.model.Reader::getId, reader -> reader));
         
-        Map<Long, Long> readerBorrowCount = allBorrows.stream()
-                .collect(Collectors.groupingBy(
-                    bt -> bt.getReader().getId(),
-                    Collectors.counting()
-                ));
-        
-        return readerBorrowCount.entrySet().stream()
-                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
-                .limit(limit)
-                .map(entry -> {
-                    var reader = readerRepository.findById(entry.getKey()).orElse(null);
+        return rows.stream()
+                .map(row -> {
+                    var reader = readers.get((Long) row[0]);
                     if (reader == null) return null;
                     
                     Map<String, Object> stat = new HashMap<>();
                     stat.put("readerId", reader.getId());
                     stat.put("readerCode", reader.getReaderCode());
                     stat.put("fullName", reader.getFullName());
-                    stat.put("borrowCount", entry.getValue());
+                    stat.put("borrowCount", row[1]);
                     
                     long activeBorrows = borrowRepository.countActiveBorrowsByReaderId(reader.getId());
                     stat.put("activeBorrows", activeBorrows);
@@ -132,27 +144,24 @@ public class StatisticsService {
     }
     
     /**
-     * Thống kê mượn trả theo tháng
+     * Thống kê mượn trả theo tháng (một truy vấn gộp cho cả năm, tính cả phiếu đã lưu trữ)
      */
     public List<Map<String, Object>> getBorrowStatsByMonth(int year) {
-        List<Map<String, Object>> stats = new ArrayList<>();
+        Map<Integer, Object[]> byMonth = new HashMap<>();
+        for (Object[] row : loanRecordRepository.countLoansByMonth(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31))) {
+            byMonth.put(((Number) row[0]).intValue(), row);
+        }
         
+        List<Map<String, Object>> stats = new ArrayList<>();
         for (int month = 1; month <= 12; month++) {
-            LocalDate startDate = LocalDate.of(year, month, 1);
-            LocalDate endDate = startDate.plusMonths(1).minusDays(1);
-            
-            var borrowsInMonth = borrowRepository.findByBorrowDateBetween(startDate, endDate);
+            Object[] row = byMonth.get(month);
             
             Map<String, Object> stat = new HashMap<>();
             stat.put("month", month);
             stat.put("year", year);
-            stat.put("totalBorrows", borrowsInMonth.size());
-            stat.put("returned", borrowsInMonth.stream()
-                    .filter(bt -> bt.getStatus() == com.model.BorrowTicket.BorrowStatus.RETURNED)
-                    .count());
-            stat.put("borrowed", borrowsInMonth.stream()
-                    .filter(bt -> bt.getStatus() == com.model.BorrowTicket.BorrowStatus.BORROWED)
-                    .count());
+            stat.put("totalBorrows", row != null ? ((Number) row[1]).longValue() : 0L);
+            stat.put("returned", row != null ? ((Number) row[2]).longValue() : 0L);
+            stat.put("borrowed", row != null ? ((Number) row[3]).longValue() : 0L);
             
             stats.add(stat);
         }
@@ -161,38 +170,44 @@ public class StatisticsService {
     }
     
     /**
-     * Thống kê phạt
+     * Thống kê phạt (tính cả phiếu phạt đã lưu trữ)
      */
     public Map<String, Object> getPenaltyStats() {
-        var allPenalties = penaltyRepository.findAll();
+        long totalCount = 0;
+        long unpaidCount = 0;
+        long paidCount = 0;
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        BigDecimal unpaidAmount = BigDecimal.ZERO;
+        BigDecimal paidAmount = BigDecimal.ZERO;
+        Map<String, Long> penaltyByType = new HashMap<>();
         
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalPenalties", allPenalties.size());
-        stats.put("unpaidCount", penaltyRepository.findUnpaidPenalties().size());
-        stats.put("paidCount", penaltyRepository.findByPaymentStatus(
-            com.model.Penalty.PaymentStatus.PAID).size());
+        for (Object[] row : penaltyRecordRepository.summarizeByStatusAndType()) {
+            var status = (com.model.Penalty.PaymentStatus) row[0];
+            var type = (com.model.Penalty.PenaltyType) row[1];
+            long count = ((Number) row[2]).longValue();
+            BigDecimal amount = row[3] != null ? (BigDecimal) row[3] : BigDecimal.ZERO;
+            
+            totalCount += count;
+            totalAmount = totalAmount.add(amount);
+            if (status == com.model.Penalty.PaymentStatus.UNPAID) {
+                unpaidCount += count;
+                unpaidAmount = unpaidAmount.add(amount);
+            } else if (status == com.model.Penalty.PaymentStatus.PAID) {
+                paidCount += count;
+                paidAmount = paidAmount.add(amount);
+            }
+            penaltyByType.merge(type.toString(), count, Long::sum);
+        }
         
-        BigDecimal totalAmount = allPenalties.stream()
-                .map(com.model.Penalty::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalPenalties", totalCount);
+        stats.put("unpaidCount", unpaidCount);
+        stats.put("paidCount", paidCount);
         stats.put("totalAmount", totalAmount);
-        
-        BigDecimal unpaidAmount = penaltyRepository.findUnpaidPenalties().stream()
-                .map(com.model.Penalty::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
         stats.put("unpaidAmount", unpaidAmount);
-        
-        BigDecimal paidAmount = penaltyRepository.findByPaymentStatus(
-            com.model.Penalty.PaymentStatus.PAID).stream()
-                .map(com.model.Penalty::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
         stats.put("paidAmount", paidAmount);
-        
-        Map<String, Long> penaltyByType = allPenalties.stream()
-                .collect(Collectors.groupingBy(
-                    p -> p.getPenaltyType().toString(),
-                    Collectors.counting()
-                ));
+        // Phạt tạm tính của sách đang quá hạn, chưa thành phiếu phạt
+        stats.put("accruedOverdueAmount", fineAccrualService.getTotalAccruedAmount());
         stats.put("penaltyByType", penaltyByType);
         
         return stats;
@@ -236,37 +251,60 @@ public class StatisticsService {
     public Map<String, Object> getReportByDateRange(LocalDate startDate, LocalDate endDate) {
         Map<String, Object> report = new HashMap<>();
         
-        var borrowsInRange = borrowRepository.findByBorrowDateBetween(startDate, endDate);
+        // Tính cả phiếu đã lưu trữ
+        Object[] summary = loanRecordRepository.summarizeLoans(startDate, endDate, LocalDate.now()).get(0);
         
         report.put("startDate", startDate);
         report.put("endDate", endDate);
-        report.put("totalBorrows", borrowsInRange.size());
-        
-        long returned = borrowsInRange.stream()
-                .filter(bt -> bt.getStatus() == com.model.BorrowTicket.BorrowStatus.RETURNED)
-                .count();
-        report.put("returned", returned);
+        report.put("totalBorrows", ((Number) summary[0]).longValue());
+        report.put("returned", summary[1] != null ? ((Number) summary[1]).longValue() : 0L);
+        report.put("borrowed", summary[2] != null ? ((Number) summary[2]).longValue() : 0L);
+        report.put("overdue", summary[3] != null ? ((Number) summary[3]).longValue() : 0L);
+        report.put("uniqueReaders", ((Number) summary[4]).longValue());
+        report.put("uniqueBooks", ((Number) summary[5]).longValue());
         
-        long borrowed = borrowsInRange.stream()
-                .filter(bt -> bt.getStatus() == com.model.BorrowTicket.BorrowStatus.BORROWED)
-                .count();
-        report.put("borrowed", borrowed);
-        
-        long overdue = borrowsInRange.stream()
-                .filter(com.model.BorrowTicket::isOverdue)
-                .count();
-        report.put("overdue", overdue);
-        
-        Set<Long> uniqueReaders = borrowsInRange.stream()
-                .map(bt -> bt.getReader().getId())
-                .collect(Collectors.toSet());
-        report.put("uniqueReaders", uniqueReaders.size());
+        return report;
+    }
+    
+    /**
+     * Thống kê cache (tỉ lệ trúng, số lần loại bỏ)
+     */
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("books", bookCacheService.getStats());
+        stats.put("readerAccounts", readerAccountService.getStats());
+        stats.put("jwtClaims", jwtTokenProvider.getClaimsCacheStats());
+        stats.put("tokenVersions", tokenVersionRegistry.getStats());
+        stats.put("tokenRevocations", tokenRevocationList.getStats());
+        stats.put("userDetails", userDetailsCache.getStats());
+        stats.put("secondLevel", getSecondLevelCacheStats());
+        stats.put("timestamp", System.currentTimeMillis());
+        return stats;
+    }
+    
+    private Map<String, Object> getSecondLevelCacheStats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
         
-        Set<Long> uniqueBooks = borrowsInRange.stream()
-                .map(bt -> bt.getBook().getId())
-                .collect(Collectors.toSet());
-        report.put("uniqueBooks", uniqueBooks.size());
+        Map<String, Object> regions = new HashMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStats = statistics.getCacheRegionStatistics(regionName);
+            if (regionStats == null) {
+                continue;
+            }
+            Map<String, Object> region = new HashMap<>();
+            region.put("hitCount", regionStats.getHitCount());
+            region.put("missCount", regionStats.getMissCount());
+            region.put("putCount", regionStats.getPutCount());
+            region.put("elementCountInMemory", regionStats.getElementCountInMemory());
+            regions.put(regionName, region);
+        }
         
-        return report;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        stats.put("regions", regions);
+        stats.put("naturalIdHitCount", statistics.getNaturalIdCacheHitCount());
+        stats.put("naturalIdMissCount", statistics.getNaturalIdCacheMissCount());
+        stats.put("naturalIdPutCount", statistics.getNaturalIdCachePutCount());
+        return stats;
     }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tiện ích đăng ký tác vụ chạy sau khi transaction hiện tại commit.
+ * Nếu không có transaction đang hoạt động, tác vụ được chạy ngay.
+ */
+public final class TransactionHooks {
+    
+    private TransactionHooks() {
+    }
+    
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
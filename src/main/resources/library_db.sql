@@ -34,7 +34,7 @@ CREATE TABLE user_accounts (
     failed_login_attempts INT NOT NULL DEFAULT 0,
     last_login_at DATETIME,
     password_changed_at DATETIME,
-    refresh_token VARCHAR(500),
+    token_version INT NOT NULL DEFAULT 0,
     created_at DATETIME NOT NULL,
     updated_at DATETIME,
     INDEX idx_username (username),
@@ -50,6 +50,21 @@ CREATE TABLE user_roles (
     FOREIGN KEY (role_id) REFERENCES roles(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- Bảng Refresh Token (lưu SHA-256 của token, mỗi thiết bị một chuỗi token)
+CREATE TABLE refresh_tokens (
+    token_hash VARCHAR(64) NOT NULL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    family_id VARCHAR(36) NOT NULL,
+    issued_at DATETIME NOT NULL,
+    expires_at DATETIME NOT NULL,
+    revoked_at DATETIME,
+    replaced_by VARCHAR(64),
+    INDEX idx_refresh_user (user_id),
+    INDEX idx_refresh_family (family_id),
+    INDEX idx_refresh_expires (expires_at),
+    FOREIGN KEY (user_id) REFERENCES user_accounts(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
 -- Bảng Books
 CREATE TABLE books (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -76,7 +91,7 @@ CREATE TABLE books (
 -- Bảng Readers (Độc giả)
 CREATE TABLE readers (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
-    reader_code VARCHAR(50) NOT NULL UNIQUE,
+    reader_code VARCHAR(50) NOT NULL,
     full_name VARCHAR(100) NOT NULL,
     date_of_birth DATE NOT NULL,
     gender VARCHAR(10) NOT NULL,
@@ -87,12 +102,13 @@ CREATE TABLE readers (
     issue_date DATE NOT NULL,
     expiry_date DATE NOT NULL,
     status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    reader_type VARCHAR(20) DEFAULT 'STANDARD',
     avatar_url VARCHAR(255),
     created_at DATE NOT NULL,
     updated_at DATE,
-    INDEX idx_reader_code (reader_code),
-    INDEX idx_email (email),
-    INDEX idx_phone (phone_number),
+    UNIQUE KEY uk_readers_reader_code (reader_code),
+    UNIQUE KEY uk_readers_email (email),
+    UNIQUE KEY uk_readers_phone_number (phone_number),
     INDEX idx_status (status)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
@@ -116,7 +132,8 @@ CREATE TABLE borrow_tickets (
     INDEX idx_reader_id (reader_id),
     INDEX idx_book_id (book_id),
     INDEX idx_status (status),
-    INDEX idx_due_date (due_date)
+    INDEX idx_due_date (due_date),
+    INDEX idx_borrow_open (status, id, due_date)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- Bảng Penalties
@@ -131,6 +148,7 @@ CREATE TABLE penalties (
     processed_by VARCHAR(100),
     created_at DATE NOT NULL,
     updated_at DATE,
+    version BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (borrow_ticket_id) REFERENCES borrow_tickets(id) ON DELETE CASCADE,
     INDEX idx_borrow_ticket_id (borrow_ticket_id),
     INDEX idx_payment_status (payment_status)
@@ -148,6 +166,7 @@ CREATE TABLE reservations (
     fulfilled_at DATETIME,
     status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
     notes VARCHAR(500),
+    active_hold TINYINT GENERATED ALWAYS AS (CASE WHEN status IN ('PENDING', 'AVAILABLE') THEN 1 END),
     created_at DATETIME NOT NULL,
     updated_at DATETIME,
     FOREIGN KEY (reader_id) REFERENCES readers(id) ON DELETE CASCADE,
@@ -155,9 +174,157 @@ CREATE TABLE reservations (
     INDEX idx_reservation_code (reservation_code),
     INDEX idx_reader_id (reader_id),
     INDEX idx_book_id (book_id),
-    INDEX idx_status (status)
+    INDEX idx_status (status),
+    INDEX idx_reservation_queue (book_id, status, reservation_date, id),
+    INDEX idx_reservation_expiry (status, expiry_date, id),
+    UNIQUE KEY uk_reservation_active_hold (reader_id, book_id, active_hold)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Bảng Book Copies (Bản sách vật lý)
+-- Bản sách cho các đầu sách có sẵn được tạo tự động khi ứng dụng khởi động
+CREATE TABLE book_copies (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    book_id BIGINT NOT NULL,
+    barcode VARCHAR(60) NOT NULL UNIQUE,
+    status VARCHAR(20) NOT NULL DEFAULT 'AVAILABLE',
+    borrow_ticket_id BIGINT,
+    hold_reservation_id BIGINT,
+    created_at DATETIME NOT NULL,
+    updated_at DATETIME,
+    FOREIGN KEY (book_id) REFERENCES books(id) ON DELETE CASCADE,
+    FOREIGN KEY (borrow_ticket_id) REFERENCES borrow_tickets(id) ON DELETE SET NULL,
+    INDEX idx_copy_book_status (book_id, status),
+    INDEX idx_copy_borrow_ticket (borrow_ticket_id),
+    INDEX idx_copy_hold_reservation (hold_reservation_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Bảng Reader Search Tokens (Chỉ mục tìm kiếm độc giả)
+-- Token đã bỏ dấu và chữ thường; số điện thoại lưu đảo ngược để tìm theo đuôi số
+CREATE TABLE reader_search_tokens (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    reader_id BIGINT NOT NULL,
+    token VARCHAR(100) NOT NULL,
+    type VARCHAR(10) NOT NULL,
+    FOREIGN KEY (reader_id) REFERENCES readers(id) ON DELETE CASCADE,
+    INDEX idx_search_token (token, reader_id),
+    INDEX idx_search_reader (reader_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Bảng Borrow Ticket History (Phiếu mượn đã trả được lưu trữ)
+-- Giữ nguyên ID phiếu gốc; không có khóa ngoại để bảng phiếu mượn luôn nhỏ gọn
+CREATE TABLE borrow_ticket_history (
+    id BIGINT PRIMARY KEY,
+    ticket_code VARCHAR(50) NOT NULL,
+    reader_id BIGINT NOT NULL,
+    book_id BIGINT NOT NULL,
+    book_code VARCHAR(50),
+    book_title VARCHAR(200),
+    borrow_date DATE NOT NULL,
+    due_date DATE NOT NULL,
+    return_date DATE,
+    quantity INT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    returned_to VARCHAR(100),
+    created_at DATE NOT NULL,
+    archived_at DATETIME NOT NULL,
+    INDEX idx_history_reader (reader_id, id),
+    INDEX idx_history_book (book_id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- Bảng Penalty History (Phiếu phạt đã thanh toán/miễn, lưu trữ cùng phiếu mượn)
+CREATE TABLE penalty_history (
+    id BIGINT PRIMARY KEY,
+    borrow_ticket_id BIGINT NOT NULL,
+    penalty_type VARCHAR(20) NOT NULL,
+    amount DECIMAL(10, 2) NOT NULL,
+    reason VARCHAR(500),
+    payment_status VARCHAR(20) NOT NULL,
+    payment_date DATE,
+    processed_by VARCHAR(100),
+    created_at DATE NOT NULL,
+    archived_at DATETIME NOT NULL,
+    INDEX idx_penalty_history_ticket (borrow_ticket_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Bảng Penalty Ledger (Sổ phạt: phát sinh, thanh toán, miễn phạt)
+-- Không có khóa ngoại để sổ vẫn còn nguyên khi phiếu mượn được lưu trữ
+CREATE TABLE penalty_ledger (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    reader_id BIGINT NOT NULL,
+    penalty_id BIGINT,
+    entry_type VARCHAR(10) NOT NULL,
+    amount DECIMAL(12,2) NOT NULL,
+    balance_after DECIMAL(12,2) NOT NULL,
+    processed_by VARCHAR(100),
+    created_at DATETIME NOT NULL,
+    INDEX idx_ledger_reader (reader_id, id),
+    INDEX idx_ledger_penalty (penalty_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Bảng Reader Penalty Balances (Số dư phạt còn nợ theo độc giả)
+CREATE TABLE reader_penalty_balances (
+    reader_id BIGINT PRIMARY KEY,
+    outstanding_amount DECIMAL(12,2) NOT NULL DEFAULT 0,
+    unpaid_count BIGINT NOT NULL DEFAULT 0,
+    accrued_amount DECIMAL(12,2) NOT NULL DEFAULT 0,
+    updated_at DATETIME NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Bảng Fine Schedules (Biểu phí phạt quá hạn theo loại độc giả, đồng bộ từ cấu hình khi khởi động)
+CREATE TABLE fine_schedules (
+    reader_type VARCHAR(20) PRIMARY KEY,
+    fee_per_day DECIMAL(12,2) NOT NULL,
+    grace_days INT NOT NULL,
+    max_per_ticket DECIMAL(12,2) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Bảng Overdue Accruals (Tiền phạt tạm tính của phiếu mượn đang quá hạn, cập nhật hằng đêm)
+CREATE TABLE overdue_accruals (
+    borrow_ticket_id BIGINT PRIMARY KEY,
+    reader_id BIGINT NOT NULL,
+    overdue_days INT NOT NULL,
+    accrued_amount DECIMAL(12,2) NOT NULL,
+    accrued_through DATE NOT NULL,
+    updated_at DATETIME NOT NULL,
+    INDEX idx_accrual_reader (reader_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Bảng Notification Outbox (Thông báo chờ gửi: nhắc hạn trả, sách đặt trước đã sẵn sàng)
+CREATE TABLE notification_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    type VARCHAR(20) NOT NULL,
+    reference_id BIGINT NOT NULL,
+    reference_date DATE NOT NULL,
+    channel VARCHAR(10) NOT NULL,
+    recipient VARCHAR(100) NOT NULL,
+    subject VARCHAR(200) NOT NULL,
+    body VARCHAR(1000) NOT NULL,
+    status VARCHAR(10) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME NOT NULL,
+    last_error VARCHAR(500),
+    created_at DATETIME NOT NULL,
+    sent_at DATETIME,
+    UNIQUE KEY uk_outbox_reference (type, reference_id, reference_date),
+    INDEX idx_outbox_dispatch (status, next_attempt_at, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- View gộp phiếu mượn hiện hành và phiếu đã lưu trữ
+CREATE VIEW borrow_ticket_all AS
+SELECT id, ticket_code, reader_id, book_id, borrow_date, due_date, return_date, quantity, status, FALSE AS archived
+FROM borrow_tickets
+UNION ALL
+SELECT id, ticket_code, reader_id, book_id, borrow_date, due_date, return_date, quantity, status, TRUE AS archived
+FROM borrow_ticket_history;
+
+-- View gộp phiếu phạt hiện hành và phiếu phạt đã lưu trữ
+CREATE VIEW penalty_all AS
+SELECT id, borrow_ticket_id, penalty_type, amount, payment_status, FALSE AS archived
+FROM penalties
+UNION ALL
+SELECT id, borrow_ticket_id, penalty_type, amount, payment_status, TRUE AS archived
+FROM penalty_history;
+
 -- ==============================================
 -- INSERT ROLES (Chỉ 2 roles)
 -- ==============================================
@@ -0,0 +1,166 @@
+package com.example.backend;
+
+import com.model.Book;
+import com.model.BorrowTicket;
+import com.model.Penalty;
+import com.model.Reader;
+import com.model.Reservation;
+import com.repository.BookRepository;
+import com.repository.BorrowRepository;
+import com.repository.PenaltyRepository;
+import com.repository.ReaderRepository;
+import com.repository.ReservationRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Kiểm tra số câu SQL của từng endpoint để phát hiện N+1 khi association là LAZY.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser(roles = "LIBRARIAN")
+class EndpointQueryCountTests {
+
+    private static final int ROWS = 3;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ReaderRepository readerRepository;
+
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Autowired
+    private PenaltyRepository penaltyRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    private Statistics statistics;
+    private Long readerId;
+    private Long bookId;
+    private Long ticketId;
+    private Long penaltyId;
+    private Long reservationId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        for (int i = 0; i < ROWS; i++) {
+            Book book = new Book();
+            book.setBookCode("QC" + i);
+            book.setTitle("Sách " + i);
+            book.setAuthor("Tác giả " + i);
+            book.setTotalQuantity(5);
+            book.setAvailableQuantity(4);
+            book = bookRepository.save(book);
+
+            Reader reader = readerRepository.save(Reader.builder()
+                    .readerCode("QCR" + i)
+                    .fullName("Độc giả " + i)
+                    .dateOfBirth(LocalDate.of(2000, 1, 1))
+                    .gender("Nam")
+                    .issueDate(LocalDate.now())
+                    .expiryDate(LocalDate.now().plusYears(1))
+                    .status(Reader.ReaderStatus.ACTIVE)
+                    .build());
+
+            BorrowTicket ticket = borrowRepository.save(BorrowTicket.builder()
+                    .ticketCode("QCT" + i)
+                    .reader(reader)
+                    .book(book)
+                    .borrowDate(LocalDate.now().minusDays(20))
+                    .dueDate(LocalDate.now().minusDays(6))
+                    .quantity(1)
+                    .status(BorrowTicket.BorrowStatus.BORROWED)
+                    .build());
+
+            Penalty penalty = penaltyRepository.save(Penalty.builder()
+                    .borrowTicket(ticket)
+                    .penaltyType(Penalty.PenaltyType.OVERDUE)
+                    .amount(new BigDecimal("5000"))
+                    .paymentStatus(Penalty.PaymentStatus.UNPAID)
+                    .build());
+
+            Reservation reservation = reservationRepository.save(Reservation.builder()
+                    .reservationCode("QCS" + i)
+                    .reader(reader)
+                    .book(book)
+                    .reservationDate(LocalDateTime.now())
+                    .expiryDate(LocalDate.now().plusDays(7))
+                    .status(Reservation.ReservationStatus.PENDING)
+                    .build());
+
+            readerId = reader.getId();
+            bookId = book.getId();
+            ticketId = ticket.getId();
+            penaltyId = penalty.getId();
+            reservationId = reservation.getId();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        penaltyRepository.deleteAllInBatch();
+        reservationRepository.deleteAllInBatch();
+        borrowRepository.deleteAllInBatch();
+        readerRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void listEndpointsUseSingleQuery() throws Exception {
+        assertStatementCount("/books", 1);
+        assertStatementCount("/readers", 1);
+        assertStatementCount("/borrows", 1);
+        assertStatementCount("/borrows/reader/" + readerId, 1);
+        assertStatementCount("/borrows/overdue", 1);
+        assertStatementCount("/penalties", 1);
+        assertStatementCount("/penalties/unpaid", 1);
+        assertStatementCount("/reservations", 1);
+        assertStatementCount("/reservations/book/" + bookId, 1);
+    }
+
+    @Test
+    void detailEndpointsFetchAssociationsInSingleQuery() throws Exception {
+        assertStatementCount("/borrows/" + ticketId, 1);
+        assertStatementCount("/penalties/" + penaltyId, 1);
+        assertStatementCount("/reservations/" + reservationId, 1);
+    }
+
+    private void assertStatementCount(String path, long expected) throws Exception {
+        statistics.clear();
+        mockMvc.perform(get(path)).andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount())
+                .as("Số câu SQL của GET %s", path)
+                .isEqualTo(expected);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.backend;
+
+import com.model.Book;
+import com.model.BookCopy;
+import com.model.BorrowTicket;
+import com.model.Reader;
+import com.model.Reservation;
+import com.repository.BookCopyRepository;
+import com.repository.BookRepository;
+import com.repository.BorrowRepository;
+import com.repository.PenaltyRepository;
+import com.repository.ReaderRepository;
+import com.repository.ReservationRepository;
+import com.service.BorrowService;
+import com.service.InventoryService;
+import com.service.ReservationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Bản sách vừa trả được giữ cho người đứng đầu hàng đợi, người mượn vãng lai không lấy được.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class HoldQueueTests {
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private ReaderRepository readerRepository;
+
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Autowired
+    private PenaltyRepository penaltyRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    private Long bookId;
+
+    @BeforeEach
+    void setUp() {
+        Book book = new Book();
+        book.setBookCode("HQ1");
+        book.setTitle("Sách giữ chỗ");
+        book.setAuthor("Tác giả");
+        book.setTotalQuantity(1);
+        book.setAvailableQuantity(1);
+        book = bookRepository.save(book);
+        inventoryService.adjustCopies(book, 1);
+        bookId = book.getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookCopyRepository.deleteAllInBatch();
+        penaltyRepository.deleteAllInBatch();
+        reservationRepository.deleteAllInBatch();
+        borrowRepository.deleteAllInBatch();
+        readerRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void returnedCopyIsHeldForQueueHeadNotWalkUp() {
+        Long borrowerId = createReader("HQR1");
+        Long holderId = createReader("HQR2");
+        Long walkUpId = createReader("HQR3");
+
+        BorrowTicket firstLoan = borrowService.createBorrowTicket(borrowerId, bookId, 1, 14);
+        Reservation reservation = createReservation("HQS1", holderId, 0);
+        borrowService.returnBook(firstLoan.getId(), "Thủ thư");
+
+        assertThat(reservationRepository.findById(reservation.getId()).orElseThrow().getStatus())
+                .isEqualTo(Reservation.ReservationStatus.AVAILABLE);
+        assertThat(bookCopyRepository.countByBookIdAndStatus(bookId, BookCopy.CopyStatus.ON_HOLD)).isEqualTo(1);
+
+        assertThatThrownBy(() -> borrowService.createBorrowTicket(walkUpId, bookId, 1, 14))
+                .hasMessageContaining("Không đủ sách để cho mượn");
+
+        BorrowTicket heldLoan = borrowService.createBorrowTicket(holderId, bookId, 1, 14);
+
+        assertThat(reservationRepository.findById(reservation.getId()).orElseThrow().getStatus())
+                .isEqualTo(Reservation.ReservationStatus.FULFILLED);
+        assertThat(bookCopyRepository.findByBookIdOrderByBarcode(bookId))
+                .singleElement()
+                .satisfies(copy -> {
+                    assertThat(copy.getStatus()).isEqualTo(BookCopy.CopyStatus.ON_LOAN);
+                    assertThat(copy.getHoldReservationId()).isNull();
+                    assertThat(copy.getBorrowTicket().getId()).isEqualTo(heldLoan.getId());
+                });
+    }
+
+    @Test
+    void cancelledHoldPassesCopyToNextInQueue() {
+        Long borrowerId = createReader("HQR4");
+        Long firstId = createReader("HQR5");
+        Long secondId = createReader("HQR6");
+
+        BorrowTicket loan = borrowService.createBorrowTicket(borrowerId, bookId, 1, 14);
+        Reservation first = createReservation("HQS2", firstId, 0);
+        Reservation second = createReservation("HQS3", secondId, 1);
+        borrowService.returnBook(loan.getId(), "Thủ thư");
+
+        reservationService.cancelReservation(first.getId());
+
+        assertThat(reservationRepository.findById(second.getId()).orElseThrow().getStatus())
+                .isEqualTo(Reservation.ReservationStatus.AVAILABLE);
+        assertThat(bookCopyRepository.findByBookIdOrderByBarcode(bookId))
+                .singleElement()
+                .satisfies(copy -> {
+                    assertThat(copy.getStatus()).isEqualTo(BookCopy.CopyStatus.ON_HOLD);
+                    assertThat(copy.getHoldReservationId()).isEqualTo(second.getId());
+                });
+    }
+
+    // Mã đặt trước sinh theo mili giây nên tạo trực tiếp để hai đặt trước liên tiếp không trùng mã
+    private Reservation createReservation(String code, Long readerId, int queueOffsetMinutes) {
+        return reservationRepository.save(Reservation.builder()
+                .reservationCode(code)
+                .reader(readerRepository.getReferenceById(readerId))
+                .book(bookRepository.getReferenceById(bookId))
+                .reservationDate(LocalDateTime.now().minusMinutes(10).plusMinutes(queueOffsetMinutes))
+                .expiryDate(LocalDate.now().plusDays(7))
+                .status(Reservation.ReservationStatus.PENDING)
+                .build());
+    }
+
+    private Long createReader(String code) {
+        return readerRepository.save(Reader.builder()
+                .readerCode(code)
+                .fullName("Độc giả " + code)
+                .dateOfBirth(LocalDate.of(2000, 1, 1))
+                .gender("Nam")
+                .issueDate(LocalDate.now())
+                .expiryDate(LocalDate.now().plusYears(1))
+                .status(Reader.ReaderStatus.ACTIVE)
+                .build()).getId();
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.backend;
+
+import com.model.Book;
+import com.model.BorrowTicket;
+import com.model.Penalty;
+import com.model.PenaltyHistory;
+import com.model.Reader;
+import com.repository.BookRepository;
+import com.repository.BorrowRepository;
+import com.repository.BorrowTicketHistoryRepository;
+import com.repository.PenaltyHistoryRepository;
+import com.repository.PenaltyRepository;
+import com.repository.ReaderRepository;
+import com.service.LoanHistoryService;
+import com.service.StatisticsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lưu trữ chuyển phiếu phạt đã thanh toán sang penalty_history và báo cáo vẫn tính cả dữ liệu đã lưu trữ.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LoanArchiveTests {
+
+    @Autowired
+    private LoanHistoryService loanHistoryService;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ReaderRepository readerRepository;
+
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Autowired
+    private BorrowTicketHistoryRepository historyRepository;
+
+    @Autowired
+    private PenaltyRepository penaltyRepository;
+
+    @Autowired
+    private PenaltyHistoryRepository penaltyHistoryRepository;
+
+    private Long bookId;
+    private Long oldTicketId;
+    private Long paidPenaltyId;
+    private final LocalDate oldBorrowDate = LocalDate.now().minusYears(3).withDayOfMonth(10);
+
+    @BeforeEach
+    void setUp() {
+        Book book = new Book();
+        book.setBookCode("LA1");
+        book.setTitle("Sách lưu trữ");
+        book.setAuthor("Tác giả");
+        book.setTotalQuantity(5);
+        book.setAvailableQuantity(4);
+        bookId = bookRepository.save(book).getId();
+
+        Reader reader = readerRepository.save(Reader.builder()
+                .readerCode("LAR1")
+                .fullName("Độc giả lưu trữ")
+                .dateOfBirth(LocalDate.of(2000, 1, 1))
+                .gender("Nam")
+                .issueDate(LocalDate.now())
+                .expiryDate(LocalDate.now().plusYears(1))
+                .status(Reader.ReaderStatus.ACTIVE)
+                .build());
+
+        BorrowTicket oldTicket = borrowRepository.save(BorrowTicket.builder()
+                .ticketCode("LAT1")
+                .reader(reader)
+                .book(book)
+                .borrowDate(oldBorrowDate)
+                .dueDate(oldBorrowDate.plusDays(14))
+                .returnDate(oldBorrowDate.plusDays(20))
+                .quantity(1)
+                .status(BorrowTicket.BorrowStatus.RETURNED)
+                .build());
+        oldTicketId = oldTicket.getId();
+        paidPenaltyId = penaltyRepository.save(Penalty.builder()
+                .borrowTicket(oldTicket)
+                .penaltyType(Penalty.PenaltyType.OVERDUE)
+                .amount(new BigDecimal("6000.00"))
+                .paymentStatus(Penalty.PaymentStatus.PAID)
+                .paymentDate(oldBorrowDate.plusDays(20))
+                .processedBy("Thủ thư")
+                .build()).getId();
+
+        borrowRepository.save(BorrowTicket.builder()
+                .ticketCode("LAT2")
+                .reader(reader)
+                .book(book)
+                .borrowDate(LocalDate.now().minusDays(2))
+                .dueDate(LocalDate.now().plusDays(12))
+                .quantity(1)
+                .status(BorrowTicket.BorrowStatus.BORROWED)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        penaltyHistoryRepository.deleteAllInBatch();
+        historyRepository.deleteAllInBatch();
+        penaltyRepository.deleteAllInBatch();
+        borrowRepository.deleteAllInBatch();
+        readerRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void archivingKeepsSettledPenaltyAndReportsIncludeHistory() {
+        loanHistoryService.archiveReturnedTickets();
+
+        assertThat(borrowRepository.findById(oldTicketId)).isEmpty();
+        assertThat(penaltyRepository.findById(paidPenaltyId)).isEmpty();
+        PenaltyHistory archived = penaltyHistoryRepository.findById(paidPenaltyId).orElseThrow();
+        assertThat(archived.getBorrowTicketId()).isEqualTo(oldTicketId);
+        assertThat(archived.getPaymentStatus()).isEqualTo(Penalty.PaymentStatus.PAID);
+        assertThat(archived.getAmount()).isEqualByComparingTo("6000");
+        assertThat(archived.getProcessedBy()).isEqualTo("Thủ thư");
+
+        assertThat(statisticsService.getDashboardStats())
+                .containsEntry("totalBorrowTickets", 2L)
+                .containsEntry("totalPenalties", 1L);
+
+        Map<String, Object> penaltyStats = statisticsService.getPenaltyStats();
+        assertThat(penaltyStats).containsEntry("paidCount", 1L);
+        assertThat((BigDecimal) penaltyStats.get("paidAmount")).isEqualByComparingTo("6000");
+
+        List<Map<String, Object>> topBooks = statisticsService.getTopBorrowedBooks(5);
+        assertThat(topBooks).singleElement().satisfies(stat -> {
+            assertThat(stat).containsEntry("bookId", bookId);
+            assertThat(stat).containsEntry("borrowCount", 2L);
+        });
+        assertThat(statisticsService.getTopActiveReaders(5))
+                .singleElement()
+                .satisfies(stat -> assertThat(stat).containsEntry("borrowCount", 2L));
+
+        Map<String, Object> month = statisticsService.getBorrowStatsByMonth(oldBorrowDate.getYear())
+                .get(oldBorrowDate.getMonthValue() - 1);
+        assertThat(month).containsEntry("totalBorrows", 1L).containsEntry("returned", 1L);
+
+        assertThat(statisticsService.getReportByDateRange(oldBorrowDate, LocalDate.now()))
+                .containsEntry("totalBorrows", 2L)
+                .containsEntry("overdue", 1L)
+                .containsEntry("uniqueBooks", 1L);
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.backend;
+
+import com.dto.NotificationTarget;
+import com.model.Book;
+import com.model.BorrowTicket;
+import com.model.NotificationOutbox;
+import com.model.Reader;
+import com.repository.BookRepository;
+import com.repository.BorrowRepository;
+import com.repository.NotificationOutboxRepository;
+import com.repository.ReaderRepository;
+import com.service.NotificationDispatcher;
+import com.service.NotificationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Thông báo trùng do node khác tạo cùng lúc chỉ làm bỏ qua đúng dòng đó, không làm mất cả trang;
+ * độc giả không có địa chỉ nhận bị loại ngay từ truy vấn; dòng đã xử lý xong được dọn theo lô.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class NotificationOutboxTests {
+
+    @Autowired
+    private NotificationOutboxRepository outboxRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ReaderRepository readerRepository;
+
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private NotificationDispatcher notificationDispatcher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Book savedBook;
+
+    private List<Long> ticketIds;
+
+    @BeforeEach
+    void setUp() {
+        Book book = new Book();
+        book.setBookCode("NO1");
+        book.setTitle("Sách nhắc hạn");
+        book.setAuthor("Tác giả");
+        book.setTotalQuantity(5);
+        book.setAvailableQuantity(2);
+        savedBook = bookRepository.save(book);
+
+        Reader reader = readerRepository.save(Reader.builder()
+                .readerCode("NOR1")
+                .fullName("Độc giả nhắc hạn")
+                .dateOfBirth(LocalDate.of(2000, 1, 1))
+                .gender("Nữ")
+                .email("reader@example.com")
+                .issueDate(LocalDate.now())
+                .expiryDate(LocalDate.now().plusYears(1))
+                .status(Reader.ReaderStatus.ACTIVE)
+                .build());
+
+        ticketIds = List.of("NOT1", "NOT2", "NOT3").stream()
+                .map(code -> borrowRepository.save(BorrowTicket.builder()
+                        .ticketCode(code)
+                        .reader(reader)
+                        .book(savedBook)
+                        .borrowDate(LocalDate.now().minusDays(13))
+                        .dueDate(LocalDate.now().plusDays(1))
+                        .quantity(1)
+                        .status(BorrowTicket.BorrowStatus.BORROWED)
+                        .build()).getId())
+                .toList();
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboxRepository.deleteAllInBatch();
+        borrowRepository.deleteAllInBatch();
+        readerRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void duplicateReminderDoesNotSuppressRestOfPage() {
+        // Giả lập node khác ghi nhắc hạn cho phiếu thứ hai ngay sau khi trang được đọc
+        NotificationOutboxRepository racingRepository = (NotificationOutboxRepository) Proxy.newProxyInstance(
+                NotificationOutboxRepository.class.getClassLoader(),
+                new Class<?>[]{NotificationOutboxRepository.class},
+                (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(outboxRepository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (method.getName().equals("findDueReminderTargets")) {
+                        @SuppressWarnings("unchecked")
+                        List<NotificationTarget> page = (List<NotificationTarget>) result;
+                        if (page.size() > 1) {
+                            outboxRepository.save(reminderFor(page.get(1)));
+                        }
+                    }
+                    return result;
+                });
+        NotificationService notificationService = new NotificationService(racingRepository, transactionTemplate, 500);
+
+        int created = notificationService.enqueueDueReminders();
+
+        assertThat(created).isEqualTo(2);
+        assertThat(outboxRepository.findAll())
+                .extracting(NotificationOutbox::getReferenceId)
+                .containsExactlyInAnyOrderElementsOf(ticketIds);
+    }
+
+    @Test
+    void readerWithoutUsableContactIsSkipped() {
+        Reader noContact = readerRepository.save(Reader.builder()
+                .readerCode("NOR2")
+                .fullName("Độc giả không liên lạc được")
+                .dateOfBirth(LocalDate.of(2000, 1, 1))
+                .gender("Nam")
+                .issueDate(LocalDate.now())
+                .expiryDate(LocalDate.now().plusYears(1))
+                .status(Reader.ReaderStatus.ACTIVE)
+                .build());
+        // Dữ liệu cũ nhập thẳng vào DB có thể để email rỗng, không qua validate của entity
+        jdbcTemplate.update("UPDATE readers SET email = '  ' WHERE id = ?", noContact.getId());
+        borrowRepository.save(BorrowTicket.builder()
+                .ticketCode("NOT4")
+                .reader(noContact)
+                .book(savedBook)
+                .borrowDate(LocalDate.now().minusDays(13))
+                .dueDate(LocalDate.now().plusDays(1))
+                .quantity(1)
+                .status(BorrowTicket.BorrowStatus.BORROWED)
+                .build());
+
+        int created = notificationService.enqueueDueReminders();
+
+        assertThat(created).isEqualTo(3);
+        assertThat(outboxRepository.findAll())
+                .extracting(NotificationOutbox::getReferenceId)
+                .containsExactlyInAnyOrderElementsOf(ticketIds);
+        // Phiếu của độc giả không có địa chỉ nhận không bị trả về lại ở các lần chạy sau
+        assertThat(outboxRepository.findDueReminderTargets(LocalDate.now().plusDays(1), 0L, Limit.of(10)))
+                .isEmpty();
+    }
+
+    @Test
+    void purgeRemovesOnlyOldFinishedMessages() {
+        notificationService.enqueueDueReminders();
+        List<NotificationOutbox> messages = outboxRepository.findAll();
+        NotificationOutbox oldSent = messages.get(0);
+        NotificationOutbox oldFailed = messages.get(1);
+        NotificationOutbox oldPending = messages.get(2);
+        LocalDateTime longAgo = LocalDateTime.now().minusDays(90);
+        jdbcTemplate.update("UPDATE notification_outbox SET status = 'SENT', created_at = ? WHERE id = ?",
+                longAgo, oldSent.getId());
+        jdbcTemplate.update("UPDATE notification_outbox SET status = 'FAILED', created_at = ? WHERE id = ?",
+                longAgo, oldFailed.getId());
+        jdbcTemplate.update("UPDATE notification_outbox SET created_at = ? WHERE id = ?",
+                longAgo, oldPending.getId());
+
+        long purged = notificationDispatcher.purgeFinished();
+
+        assertThat(purged).isEqualTo(2);
+        assertThat(outboxRepository.findAll())
+                .extracting(NotificationOutbox::getId)
+                .containsExactly(oldPending.getId());
+    }
+
+    private NotificationOutbox reminderFor(NotificationTarget target) {
+        return NotificationOutbox.builder()
+                .type(NotificationOutbox.NotificationType.DUE_REMINDER)
+                .referenceId(target.referenceId())
+                .referenceDate(target.referenceDate())
+                .channel(NotificationOutbox.Channel.EMAIL)
+                .recipient(target.email())
+                .subject("Nhắc hạn trả sách")
+                .body("Tạo bởi node khác")
+                .build();
+    }
+}
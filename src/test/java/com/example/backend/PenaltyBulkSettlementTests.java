@@ -0,0 +1,151 @@
+package com.example.backend;
+
+import com.model.Book;
+import com.model.BorrowTicket;
+import com.model.Penalty;
+import com.model.PenaltyLedgerEntry;
+import com.model.Reader;
+import com.model.ReaderPenaltyBalance;
+import com.repository.BookRepository;
+import com.repository.BorrowRepository;
+import com.repository.PenaltyLedgerRepository;
+import com.repository.PenaltyRepository;
+import com.repository.ReaderPenaltyBalanceRepository;
+import com.repository.ReaderRepository;
+import com.service.PenaltyBulkService;
+import com.service.PenaltyLedgerService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Thanh toán hàng loạt ghi một bút toán cho từng phiếu phạt và trừ số dư của độc giả đúng một lần.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PenaltyBulkSettlementTests {
+
+    private static final List<BigDecimal> AMOUNTS =
+            List.of(new BigDecimal("5000.00"), new BigDecimal("7000.00"), new BigDecimal("10000.00"));
+
+    @Autowired
+    private PenaltyBulkService penaltyBulkService;
+
+    @Autowired
+    private PenaltyLedgerService penaltyLedgerService;
+
+    @Autowired
+    private PenaltyRepository penaltyRepository;
+
+    @Autowired
+    private PenaltyLedgerRepository ledgerRepository;
+
+    @Autowired
+    private ReaderPenaltyBalanceRepository balanceRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ReaderRepository readerRepository;
+
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    private Long readerId;
+    private final List<Long> penaltyIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Book book = new Book();
+        book.setBookCode("PB1");
+        book.setTitle("Sách phạt");
+        book.setAuthor("Tác giả");
+        book.setTotalQuantity(5);
+        book.setAvailableQuantity(5);
+        Book savedBook = bookRepository.save(book);
+
+        Reader reader = readerRepository.save(Reader.builder()
+                .readerCode("PBR1")
+                .fullName("Độc giả nợ phạt")
+                .dateOfBirth(LocalDate.of(2000, 1, 1))
+                .gender("Nam")
+                .issueDate(LocalDate.now())
+                .expiryDate(LocalDate.now().plusYears(1))
+                .status(Reader.ReaderStatus.ACTIVE)
+                .build());
+        readerId = reader.getId();
+
+        for (int i = 0; i < AMOUNTS.size(); i++) {
+            BorrowTicket ticket = borrowRepository.save(BorrowTicket.builder()
+                    .ticketCode("PBT" + i)
+                    .reader(reader)
+                    .book(savedBook)
+                    .borrowDate(LocalDate.now().minusDays(30))
+                    .dueDate(LocalDate.now().minusDays(16))
+                    .returnDate(LocalDate.now().minusDays(1))
+                    .quantity(1)
+                    .status(BorrowTicket.BorrowStatus.RETURNED)
+                    .build());
+            Penalty penalty = penaltyRepository.save(Penalty.builder()
+                    .borrowTicket(ticket)
+                    .penaltyType(Penalty.PenaltyType.OVERDUE)
+                    .amount(AMOUNTS.get(i))
+                    .paymentStatus(Penalty.PaymentStatus.UNPAID)
+                    .build());
+            penaltyLedgerService.recordCharge(readerId, penalty);
+            penaltyIds.add(penalty.getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        ledgerRepository.deleteAllInBatch();
+        balanceRepository.deleteAllInBatch();
+        penaltyRepository.deleteAllInBatch();
+        borrowRepository.deleteAllInBatch();
+        readerRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void bulkPaymentWritesOneEntryPerPenalty() {
+        Map<String, Object> result = penaltyBulkService.payPenalties(null, readerId, null, "Thủ thư");
+
+        assertThat(result.get("settled")).isEqualTo(3L);
+
+        List<PenaltyLedgerEntry> payments = ledgerRepository.findAll().stream()
+                .filter(entry -> entry.getEntryType() == PenaltyLedgerEntry.EntryType.PAYMENT)
+                .toList();
+        assertThat(payments)
+                .extracting(PenaltyLedgerEntry::getPenaltyId)
+                .containsExactlyInAnyOrderElementsOf(penaltyIds);
+        assertThat(payments)
+                .extracting(PenaltyLedgerEntry::getAmount)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactlyInAnyOrderElementsOf(AMOUNTS);
+        assertThat(payments)
+                .extracting(PenaltyLedgerEntry::getProcessedBy)
+                .containsOnly("Thủ thư");
+        assertThat(payments.stream().map(PenaltyLedgerEntry::getBalanceAfter))
+                .anySatisfy(balanceAfter -> assertThat(balanceAfter).isEqualByComparingTo(BigDecimal.ZERO));
+
+        ReaderPenaltyBalance balance = balanceRepository.findById(readerId).orElseThrow();
+        assertThat(balance.getOutstandingAmount()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(balance.getUnpaidCount()).isZero();
+        assertThat(penaltyRepository.findAllById(penaltyIds))
+                .extracting(Penalty::getPaymentStatus)
+                .containsOnly(Penalty.PaymentStatus.PAID);
+    }
+}
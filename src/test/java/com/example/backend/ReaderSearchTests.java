@@ -0,0 +1,110 @@
+package com.example.backend;
+
+import com.dto.ReaderSummary;
+import com.model.Reader;
+import com.repository.ReaderRepository;
+import com.repository.ReaderSearchTokenRepository;
+import com.service.ReaderSearchIndexService;
+import com.service.ReaderService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tìm kiếm độc giả đi theo từ khóa chọn lọc nhất, kiểm tra các từ khóa còn lại và phân trang không lặp độc giả.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ReaderSearchTests {
+
+    @Autowired
+    private ReaderService readerService;
+
+    @Autowired
+    private ReaderSearchIndexService readerSearchIndexService;
+
+    @Autowired
+    private ReaderRepository readerRepository;
+
+    @Autowired
+    private ReaderSearchTokenRepository tokenRepository;
+
+    private Long nguyenAnId;
+    private Long nguyenBinhId;
+
+    @BeforeEach
+    void setUp() {
+        // Email cũng bắt đầu bằng "nguyen": độc giả có hai token khớp nhưng chỉ được trả về một lần
+        nguyenAnId = createReader("RS1", "Nguyễn Văn An", "nguyen.an@example.com", "0901234567");
+        nguyenBinhId = createReader("RS2", "Nguyễn Thị Bình", null, null);
+        createReader("RS3", "Trần Văn An", null, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tokenRepository.deleteAllInBatch();
+        readerRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void everyTermMustMatch() {
+        assertThat(contentIds(readerService.searchReaders("nguyễn an", null, null, 20)))
+                .containsExactly(nguyenAnId);
+        assertThat(contentIds(readerService.searchReaders("4567", null, null, 20)))
+                .containsExactly(nguyenAnId);
+    }
+
+    @Test
+    void pagesFollowCursorWithoutDuplicates() {
+        List<Long> seen = new ArrayList<>();
+        String afterToken = null;
+        Long afterId = null;
+        while (true) {
+            Map<String, Object> page = readerService.searchReaders("nguyen", afterToken, afterId, 1);
+            seen.addAll(contentIds(page));
+            if (!(Boolean) page.get("hasNext")) {
+                break;
+            }
+            afterToken = (String) page.get("nextAfterToken");
+            afterId = (Long) page.get("nextAfterId");
+        }
+        assertThat(seen).containsExactlyInAnyOrder(nguyenAnId, nguyenBinhId);
+    }
+
+    @Test
+    void backfillIndexesReadersWithoutTokens() {
+        tokenRepository.deleteAllInBatch();
+
+        readerSearchIndexService.backfill();
+
+        assertThat(contentIds(readerService.searchReaders("binh", null, null, 20)))
+                .containsExactly(nguyenBinhId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> contentIds(Map<String, Object> page) {
+        return ((List<ReaderSummary>) page.get("content")).stream().map(ReaderSummary::id).toList();
+    }
+
+    private Long createReader(String code, String fullName, String email, String phoneNumber) {
+        return readerService.createReader(Reader.builder()
+                .readerCode(code)
+                .fullName(fullName)
+                .email(email)
+                .phoneNumber(phoneNumber)
+                .dateOfBirth(LocalDate.of(2000, 1, 1))
+                .gender("Nam")
+                .status(Reader.ReaderStatus.ACTIVE)
+                .build()).getId();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.backend;
+
+import com.model.RefreshToken;
+import com.model.UserAccount;
+import com.repository.RefreshTokenRepository;
+import com.repository.UserRepository;
+import com.security.JwtTokenProvider;
+import com.service.AuthService;
+import com.service.RefreshTokenService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Refresh token lưu theo hash, xoay vòng mỗi lần refresh và thu hồi cả chuỗi khi token cũ bị dùng lại.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class RefreshTokenTests {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private UserAccount user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(UserAccount.builder()
+                .username("refresh-user")
+                .password("{noop}secret")
+                .email("refresh-user@example.com")
+                .fullName("Người dùng refresh")
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        refreshTokenRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void storesOnlyTokenHash() {
+        String rawToken = refreshTokenService.issue(user);
+
+        assertThat(refreshTokenRepository.findById(rawToken)).isEmpty();
+        assertThat(refreshTokenRepository.findAll())
+                .singleElement()
+                .satisfies(stored -> {
+                    assertThat(stored.getTokenHash()).isEqualTo(JwtTokenProvider.hashToken(rawToken));
+                    assertThat(stored.getTokenHash()).isNotEqualTo(rawToken);
+                    assertThat(stored.getUserId()).isEqualTo(user.getId());
+                    assertThat(stored.getRevokedAt()).isNull();
+                });
+    }
+
+    @Test
+    void refreshRotatesTokenWithinFamily() {
+        String first = refreshTokenService.issue(user);
+
+        Map<String, Object> response = authService.refreshToken(first);
+        String second = (String) response.get("refreshToken");
+
+        assertThat(second).isNotEqualTo(first);
+        RefreshToken rotated = refreshTokenService.find(first).orElseThrow();
+        RefreshToken next = refreshTokenService.find(second).orElseThrow();
+        assertThat(rotated.getRevokedAt()).isNotNull();
+        assertThat(rotated.getReplacedBy()).isEqualTo(next.getTokenHash());
+        assertThat(next.getFamilyId()).isEqualTo(rotated.getFamilyId());
+        assertThat(next.getRevokedAt()).isNull();
+    }
+
+    @Test
+    void reusingRotatedTokenRevokesWholeFamily() {
+        String first = refreshTokenService.issue(user);
+        String otherDevice = refreshTokenService.issue(user);
+        String second = (String) authService.refreshToken(first).get("refreshToken");
+
+        assertThatThrownBy(() -> authService.refreshToken(first))
+                .hasMessageContaining("đã bị thu hồi");
+
+        // Token mới nhất của chuỗi cũng mất hiệu lực, thiết bị khác (chuỗi khác) không bị ảnh hưởng
+        assertThat(refreshTokenService.find(second).orElseThrow().getRevokedAt()).isNotNull();
+        assertThatThrownBy(() -> authService.refreshToken(second))
+                .hasMessageContaining("đã bị thu hồi");
+        assertThat(refreshTokenService.find(otherDevice).orElseThrow().getRevokedAt()).isNull();
+    }
+
+    @Test
+    void revokeRejectsTokenOfAnotherUser() {
+        String rawToken = refreshTokenService.issue(user);
+
+        assertThatThrownBy(() -> refreshTokenService.revoke(rawToken, user.getId() + 1))
+                .hasMessageContaining("không thuộc về người dùng hiện tại");
+        assertThat(refreshTokenService.find(rawToken).orElseThrow().getRevokedAt()).isNull();
+
+        refreshTokenService.revoke(rawToken, user.getId());
+        assertThat(refreshTokenService.find(rawToken).orElseThrow().getRevokedAt()).isNotNull();
+    }
+}
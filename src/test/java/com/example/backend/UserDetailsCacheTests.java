@@ -0,0 +1,94 @@
+package com.example.backend;
+
+import com.controller.UserController;
+import com.model.UserAccount;
+import com.repository.RefreshTokenRepository;
+import com.repository.UserRepository;
+import com.security.CustomUserDetailsService;
+import com.security.PasswordHashingService;
+import com.security.UserDetailsCache;
+import com.service.AuthService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Đổi mật khẩu hay khóa tài khoản phải xóa UserDetails đã cache, lần tra tiếp theo thấy ngay trạng thái mới.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UserDetailsCacheTests {
+
+    private static final String USERNAME = "cache-user";
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserController userController;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private UserAccount user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(UserAccount.builder()
+                .username(USERNAME)
+                .password(passwordHashingService.encode("old-secret"))
+                .email("cache-user@example.com")
+                .fullName("Người dùng cache")
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDetailsCache.evict(user.getId(), USERNAME);
+        refreshTokenRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void passwordChangeEvictsCachedDetails() {
+        UserDetails before = userDetailsService.loadUserByUsername(USERNAME);
+        assertThat(passwordHashingService.matches("old-secret", before.getPassword())).isTrue();
+
+        authService.changePassword(USERNAME, "old-secret", "new-secret");
+
+        UserDetails after = userDetailsService.loadUserByUsername(USERNAME);
+        assertThat(after.getPassword()).isNotEqualTo(before.getPassword());
+        assertThat(passwordHashingService.matches("new-secret", after.getPassword())).isTrue();
+    }
+
+    @Test
+    @WithMockUser(roles = "LIBRARIAN")
+    void lockingAccountEvictsCachedDetails() {
+        assertThat(userDetailsService.loadUserByUsername(USERNAME).isAccountNonLocked()).isTrue();
+
+        UserController.LockStatusRequest request = new UserController.LockStatusRequest();
+        request.setAccountNonLocked(false);
+        userController.updateLockStatus(user.getId(), request);
+
+        assertThat(userDetailsService.loadUserByUsername(USERNAME).isAccountNonLocked()).isFalse();
+    }
+}